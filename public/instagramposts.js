@@ -1,34 +1,27 @@
 // Dates
 if(document.getElementById('year'))
   document.getElementById('year').textContent = new Date().getFullYear();
-if(document.getElementById('maj-date'))
-  document.getElementById('maj-date').textContent = dayjs().format('DD MMM YYYY');
 
-// Grille Instagram via oEmbed (chargement dynamique depuis instagram.json)
-if(document.getElementById('insta-grid')) {
+// Grille Instagram : rendue à la génération (partials/instagram-grid.html).
+// Seuls les posts sans vignette auto-hébergée sont des embeds : le script d'Instagram
+// n'est chargé que s'il y en a, à l'approche de la grille.
+if(document.querySelector('#insta-grid blockquote.instagram-media')) {
   const grid = document.getElementById('insta-grid');
-  fetch('/instagram.json')
-    .then(res => res.json())
-    .then(posts => {
-      posts.forEach(url => {
-        const wrapper = document.createElement('div');
-        wrapper.innerHTML = `
-          <blockquote class="instagram-media" data-instgrm-permalink="${url}" data-instgrm-version="14" style="background:#fff; border:0; margin:0; padding:0; width:100%;">
-          </blockquote>
-        `;
-        grid.appendChild(wrapper);
-      });
-      // Si des posts ont été ajoutés, déclenche le rendu embed
-      function processEmbedsWhenReady(){
-        if (window.instgrm && window.instgrm.Embeds && typeof window.instgrm.Embeds.process === 'function'){
-          window.instgrm.Embeds.process();
-        } else {
-          setTimeout(processEmbedsWhenReady, 300);
-        }
+  const loadEmbeds = () => {
+    const script = document.createElement('script');
+    script.async = true;
+    script.src = 'https://www.instagram.com/embed.js';
+    document.body.appendChild(script);
+  };
+  if ('IntersectionObserver' in window) {
+    const observer = new IntersectionObserver(entries => {
+      if (entries.some(entry => entry.isIntersecting)) {
+        observer.disconnect();
+        loadEmbeds();
       }
-      if (posts.length) processEmbedsWhenReady();
-    })
-    .catch(e => {
-      console.error('Erreur chargement instagram.json', e);
-    });
+    }, { rootMargin: '400px' });
+    observer.observe(grid);
+  } else {
+    loadEmbeds();
+  }
 }
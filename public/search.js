@@ -0,0 +1,99 @@
+// Recherche dans les actus, sur l'index généré par l'étape "search-index" (SearchIndexStage) :
+// /search/index.json liste les fichiers de termes par préfixe ; seuls ceux des mots tapés sont chargés.
+const tc11Search = (() => {
+  const STOP_WORDS = new Set(['au', 'aux', 'avec', 'ce', 'ces', 'dans', 'de', 'des', 'du', 'elle', 'en', 'est',
+    'et', 'il', 'ils', 'la', 'le', 'les', 'leur', 'leurs', 'ne', 'nos', 'notre', 'nous', 'on', 'ou', 'par', 'pas',
+    'pour', 'qu', 'que', 'qui', 'sa', 'se', 'ses', 'son', 'sont', 'sur', 'un', 'une', 'vos', 'votre', 'vous']);
+  const cache = new Map();
+  let index = null;
+
+  // Même repliement que SearchIndexStage.fold : minuscules, sans accents, « œ » écrit « oe »
+  const fold = text => text.normalize('NFD').replace(/\p{M}+/gu, '').toLowerCase()
+    .replace(/œ/g, 'oe').replace(/æ/g, 'ae');
+
+  // Le dernier mot peut être incomplet : on garde les mots d'une lettre et les mots vides s'ils sont en cours de frappe
+  const tokens = query => {
+    const words = fold(query).split(/[^\p{L}\p{N}]+/u).filter(Boolean);
+    return words.filter((word, i) => i === words.length - 1 || (word.length > 1 && !STOP_WORDS.has(word)));
+  };
+
+  const load = url => {
+    if (!cache.has(url)) {
+      cache.set(url, fetch(url).then(res => {
+        if (!res.ok) throw new Error(`${url}: ${res.status}`);
+        return res.json();
+      }));
+    }
+    return cache.get(url);
+  };
+
+  // Premier terme >= prefix : les termes commençant par prefix sont contigus à partir de là
+  const lowerBound = (terms, prefix) => {
+    let low = 0, high = terms.length;
+    while (low < high) {
+      const mid = (low + high) >>> 1;
+      if (terms[mid] < prefix) low = mid + 1; else high = mid;
+    }
+    return low;
+  };
+
+  // Poids cumulé par document du terme word, ou des termes commençant par word si prefix
+  const match = async (word, prefix) => {
+    const urls = Object.entries(index.shards)
+      .filter(([key]) => key.startsWith(word.slice(0, index.prefixLength)))
+      .map(([, url]) => url);
+    const scores = new Map();
+    for (const shard of await Promise.all(urls.map(load))) {
+      for (let i = lowerBound(shard.terms, word); i < shard.terms.length
+          && (prefix ? shard.terms[i].startsWith(word) : shard.terms[i] === word); i++) {
+        const postings = shard.postings[i];
+        for (let j = 0, id = 0; j + 1 < postings.length; j += 2) {
+          id += postings[j];
+          scores.set(id, (scores.get(id) || 0) + postings[j + 1]);
+        }
+      }
+    }
+    return scores;
+  };
+
+  // Documents contenant tous les mots (le dernier comme préfixe), les plus pertinents puis les plus récents d'abord
+  const search = async (query, limit = 10) => {
+    const words = tokens(query);
+    if (!words.length || words.every(word => word.length < 2)) return [];
+    index = index || await load('/search/index.json');
+    const [docs, ...matches] = await Promise.all([load(index.docs), ...words.map((word, i) => match(word, i === words.length - 1))]);
+    let scores = matches[0];
+    for (const other of matches.slice(1)) {
+      scores = new Map([...scores].filter(([id]) => other.has(id)).map(([id, score]) => [id, score + other.get(id)]));
+    }
+    return [...scores]
+      .sort((a, b) => b[1] - a[1] || a[0] - b[0])
+      .slice(0, limit)
+      .map(([id]) => docs[id]);
+  };
+
+  return { search, fold };
+})();
+
+// Composant Alpine du champ de recherche de la page d'accueil
+function actusSearch() {
+  return {
+    query: '',
+    results: [],
+    searched: false,
+    error: false,
+    async run() {
+      const query = this.query;
+      try {
+        const results = await tc11Search.search(query);
+        if (query !== this.query) return;
+        this.results = results;
+        this.searched = query.trim().length > 1;
+        this.error = false;
+      } catch (e) {
+        console.error('Erreur recherche', e);
+        this.error = true;
+      }
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package fr.tc11;
+
+import jakarta.enterprise.inject.Instance;
+import jakarta.enterprise.inject.spi.BeanManager;
+import jakarta.enterprise.inject.spi.CDI;
+import jakarta.enterprise.util.TypeLiteral;
+
+import java.lang.annotation.Annotation;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal {@link CDI} container for benchmarks, so that template helpers which look beans up
+ * through {@code CDI.current()} run without booting Quarkus. Only {@code select(Class).get()}
+ * is supported.
+ */
+final class BenchmarkCdi<T> extends CDI<T> {
+
+    private final Map<Class<?>, Object> beans;
+    private final T bean;
+
+    private BenchmarkCdi(Map<Class<?>, Object> beans, T bean) {
+        this.beans = beans;
+        this.bean = bean;
+    }
+
+    /**
+     * Installs a container serving the given beans, replacing any previous one.
+     */
+    static void install(Map<Class<?>, Object> beans) {
+        BenchmarkCdi<Object> cdi = new BenchmarkCdi<>(Map.copyOf(beans), null);
+        CDI.setCDIProvider(() -> cdi);
+    }
+
+    /**
+     * Installs a container serving a {@link SiteTemplateExtension.SiteConfig} with the given URL, and
+     * {@link DerivedImages} reading the default output folders (empty unless the build stages ran).
+     */
+    static void installSiteConfig(String siteUrl) {
+        SiteTemplateExtension.SiteConfig siteConfig = new SiteTemplateExtension.SiteConfig();
+        siteConfig.url = siteUrl;
+        DerivedImages derivedImages = new DerivedImages();
+        derivedImages.outputDir = "public/derived/images";
+        derivedImages.contentDir = "content";
+        derivedImages.ogOutputDir = "public/derived/og";
+        install(Map.of(SiteTemplateExtension.SiteConfig.class, siteConfig, DerivedImages.class, derivedImages));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <U extends T> Instance<U> select(Class<U> subtype, Annotation... qualifiers) {
+        Object selected = beans.get(subtype);
+        if (selected == null) {
+            throw new IllegalStateException("No benchmark bean for " + subtype.getName());
+        }
+        return new BenchmarkCdi<>(beans, (U) selected);
+    }
+
+    @Override
+    public T get() {
+        return bean;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return bean == null ? List.<T>of().iterator() : List.of(bean).iterator();
+    }
+
+    @Override
+    public boolean isUnsatisfied() {
+        return bean == null;
+    }
+
+    @Override
+    public boolean isAmbiguous() {
+        return false;
+    }
+
+    @Override
+    public Instance<T> select(Annotation... qualifiers) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <U extends T> Instance<U> select(TypeLiteral<U> subtype, Annotation... qualifiers) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void destroy(T instance) {
+    }
+
+    @Override
+    public Handle<T> getHandle() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Iterable<? extends Handle<T>> handles() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public BeanManager getBeanManager() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,160 @@
+package fr.tc11;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@code files:} template helpers on synthetic Roq-like pages with many attached
+ * files: every call goes through reflection and extension matching, once per page render.
+ *
+ * Run with: ./mvnw -Pjmh test-compile exec:exec -Djmh.args="FilesViewHelpersBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FilesViewHelpersBenchmark {
+
+    private static final String[] FILE_SHAPES = {
+            "IMG_20260512_%d.jpg",
+            "tournoi-interne-%d.JPG",
+            "Affiche%%20stage%%20%%C3%%A9t%%C3%%A9-%d.png",
+            "photo_%d.webp",
+            "reglement-interieur-%d.pdf",
+            "resultats_%d.xlsx",
+            "notes-%d.md",
+            "plan-du-club-%d.svg",
+    };
+
+    @Param({"10", "100", "500"})
+    int fileCount;
+
+    private SyntheticPage pageWithCover;
+    private SyntheticPage pageWithoutCover;
+
+    @Setup
+    public void setUp() {
+        BenchmarkCdi.installSiteConfig("https://tc11.fr");
+        List<String> files = new ArrayList<>(fileCount);
+        for (int i = 0; i < fileCount; i++) {
+            files.add(String.format(FILE_SHAPES[i % FILE_SHAPES.length], i));
+        }
+        Map<String, Object> coverData = new HashMap<>();
+        coverData.put("title", "Tournoi interne");
+        coverData.put("cover", "affiche.jpg");
+        pageWithCover = new SyntheticPage(files, coverData, "https://tc11.fr/posts/tournoi-interne/");
+        // HashMap rather than Map.of(): the helpers only see public methods of public classes, like Roq's JsonObject
+        Map<String, Object> data = new HashMap<>();
+        data.put("title", "Tournoi interne");
+        pageWithoutCover = new SyntheticPage(files, data, "https://tc11.fr/posts/tournoi-interne/");
+    }
+
+    @Benchmark
+    public List<String> images() {
+        return FilesViewHelpers.images(pageWithoutCover);
+    }
+
+    /**
+     * First call for a page, before its classification is memoised (a new page object each time).
+     */
+    @Benchmark
+    public List<String> imagesFirstCall() {
+        return FilesViewHelpers.images(new SyntheticPage(pageWithoutCover.files(), pageWithoutCover.data(),
+                pageWithoutCover.url().absolute()));
+    }
+
+    @Benchmark
+    public List<String> attachments() {
+        return FilesViewHelpers.attachments(pageWithoutCover);
+    }
+
+    @Benchmark
+    public String ogImageFromCover() {
+        return FilesViewHelpers.ogImage(pageWithCover);
+    }
+
+    @Benchmark
+    public String ogImageFromFirstImage() {
+        return FilesViewHelpers.ogImage(pageWithoutCover);
+    }
+
+    /**
+     * What templates/layouts/post.html does for one post: gallery, attachments and their names.
+     */
+    @Benchmark
+    public void postLayout(Blackhole blackhole) {
+        blackhole.consume(FilesViewHelpers.hasImages(pageWithoutCover));
+        blackhole.consume(FilesViewHelpers.imagesCount(pageWithoutCover));
+        for (String image : FilesViewHelpers.images(pageWithoutCover)) {
+            blackhole.consume(FilesViewHelpers.displayName(image));
+        }
+        blackhole.consume(FilesViewHelpers.hasAttachments(pageWithoutCover));
+        for (String attachment : FilesViewHelpers.attachments(pageWithoutCover)) {
+            blackhole.consume(FilesViewHelpers.displayName(attachment));
+        }
+    }
+
+    @Benchmark
+    public void displayName(Blackhole blackhole) {
+        for (String file : pageWithoutCover.files()) {
+            blackhole.consume(FilesViewHelpers.displayName(file));
+        }
+    }
+
+    /**
+     * Shape of a Roq page as seen by the helpers: files(), data().get(key) and url().absolute().
+     */
+    public static final class SyntheticPage {
+        private final List<String> files;
+        private final Map<String, Object> data;
+        private final SyntheticUrl url;
+
+        SyntheticPage(List<String> files, Map<String, Object> data, String absoluteUrl) {
+            this.files = List.copyOf(files);
+            this.data = data;
+            this.url = new SyntheticUrl(absoluteUrl);
+        }
+
+        public List<String> files() {
+            return files;
+        }
+
+        public Map<String, Object> data() {
+            return data;
+        }
+
+        public SyntheticUrl url() {
+            return url;
+        }
+    }
+
+    public static final class SyntheticUrl {
+        private final String absolute;
+
+        SyntheticUrl(String absolute) {
+            this.absolute = absolute;
+        }
+
+        public String absolute() {
+            return absolute;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package fr.tc11;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the per-render blacklist filtering that {@link InstagramPostsFetcher#getInstagramPosts()}
+ * used to do with the view that is now precomputed when a snapshot is published.
+ *
+ * Run with: ./mvnw -Pjmh test-compile exec:exec -Djmh.args="InstagramBlacklistBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InstagramBlacklistBenchmark {
+
+    private static final Pattern POST_LINK_PATTERN = Pattern.compile("/p/([A-Za-z0-9_-]+)");
+    private static final int MAX_POSTS = 6;
+
+    @Param({"20", "500"})
+    int feedSize;
+
+    @Param({"1", "50", "1000"})
+    int blacklistSize;
+
+    private InstagramPostsFetcher fetcher;
+    private List<String> posts;
+    private String blacklist;
+
+    @Setup
+    public void setUp() {
+        posts = new ArrayList<>();
+        for (int i = 0; i < feedSize; i++) {
+            posts.add(String.format("https://www.instagram.com/p/POST%07d/", i));
+        }
+        // Blacklist every other post of the feed, padded with unrelated shortcodes and URLs
+        List<String> entries = new ArrayList<>();
+        for (int i = 0; i < blacklistSize; i++) {
+            entries.add(i % 2 == 0
+                    ? String.format("POST%07d", i)
+                    : String.format("https://www.instagram.com/p/GONE%07d/", i));
+        }
+        blacklist = String.join(",", entries);
+
+        fetcher = new InstagramPostsFetcher();
+        fetcher.blacklist = Optional.of(blacklist);
+        fetcher.blacklistedShortcodes = InstagramPostsFetcher.parseBlacklist(blacklist);
+        fetcher.publish(new InstagramSnapshot(InstagramPostsFetcher.postsOf(posts), "benchmark", Instant.now()));
+    }
+
+    @Benchmark
+    public List<InstagramPost> precomputedView() {
+        return fetcher.getInstagramPosts();
+    }
+
+    @Benchmark
+    public List<String> perCallFiltering() {
+        List<String> filtered = legacyFilter(posts, blacklist);
+        if (filtered.size() <= MAX_POSTS) {
+            return filtered;
+        }
+        return Collections.unmodifiableList(new ArrayList<>(filtered.subList(0, MAX_POSTS)));
+    }
+
+    /**
+     * The filtering previously done on every call: re-parse the blacklist, then scan every
+     * post against every entry with string matching.
+     */
+    private static List<String> legacyFilter(List<String> posts, String blacklist) {
+        Set<String> blacklistedShortcodes = new LinkedHashSet<>();
+        for (String entry : blacklist.split(",")) {
+            String trimmed = entry.trim();
+            if (trimmed.isEmpty()) continue;
+            if (trimmed.startsWith("http://") || trimmed.startsWith("https://")) {
+                Matcher matcher = POST_LINK_PATTERN.matcher(trimmed);
+                if (matcher.find()) {
+                    blacklistedShortcodes.add(matcher.group(1));
+                }
+            } else {
+                blacklistedShortcodes.add(trimmed);
+            }
+        }
+
+        List<String> filtered = new ArrayList<>();
+        for (String post : posts) {
+            boolean isBlacklisted = false;
+            for (String shortcode : blacklistedShortcodes) {
+                if (post.contains("/p/" + shortcode)
+                        || post.contains("/reel/" + shortcode)
+                        || post.endsWith("/" + shortcode)
+                        || post.endsWith("/" + shortcode + "/")) {
+                    isBlacklisted = true;
+                    break;
+                }
+            }
+            if (!isBlacklisted) {
+                filtered.add(post);
+            }
+        }
+        return Collections.unmodifiableList(filtered);
+    }
+}
@@ -0,0 +1,92 @@
+package fr.tc11;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Measures the {@link InstagramPostsFetcher} parsing entry points on the payloads recorded
+ * under <code>src/jmh/resources/payloads</code>: a Graph API media page, an RSS Bridge feed
+ * and a rendered profile page.
+ *
+ * Run with: ./mvnw -Pjmh test-compile exec:exec -Djmh.args="InstagramPostsFetcherBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InstagramPostsFetcherBenchmark {
+
+    private static final Pattern HREF_PATTERN = Pattern.compile("href=\"([^\"]*/(?:p|reel)/[^\"]*)\"");
+
+    private InstagramPostsFetcher fetcher;
+    private String mediaResponse;
+    private String rssBridgeResponse;
+    private String profileHtml;
+    private List<String> profileHrefs;
+
+    @Setup
+    public void setUp() {
+        fetcher = new InstagramPostsFetcher();
+        mediaResponse = payload("instagram-api-media.json");
+        rssBridgeResponse = payload("rss-bridge.json");
+        profileHtml = payload("instagram-profile.html");
+
+        // What the headless browser collects from a[href] elements of the same page
+        profileHrefs = new ArrayList<>();
+        Matcher matcher = HREF_PATTERN.matcher(profileHtml);
+        while (matcher.find()) {
+            profileHrefs.add(matcher.group(1));
+        }
+    }
+
+    @Benchmark
+    public List<String> parseMediaResponse() {
+        return fetcher.parseMediaResponse(mediaResponse);
+    }
+
+    @Benchmark
+    public List<String> parseRssBridgeResponse() {
+        return fetcher.parseRssBridgeResponse(rssBridgeResponse);
+    }
+
+    @Benchmark
+    public List<String> extractPostUrlsFromHtml() {
+        return fetcher.extractPostUrlsFromHtml(profileHtml);
+    }
+
+    @Benchmark
+    public List<String> extractPostUrlsFromLinks() {
+        return fetcher.extractPostUrlsFromLinks(profileHrefs);
+    }
+
+    static String payload(String name) {
+        try (InputStream in = InstagramPostsFetcherBenchmark.class.getResourceAsStream("/payloads/" + name)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing benchmark payload " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
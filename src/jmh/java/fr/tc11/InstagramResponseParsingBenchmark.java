@@ -0,0 +1,114 @@
+package fr.tc11;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the previous tree-based parsing of Graph API and RSS Bridge responses with the
+ * streaming {@link InstagramResponseParser}, on payloads with long captions.
+ *
+ * Run with: ./mvnw -Pjmh test-compile exec:exec -Djmh.args="InstagramResponseParsingBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InstagramResponseParsingBenchmark {
+
+    private static final int FETCH_LIMIT = 20;
+
+    @Param({"20", "100"})
+    int items;
+
+    @Param({"200", "2000"})
+    int captionLength;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private byte[] mediaPayload;
+    private byte[] rssPayload;
+
+    @Setup
+    public void setUp() {
+        String caption = "🎾 Retour sur le tournoi du club, merci à toutes et tous ! ".repeat(captionLength / 60 + 1)
+                .substring(0, captionLength);
+        StringBuilder media = new StringBuilder("{\"data\": [");
+        StringBuilder rss = new StringBuilder("{\"version\": \"https://jsonfeed.org/version/1\", \"items\": [");
+        for (int i = 0; i < items; i++) {
+            if (i > 0) {
+                media.append(',');
+                rss.append(',');
+            }
+            media.append(String.format("{\"id\": \"1790%08d\", \"caption\": \"%s\", \"media_type\": \"IMAGE\","
+                    + " \"media_url\": \"https://scontent.cdninstagram.com/v/t51/%d.jpg\","
+                    + " \"permalink\": \"https://www.instagram.com/p/POST%07d/\","
+                    + " \"timestamp\": \"2026-05-01T10:15:30+0000\"}", i, caption, i, i));
+            rss.append(String.format("{\"id\": \"https://www.instagram.com/p/POST%07d/\", \"title\": \"%s\","
+                    + " \"url\": \"https://www.instagram.com/p/POST%07d/\", \"content_html\": \"<p>%s</p>\"}",
+                    i, caption, i, caption));
+        }
+        media.append("], \"paging\": {\"cursors\": {\"before\": \"abc\", \"after\": \"xyz\"}}}");
+        rss.append("]}");
+        mediaPayload = media.toString().getBytes(StandardCharsets.UTF_8);
+        rssPayload = rss.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<InstagramResponseParser.InstagramMedia> mediaStreaming() {
+        return InstagramResponseParser.parseMedia(new ByteArrayInputStream(mediaPayload), FETCH_LIMIT);
+    }
+
+    @Benchmark
+    public List<String> mediaTree() throws Exception {
+        // Previous implementation: whole body as a String, then a full JsonNode tree
+        JsonNode root = objectMapper.readTree(new String(mediaPayload, StandardCharsets.UTF_8));
+        List<String> postUrls = new ArrayList<>();
+        for (JsonNode media : root.path("data")) {
+            String permalink = media.path("permalink").asText();
+            if (permalink != null && !permalink.isEmpty()) {
+                postUrls.add(permalink);
+            }
+        }
+        return postUrls;
+    }
+
+    @Benchmark
+    public List<String> rssStreaming() {
+        return InstagramResponseParser.parseRssBridgeItems(new ByteArrayInputStream(rssPayload), FETCH_LIMIT);
+    }
+
+    @Benchmark
+    public List<String> rssTree() throws Exception {
+        JsonNode root = objectMapper.readTree(new String(rssPayload, StandardCharsets.UTF_8));
+        List<String> postUrls = new ArrayList<>();
+        for (JsonNode item : root.path("items")) {
+            if (postUrls.size() >= FETCH_LIMIT) break;
+            String url = item.path("url").asText();
+            if (url == null || url.isEmpty()) {
+                url = item.path("id").asText();
+            }
+            if (url != null && !url.isEmpty() && url.contains("instagram.com/p/")) {
+                postUrls.add(url);
+            }
+        }
+        return postUrls;
+    }
+}
@@ -0,0 +1,159 @@
+package fr.tc11;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Compares the former three regex passes of {@code extractPostUrlsFromHtml} with the single-pass
+ * {@link InstagramShortcodeScanner}, on the profile pages saved by the headless browser debug mode
+ * (<code>tc11.instagram.debug.enabled=true</code>, every <code>page.html</code> under
+ * <code>-Dtc11.bench.debug-dir</code>, default <code>target/instagram-debug</code>).
+ *
+ * Without saved pages, a synthetic 2 MB profile page is used: script payloads first, the
+ * post grid at the end, like the pages Instagram serves.
+ *
+ * Run with: ./mvnw -Pjmh test-compile exec:exec -Djmh.args="InstagramShortcodeScanBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InstagramShortcodeScanBenchmark {
+
+    private static final Pattern POST_LINK_PATTERN = Pattern.compile("/p/([A-Za-z0-9_-]+)");
+    private static final Pattern REEL_LINK_PATTERN = Pattern.compile("/reel/([A-Za-z0-9_-]+)");
+    private static final Pattern SHORTCODE_JSON_PATTERN = Pattern.compile("\\\"shortcode\\\":\\\"([A-Za-z0-9_-]+)\\\"");
+    private static final int FETCH_LIMIT = 20;
+
+    private List<String> pages;
+    private List<byte[]> encodedPages;
+
+    @Setup
+    public void setUp() throws IOException {
+        pages = new ArrayList<>();
+        Path debugDir = Path.of(System.getProperty("tc11.bench.debug-dir", "target/instagram-debug"));
+        if (Files.isDirectory(debugDir)) {
+            try (Stream<Path> files = Files.walk(debugDir)) {
+                for (Path file : files.filter(f -> f.getFileName().toString().equals("page.html")).sorted().toList()) {
+                    pages.add(Files.readString(file, StandardCharsets.UTF_8));
+                }
+            }
+        }
+        if (pages.isEmpty()) {
+            pages.add(syntheticProfilePage());
+        }
+        encodedPages = new ArrayList<>();
+        for (String page : pages) {
+            encodedPages.add(page.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Benchmark
+    public int threeRegexPasses() {
+        int found = 0;
+        for (String page : pages) {
+            found += legacyExtract(page).size();
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int singlePass() {
+        int found = 0;
+        for (String page : pages) {
+            found += InstagramShortcodeScanner.scan(page, FETCH_LIMIT).size();
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int singlePassReader() throws IOException {
+        int found = 0;
+        for (byte[] page : encodedPages) {
+            try (Reader reader = new InputStreamReader(new ByteArrayInputStream(page), StandardCharsets.UTF_8)) {
+                found += InstagramShortcodeScanner.scan(reader, FETCH_LIMIT).size();
+            }
+        }
+        return found;
+    }
+
+    /**
+     * The extraction previously done by {@code extractPostUrlsFromHtml}.
+     */
+    private static List<String> legacyExtract(String html) {
+        Set<String> shortcodes = new LinkedHashSet<>();
+        Matcher postMatcher = POST_LINK_PATTERN.matcher(html);
+        while (postMatcher.find()) {
+            String shortcode = postMatcher.group(1);
+            if (shortcode.length() >= 10 && shortcode.length() <= 12) {
+                shortcodes.add(shortcode);
+            }
+        }
+        Matcher reelMatcher = REEL_LINK_PATTERN.matcher(html);
+        while (reelMatcher.find()) {
+            String shortcode = reelMatcher.group(1);
+            if (shortcode.length() >= 10 && shortcode.length() <= 12) {
+                shortcodes.add(shortcode);
+            }
+        }
+        Matcher jsonMatcher = SHORTCODE_JSON_PATTERN.matcher(html);
+        while (jsonMatcher.find()) {
+            String shortcode = jsonMatcher.group(1);
+            if (shortcode.length() >= 8 && shortcode.length() <= 20) {
+                shortcodes.add(shortcode);
+            }
+        }
+        List<String> postUrls = new ArrayList<>();
+        for (String shortcode : shortcodes) {
+            if (postUrls.size() >= FETCH_LIMIT) break;
+            postUrls.add("https://www.instagram.com/p/" + shortcode);
+        }
+        return postUrls;
+    }
+
+    private static String syntheticProfilePage() {
+        StringBuilder html = new StringBuilder(2_200_000);
+        html.append("<!DOCTYPE html><html lang=\"fr\"><head>");
+        int block = 0;
+        while (html.length() < 2_000_000) {
+            html.append("<script type=\"application/json\">{\"require\":[[\"ScheduledServerJS\",\"handle\",null,")
+                    .append("[{\"__bbox\":{\"define\":[[\"PolarisConfig\",[],{\"path\":\"/p/explore/\",")
+                    .append("\"static\":\"https://static.cdninstagram.com/rsrc.php/v3/y").append(block)
+                    .append("/r/abcdefghijklmnop.js\"},").append(block).append("]]}}]]]}</script>\n");
+            block++;
+        }
+        html.append("</head><body><main>");
+        for (int i = 0; i < 24; i++) {
+            html.append(String.format("<a class=\"x1i10hfl\" href=\"/tc11assb/p/DKPOST%05d/\" role=\"link\">"
+                    + "<img alt=\"Photo by TC11\" src=\"https://scontent.cdninstagram.com/v/t51/%d.jpg\"></a>", i, i));
+        }
+        html.append("</main></body></html>");
+        return html.toString();
+    }
+}
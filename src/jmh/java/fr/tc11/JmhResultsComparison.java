@@ -0,0 +1,98 @@
+package fr.tc11;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH JSON result files (<code>-rf json</code>), typically one produced on the
+ * base commit and one on the current commit, and exits with status 1 when a benchmark got
+ * slower than the threshold.
+ *
+ * Benchmarks are matched by name and parameters; a change only counts as a regression when
+ * it also exceeds both score errors, so that noisy runs do not fail the comparison.
+ *
+ * Run with: ./mvnw -Pjmh test-compile exec:exec -Djmh.main=fr.tc11.JmhResultsComparison
+ *           -Djmh.args="jmh-base.json target/jmh-results.json [threshold-percent]"
+ */
+public final class JmhResultsComparison {
+
+    private static final double DEFAULT_THRESHOLD_PERCENT = 10.0;
+
+    private JmhResultsComparison() {
+    }
+
+    record Result(String key, String mode, double score, double error, String unit) {
+
+        /** Throughput modes are better when higher, time modes when lower. */
+        boolean higherIsBetter() {
+            return "thrpt".equals(mode);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: JmhResultsComparison <base.json> <current.json> [threshold-percent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD_PERCENT;
+        Map<String, Result> base = read(Path.of(args[0]));
+        Map<String, Result> current = read(Path.of(args[1]));
+
+        int regressions = 0;
+        System.out.printf("%-90s %14s %14s %9s%n", "Benchmark", "Base", "Current", "Change");
+        for (Result now : current.values()) {
+            Result before = base.get(now.key());
+            if (before == null) {
+                System.out.printf("%-90s %14s %14.3f %9s  %s%n", now.key(), "-", now.score(), "new", now.unit());
+                continue;
+            }
+            double change = (now.score() - before.score()) / before.score() * 100.0;
+            double worse = now.higherIsBetter() ? -change : change;
+            boolean beyondNoise = Math.abs(now.score() - before.score()) > before.error() + now.error();
+            String verdict = "";
+            if (worse > threshold && beyondNoise) {
+                verdict = "REGRESSION";
+                regressions++;
+            } else if (-worse > threshold && beyondNoise) {
+                verdict = "improvement";
+            }
+            System.out.printf("%-90s %14.3f %14.3f %+8.1f%%  %s %s%n",
+                    now.key(), before.score(), now.score(), change, now.unit(), verdict);
+        }
+        for (String key : base.keySet()) {
+            if (!current.containsKey(key)) {
+                System.out.printf("%-90s %14.3f %14s %9s%n", key, base.get(key).score(), "-", "removed");
+            }
+        }
+
+        System.out.printf("%d regression(s) above %.1f%%%n", regressions, threshold);
+        if (regressions > 0) {
+            System.exit(1);
+        }
+    }
+
+    static Map<String, Result> read(Path file) throws IOException {
+        Map<String, Result> results = new LinkedHashMap<>();
+        for (JsonNode run : new ObjectMapper().readTree(file.toFile())) {
+            StringBuilder key = new StringBuilder(run.path("benchmark").asText());
+            JsonNode params = run.path("params");
+            if (params.isObject()) {
+                Map<String, String> sorted = new TreeMap<>();
+                params.properties().forEach(e -> sorted.put(e.getKey(), e.getValue().asText()));
+                key.append(sorted);
+            }
+            JsonNode metric = run.path("primaryMetric");
+            double error = metric.path("scoreError").asDouble(0);
+            Result result = new Result(key.toString(), run.path("mode").asText(),
+                    metric.path("score").asDouble(), Double.isNaN(error) ? 0 : error, metric.path("scoreUnit").asText());
+            results.put(result.key(), result);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,169 @@
+package fr.tc11;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServer;
+import io.vertx.ext.web.Router;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Load test of the static-serving mode ({@link StaticSiteHandler}): 8 client threads request the pages,
+ * stylesheets, scripts and JSON files of the site in turn, with the <code>Accept-Encoding</code> of a
+ * browser (<code>br</code>), of an older client (<code>gzip</code>) or none (<code>identity</code>).
+ * Throughput gives the requests per millisecond; the sample-time mode gives the latency distribution,
+ * whose <code>·p0.99</code> line is the p99.
+ *
+ * The site is <code>-Dtc11.bench.site-dir</code> (default <code>target/roq</code>, after the "compress"
+ * stage), else a synthetic one compressed with {@link CompressStage}, served by a Vert.x server on a free
+ * port. <code>-Dtc11.bench.base-url=http://host:port</code> measures a running server instead (the
+ * application with <code>tc11.serve.enabled=true</code>, or nginx for comparison) with the same paths.
+ *
+ * Run with: ./mvnw -Pjmh test-compile exec:exec -Djmh.args="StaticSiteLoadBenchmark"
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StaticSiteLoadBenchmark {
+
+    private static final int MAX_PATHS = 200;
+
+    @Param({"br", "gzip", "identity"})
+    String encoding;
+
+    private Vertx vertx;
+    private HttpClient client;
+    private String baseUrl;
+    private List<String> paths;
+    private List<String> etags;
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Setup
+    public void setUp() throws Exception {
+        baseUrl = System.getProperty("tc11.bench.base-url");
+        Path site = Path.of(System.getProperty("tc11.bench.site-dir", "target/roq"));
+        if (!Files.isDirectory(site)) {
+            site = syntheticSite();
+        }
+        paths = urlPaths(site);
+        if (baseUrl == null) {
+            vertx = Vertx.vertx();
+            Router router = Router.router(vertx);
+            StaticFiles files = new StaticFiles(site, AssetFingerprintStage.readCacheRules(
+                    site.resolve("derived/assets/cache-headers.json")), "public, max-age=0, must-revalidate", 2000);
+            router.route().handler(new StaticSiteHandler(files));
+            HttpServer server = vertx.createHttpServer().requestHandler(router).listen(0)
+                    .toCompletionStage().toCompletableFuture().get();
+            baseUrl = "http://localhost:" + server.actualPort();
+        }
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).connectTimeout(Duration.ofSeconds(5)).build();
+        etags = new ArrayList<>();
+        for (String path : paths) {
+            HttpResponse<Void> response = client.send(request(path).build(), HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException(path + " answered " + response.statusCode());
+            }
+            etags.add(response.headers().firstValue("ETag").orElse("\"\""));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        client.close();
+        if (vertx != null) {
+            vertx.close().toCompletionStage().toCompletableFuture().get();
+        }
+    }
+
+    /** Full response, body read. */
+    @Benchmark
+    public int get() throws IOException, InterruptedException {
+        String path = paths.get(Math.floorMod(next.getAndIncrement(), paths.size()));
+        return client.send(request(path).build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    /** Revalidation of a cached file by a browser: <code>304</code>, no body. */
+    @Benchmark
+    public int revalidate() throws IOException, InterruptedException {
+        int index = Math.floorMod(next.getAndIncrement(), paths.size());
+        int status = client.send(request(paths.get(index)).header("If-None-Match", etags.get(index)).build(),
+                HttpResponse.BodyHandlers.discarding()).statusCode();
+        if (status != 304) {
+            throw new IllegalStateException(paths.get(index) + " answered " + status);
+        }
+        return status;
+    }
+
+    private HttpRequest.Builder request(String path) {
+        String acceptEncoding = switch (encoding) {
+            case "br" -> "gzip, deflate, br";
+            case "gzip" -> "gzip, deflate";
+            default -> "identity";
+        };
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).header("Accept-Encoding", acceptEncoding).GET();
+    }
+
+    /** URL paths of the pages, stylesheets, scripts and JSON files of a site (folders for index.html). */
+    private static List<String> urlPaths(Path site) throws IOException {
+        try (Stream<Path> files = Files.walk(site)) {
+            List<String> paths = files.filter(Files::isRegularFile)
+                    .filter(file -> file.getFileName().toString().matches(".+\\.(html|css|js|json)"))
+                    .sorted(Comparator.comparing(Path::toString))
+                    .limit(MAX_PATHS)
+                    .map(file -> "/" + site.relativize(file).toString().replace('\\', '/'))
+                    .map(path -> path.endsWith("/index.html") ? path.substring(0, path.length() - "index.html".length()) : path)
+                    .toList();
+            if (paths.isEmpty()) {
+                throw new IllegalStateException("No page in " + site);
+            }
+            return paths;
+        }
+    }
+
+    /** 50 posts, a stylesheet, a script and a JSON index, of the sizes of the generated site. */
+    private static Path syntheticSite() throws Exception {
+        Path site = Files.createTempDirectory("tc11-site");
+        String paragraph = "<p class=\"text-gray-700 leading-relaxed\">Le tournoi interne du club a lieu ce week-end, inscriptions au club-house.</p>\n";
+        for (int i = 0; i < 50; i++) {
+            Path page = site.resolve("posts/actu-" + i + "/index.html");
+            Files.createDirectories(page.getParent());
+            Files.writeString(page, "<!DOCTYPE html>\n<html lang=\"fr\"><head><title>Actu " + i
+                    + "</title><link rel=\"stylesheet\" href=\"/style.css\"></head><body>\n" + paragraph.repeat(20 + i) + "</body></html>\n");
+        }
+        Files.writeString(site.resolve("index.html"), "<!DOCTYPE html>\n<html lang=\"fr\"><body>\n" + paragraph.repeat(60) + "</body></html>\n");
+        Files.writeString(site.resolve("style.css"), ".card { margin: 0 auto; padding: 1rem; color: #1f2937; }\n".repeat(400));
+        Files.writeString(site.resolve("search.js"), "export function search(query) { return index.filter(entry => entry.title.includes(query)); }\n".repeat(80));
+        Files.writeString(site.resolve("search-index.json"), "{\"title\":\"Actu\",\"url\":\"/posts/actu/\",\"summary\":\"Tournoi interne du club\"},".repeat(300));
+        new CompressStage().generate(site, List.of("html", "css", "js", "json"), List.of("br", "gzip"), 512, Runtime.getRuntime().availableProcessors());
+        return site;
+    }
+}
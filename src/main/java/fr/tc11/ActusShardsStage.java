@@ -0,0 +1,124 @@
+package fr.tc11;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * "actus-shards" build stage, run after Roq generated the site: splits <code>actus.json</code>
+ * (every post, newest first) into pages of <code>tc11.actus.page-size</code> posts,
+ * <code>actus-1.json</code>, <code>actus-2.json</code>…, listed by <code>actus-index.json</code>.
+ *
+ * The home page renders the first page at generation time ({@link ActusTemplateExtension}) and only
+ * fetches the next pages when "Charger plus d'actu" is clicked. Pages are cut from the file Roq wrote,
+ * so they hold exactly the same entries as <code>actus.json</code>, which is kept for compatibility.
+ */
+final class ActusShardsStage implements BuildStages.Stage {
+
+    private static final Logger LOG = Logger.getLogger(ActusShardsStage.class);
+
+    static final String SOURCE = "actus.json";
+    static final String MANIFEST = "actus-index.json";
+
+    private static final Pattern SHARD_NAME = Pattern.compile("actus-\\d{1,9}\\.json");
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * The manifest read by the home page: page size, number of posts and page URLs, in order.
+     */
+    record Manifest(int pageSize, int total, List<String> pages) {
+    }
+
+    @Override
+    public void run(BuildConfig config) throws Exception {
+        generate(config.getPath("tc11.site.dir", "target/roq"),
+                config.getInt("tc11.actus.page-size", ActusTemplateExtension.DEFAULT_PAGE_SIZE));
+    }
+
+    /**
+     * Writes the pages and the manifest next to <code>actus.json</code>, and removes the pages
+     * left over from a previous run with more posts.
+     *
+     * @return the manifest
+     */
+    Manifest generate(Path siteDir, int pageSize) throws IOException {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("tc11.actus.page-size must be at least 1, got " + pageSize);
+        }
+        Path source = siteDir.resolve(SOURCE);
+        if (!Files.isRegularFile(source)) {
+            throw new NoSuchFileException(source.toString(), null, "generate the site before the actus-shards stage");
+        }
+        JsonNode actus = MAPPER.readTree(source.toFile());
+        if (!actus.isArray()) {
+            throw new IOException(source + " is not a JSON array");
+        }
+
+        List<String> pages = new ArrayList<>();
+        for (int from = 0; from < actus.size(); from += pageSize) {
+            ArrayNode page = MAPPER.createArrayNode();
+            for (int i = from; i < Math.min(from + pageSize, actus.size()); i++) {
+                page.add(actus.get(i));
+            }
+            String name = shardName(pages.size() + 1);
+            write(siteDir.resolve(name), page);
+            pages.add("/" + name);
+        }
+        Manifest manifest = new Manifest(pageSize, actus.size(), List.copyOf(pages));
+        write(siteDir.resolve(MANIFEST), manifest);
+
+        int removed = removeStaleShards(siteDir, pages.size());
+        LOG.infof("Actus: %d posts in %d page(s) of %d, %d stale page(s) removed",
+                actus.size(), pages.size(), pageSize, removed);
+        return manifest;
+    }
+
+    static String shardName(int page) {
+        return "actus-" + page + ".json";
+    }
+
+    /**
+     * Reads a manifest written by this stage.
+     */
+    static Manifest readManifest(Path file) throws IOException {
+        return MAPPER.readValue(file.toFile(), Manifest.class);
+    }
+
+    private static void write(Path file, Object value) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            MAPPER.writeValue(temp.toFile(), value);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static int removeStaleShards(Path siteDir, int pages) throws IOException {
+        int removed = 0;
+        try (Stream<Path> files = Files.list(siteDir)) {
+            for (Path file : files.filter(Files::isRegularFile).toList()) {
+                String name = file.getFileName().toString();
+                if (!SHARD_NAME.matcher(name).matches()) continue;
+                int page = Integer.parseInt(name.substring("actus-".length(), name.length() - ".json".length()));
+                if (page < 1 || page > pages) {
+                    Files.delete(file);
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+}
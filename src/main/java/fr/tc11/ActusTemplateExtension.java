@@ -0,0 +1,73 @@
+package fr.tc11;
+
+import io.quarkus.arc.Unremovable;
+import io.quarkus.qute.TemplateExtension;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import jakarta.enterprise.inject.spi.CDI;
+import jakarta.inject.Singleton;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Qute template extension to render the first page of news on the home page at generation time.
+ *
+ * Usage in templates: {#for post in actus:firstPage(site.collections.posts)}...{/for}
+ *
+ * The next pages are the actus-N.json files cut from actus.json by the "actus-shards" build stage
+ * ({@link ActusShardsStage}), with the same page size, and fetched on demand.
+ */
+@TemplateExtension(namespace = "actus")
+public class ActusTemplateExtension {
+
+    static final int DEFAULT_PAGE_SIZE = 3;
+
+    // Same rendering as toLocaleDateString('fr-FR', { day: '2-digit', month: 'short', year: 'numeric' })
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd MMM yyyy", Locale.FRENCH);
+
+    /**
+     * Returns the posts of the first page, in collection order (newest first).
+     *
+     * @param posts the posts collection (site.collections.posts)
+     * @return the first tc11.actus.page-size posts
+     */
+    public static List<?> firstPage(List<?> posts) {
+        if (posts == null) return List.of();
+        return posts.subList(0, Math.min(pageSize(), posts.size()));
+    }
+
+    /**
+     * Returns the number of pages (actus-N.json files) of the collection, at least 1.
+     */
+    public static int pageCount(List<?> posts) {
+        int size = posts == null ? 0 : posts.size();
+        return Math.max(1, (size + pageSize() - 1) / pageSize());
+    }
+
+    /**
+     * Returns the page size, for the script that loads the next pages.
+     */
+    public static int pageSize() {
+        return CDI.current().select(ActusConfig.class).get().pageSize();
+    }
+
+    /**
+     * Formats a post date like the cards loaded by the browser (e.g. "07 avr. 2026").
+     */
+    public static String date(TemporalAccessor date) {
+        return date == null ? "" : DATE_FORMAT.format(date);
+    }
+
+    @Singleton
+    @Unremovable
+    public static class ActusConfig {
+        @ConfigProperty(name = "tc11.actus.page-size", defaultValue = "" + DEFAULT_PAGE_SIZE)
+        int pageSize;
+
+        int pageSize() {
+            return Math.max(1, pageSize);
+        }
+    }
+}
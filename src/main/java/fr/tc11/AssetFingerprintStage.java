@@ -0,0 +1,212 @@
+package fr.tc11;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * "assets" build stage, run before Roq generates the site: copies the static files of
+ * <code>public/</code> (stylesheet, scripts, site images) to names carrying their content hash
+ * (<code>/style.css</code> -> <code>/derived/assets/style.0123456789abcdef.css</code>) and writes the
+ * manifest read by <code>{asset:url('/style.css')}</code> ({@link AssetTemplateExtension}).
+ *
+ * A changed file gets a new URL, so fingerprinted files can be cached as immutable: the stage also
+ * writes the cache rules of those paths, in <code>cache-headers.json</code> (path pattern -> headers)
+ * and in the <code>_headers</code> format read by Netlify and Cloudflare Pages. The original files are
+ * left in place for the URLs that must not change (e.g. Open Graph images).
+ */
+final class AssetFingerprintStage implements BuildStages.Stage {
+
+    private static final Logger LOG = Logger.getLogger(AssetFingerprintStage.class);
+
+    static final String MANIFEST = "manifest.json";
+    static final String CACHE_HEADERS = "cache-headers.json";
+    static final String IMMUTABLE = "public, max-age=31536000, immutable";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    /**
+     * Headers of the files whose path matches a pattern, where one <code>*</code> matches any characters
+     * (<code>/derived/*</code>, <code>/assets/instagram/*.jpg</code>), as in the <code>_headers</code> format.
+     */
+    record CacheRule(String path, Map<String, String> headers) {
+
+        boolean matches(String urlPath) {
+            int star = path.indexOf('*');
+            if (star < 0) return urlPath.equals(path);
+            String prefix = path.substring(0, star);
+            String suffix = path.substring(star + 1);
+            return urlPath.length() >= prefix.length() + suffix.length() && urlPath.startsWith(prefix) && urlPath.endsWith(suffix);
+        }
+    }
+
+    @Override
+    public void run(BuildConfig config) throws Exception {
+        Path outputDir = config.getPath("tc11.assets.output-dir", "public/derived/assets");
+        Map<String, String> manifest = generate(config.getPath("tc11.assets.public-dir", "public"),
+                config.getStrings("tc11.assets.paths", "style.css,reactions.js,instagramposts.js,search.js,assets"),
+                config.getStrings("tc11.assets.exclude", "assets/instagram"),
+                outputDir, config.get("tc11.assets.url-prefix", "/derived/assets"));
+        List<CacheRule> rules = cacheRules(config.getStrings("tc11.assets.immutable-paths", "/derived/*,/assets/instagram/*.jpg"));
+        writeCacheHeaders(outputDir.resolve(CACHE_HEADERS), config.getPath("tc11.assets.headers-file", "public/_headers"), rules);
+        LOG.infof("Cache headers: %d immutable path(s)", rules.size());
+        if (manifest.isEmpty()) {
+            LOG.warnf("No asset found in %s", config.get("tc11.assets.public-dir", "public"));
+        }
+    }
+
+    /**
+     * Copies the listed files and the files of the listed folders (except the excluded ones) to their
+     * fingerprinted names, rewrites the manifest and removes the copies no longer listed.
+     *
+     * @param paths files or folders relative to the public folder
+     * @param excluded files or folders relative to the public folder
+     * @return the manifest (logical URL -> fingerprinted URL)
+     */
+    Map<String, String> generate(Path publicDir, List<String> paths, List<String> excluded, Path outputDir, String urlPrefix)
+            throws IOException {
+        Map<String, String> manifest = new TreeMap<>();
+        int copied = 0;
+        for (Path source : sources(publicDir, paths, excluded)) {
+            String relative = publicDir.relativize(source).toString().replace('\\', '/');
+            String fingerprinted = fingerprintedName(relative, ImageDerivativesStage.contentHash(source));
+            Path target = outputDir.resolve(fingerprinted);
+            if (!Files.isRegularFile(target)) {
+                Files.createDirectories(target.getParent());
+                Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+                Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                copied++;
+            }
+            manifest.put("/" + relative, urlPrefix + "/" + fingerprinted);
+        }
+        writeJson(outputDir.resolve(MANIFEST), manifest);
+        int removed = removeOrphans(outputDir, urlPrefix, manifest);
+        LOG.infof("Fingerprinted assets: %d files, %d copied, %d up to date, %d stale files removed",
+                manifest.size(), copied, manifest.size() - copied, removed);
+        return manifest;
+    }
+
+    /**
+     * <code>assets/hero-banner.jpg</code> -> <code>assets/hero-banner.0123456789abcdef.jpg</code>.
+     */
+    static String fingerprintedName(String relative, String hash) {
+        int slash = relative.lastIndexOf('/');
+        int dot = relative.lastIndexOf('.');
+        if (dot <= slash + 1) {
+            return relative + "." + hash;
+        }
+        return relative.substring(0, dot) + "." + hash + relative.substring(dot);
+    }
+
+    static List<CacheRule> cacheRules(List<String> immutablePaths) {
+        List<CacheRule> rules = new ArrayList<>();
+        for (String path : immutablePaths) {
+            rules.add(new CacheRule(path, Map.of("Cache-Control", IMMUTABLE)));
+        }
+        return rules;
+    }
+
+    /**
+     * Writes the rules as JSON and in the <code>_headers</code> format.
+     */
+    static void writeCacheHeaders(Path json, Path headersFile, List<CacheRule> rules) throws IOException {
+        writeJson(json, rules);
+        StringBuilder headers = new StringBuilder("# Generated by the \"assets\" build stage (AssetFingerprintStage)\n");
+        for (CacheRule rule : rules) {
+            headers.append(rule.path()).append('\n');
+            rule.headers().forEach((name, value) -> headers.append("  ").append(name).append(": ").append(value).append('\n'));
+        }
+        Files.createDirectories(headersFile.toAbsolutePath().getParent());
+        Files.writeString(headersFile, headers, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a manifest written by this stage; empty when missing or unreadable.
+     */
+    static Map<String, String> readManifest(Path file) {
+        if (!Files.isRegularFile(file)) return Map.of();
+        try {
+            return MAPPER.readValue(file.toFile(), new TypeReference<Map<String, String>>() { });
+        } catch (IOException e) {
+            LOG.warnf("Failed to read asset manifest %s: %s", file, e.getMessage());
+            return Map.of();
+        }
+    }
+
+    /**
+     * Reads cache rules written by this stage; empty when missing or unreadable.
+     */
+    static List<CacheRule> readCacheRules(Path file) {
+        if (!Files.isRegularFile(file)) return List.of();
+        try {
+            return MAPPER.readValue(file.toFile(), new TypeReference<List<CacheRule>>() { });
+        } catch (IOException e) {
+            LOG.warnf("Failed to read cache headers %s: %s", file, e.getMessage());
+            return List.of();
+        }
+    }
+
+    private static List<Path> sources(Path publicDir, List<String> paths, List<String> excluded) throws IOException {
+        List<Path> excludedPaths = excluded.stream().map(publicDir::resolve).map(Path::normalize).toList();
+        Map<Path, Path> sources = new LinkedHashMap<>();
+        for (String path : paths) {
+            Path source = publicDir.resolve(path).normalize();
+            if (Files.isRegularFile(source)) {
+                sources.put(source, source);
+            } else if (Files.isDirectory(source)) {
+                try (Stream<Path> files = Files.walk(source)) {
+                    files.filter(Files::isRegularFile).sorted().forEach(file -> sources.put(file, file));
+                }
+            } else {
+                LOG.warnf("Asset %s not found", source);
+            }
+        }
+        return sources.keySet().stream()
+                .filter(source -> excludedPaths.stream().noneMatch(source::startsWith))
+                .toList();
+    }
+
+    private static void writeJson(Path file, Object value) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            MAPPER.writeValue(temp.toFile(), value);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static int removeOrphans(Path outputDir, String urlPrefix, Map<String, String> manifest) throws IOException {
+        Set<Path> referenced = new HashSet<>();
+        referenced.add(outputDir.resolve(MANIFEST));
+        referenced.add(outputDir.resolve(CACHE_HEADERS));
+        manifest.values().forEach(url -> referenced.add(outputDir.resolve(url.substring(urlPrefix.length() + 1))));
+        int removed = 0;
+        try (Stream<Path> files = Files.walk(outputDir)) {
+            for (Path file : files.filter(Files::isRegularFile).toList()) {
+                if (!referenced.contains(file)) {
+                    Files.delete(file);
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+}
@@ -0,0 +1,54 @@
+package fr.tc11;
+
+import io.quarkus.arc.Unremovable;
+import io.quarkus.qute.TemplateExtension;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import jakarta.enterprise.inject.spi.CDI;
+import jakarta.inject.Singleton;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Qute template extension to reference static files of <code>public/</code> by their fingerprinted URL.
+ *
+ * Usage in templates: &lt;link rel="stylesheet" href="{asset:url('/style.css')}" /&gt;
+ *
+ * The URLs come from the manifest of the "assets" build stage ({@link AssetFingerprintStage}).
+ * When the stage did not run (e.g. in dev mode), or for a file it does not fingerprint,
+ * the path is returned as is.
+ */
+@TemplateExtension(namespace = "asset")
+public class AssetTemplateExtension {
+
+    /**
+     * Returns the fingerprinted URL of a file of <code>public/</code>.
+     *
+     * @param path the root-relative URL of the file (e.g. /style.css)
+     * @return the fingerprinted URL (e.g. /derived/assets/style.0123456789abcdef.css), or the path
+     */
+    public static String url(String path) {
+        if (path == null || path.isEmpty()) return "";
+        String key = path.startsWith("/") ? path : "/" + path;
+        String fingerprinted = CDI.current().select(AssetManifest.class).get().urls().get(key);
+        return fingerprinted != null ? fingerprinted : path;
+    }
+
+    @Singleton
+    @Unremovable
+    public static class AssetManifest {
+        @ConfigProperty(name = "tc11.assets.output-dir", defaultValue = "public/derived/assets")
+        String outputDir;
+
+        private volatile Map<String, String> urls;
+
+        Map<String, String> urls() {
+            Map<String, String> current = urls;
+            if (current == null) {
+                current = AssetFingerprintStage.readManifest(Path.of(outputDir).resolve(AssetFingerprintStage.MANIFEST));
+                urls = current;
+            }
+            return current;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package fr.tc11;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Configuration of the build stages, which run as a plain Java program outside Quarkus.
+ *
+ * Reads the same keys as the application: a system property (<code>-Dtc11.images.threads=2</code>)
+ * wins over the environment variable (<code>TC11_IMAGES_THREADS</code>), which wins over
+ * <code>application.properties</code>, which wins over the default given by the stage.
+ */
+final class BuildConfig {
+
+    private final Properties properties;
+    private final Map<String, String> environment;
+
+    BuildConfig(Properties properties, Map<String, String> environment) {
+        this.properties = properties;
+        this.environment = environment;
+    }
+
+    /**
+     * Loads <code>application.properties</code> from the classpath.
+     */
+    static BuildConfig load() {
+        Properties properties = new Properties();
+        try (InputStream in = BuildConfig.class.getResourceAsStream("/application.properties")) {
+            if (in != null) {
+                properties.load(in);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read application.properties", e);
+        }
+        return new BuildConfig(properties, System.getenv());
+    }
+
+    String get(String key, String defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            value = environment.get(key.toUpperCase(Locale.ROOT).replaceAll("[^A-Z0-9]", "_"));
+        }
+        if (value == null) {
+            value = properties.getProperty(key);
+        }
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    boolean getBoolean(String key, boolean defaultValue) {
+        return Boolean.parseBoolean(get(key, String.valueOf(defaultValue)));
+    }
+
+    int getInt(String key, int defaultValue) {
+        return Integer.parseInt(get(key, String.valueOf(defaultValue)));
+    }
+
+    float getFloat(String key, float defaultValue) {
+        return Float.parseFloat(get(key, String.valueOf(defaultValue)));
+    }
+
+    List<Integer> getInts(String key, String defaultValue) {
+        List<Integer> values = new ArrayList<>();
+        for (String value : get(key, defaultValue).split(",")) {
+            if (!value.isBlank()) {
+                values.add(Integer.parseInt(value.trim()));
+            }
+        }
+        return values;
+    }
+
+    List<String> getStrings(String key, String defaultValue) {
+        List<String> values = new ArrayList<>();
+        for (String value : get(key, defaultValue).split(",")) {
+            if (!value.isBlank()) {
+                values.add(value.trim());
+            }
+        }
+        return values;
+    }
+
+    Path getPath(String key, String defaultValue) {
+        return Path.of(get(key, defaultValue));
+    }
+
+    /**
+     * Number of worker threads for CPU-bound stages; 0 or less means one per core.
+     */
+    int threads(String key) {
+        int threads = getInt(key, 0);
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+}
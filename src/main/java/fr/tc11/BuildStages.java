@@ -0,0 +1,66 @@
+package fr.tc11;
+
+import org.jboss.logging.Logger;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Command-line entry point for the build steps that run before Roq generates the site
+ * (e.g. resizing images into <code>public/</code>) or after it (post-processing <code>target/roq</code>).
+ *
+ * Stages run in the order given on the command line:
+ * <pre>
+ * ./mvnw -B compile exec:java -Dexec.mainClass=fr.tc11.BuildStages -Dexec.args="images"
+ * ./mvnw -B compile exec:java -Dexec.mainClass=fr.tc11.BuildStages -Dexec.args="actus-shards search-index page-features critical-css minify compress"
+ * </pre>
+ */
+public final class BuildStages {
+
+    private static final Logger LOG = Logger.getLogger(BuildStages.class);
+
+    /**
+     * One build step, configured from {@link BuildConfig}.
+     */
+    interface Stage {
+        void run(BuildConfig config) throws Exception;
+    }
+
+    private static final Map<String, Stage> STAGES = new LinkedHashMap<>();
+
+    static {
+        STAGES.put("images", new ImageDerivativesStage());
+        STAGES.put("og-cards", new OgCardStage());
+        STAGES.put("assets", new AssetFingerprintStage());
+        STAGES.put("actus-shards", new ActusShardsStage());
+        STAGES.put("search-index", new SearchIndexStage());
+        STAGES.put("page-features", new PageFeaturesStage());
+        STAGES.put("critical-css", new CriticalCssStage());
+        STAGES.put("minify", new MinifyStage());
+        STAGES.put("compress", new CompressStage());
+    }
+
+    private BuildStages() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Usage: BuildStages <stage>... (stages: " + String.join(", ", STAGES.keySet()) + ")");
+            System.exit(2);
+        }
+        // Image stages use Java2D without a display
+        System.setProperty("java.awt.headless", "true");
+
+        BuildConfig config = BuildConfig.load();
+        for (String name : args) {
+            Stage stage = STAGES.get(name);
+            if (stage == null) {
+                throw new IllegalArgumentException("Unknown build stage '" + name + "', expected one of " + STAGES.keySet());
+            }
+            long start = System.nanoTime();
+            LOG.infof("Running build stage '%s'", name);
+            stage.run(config);
+            LOG.infof("Build stage '%s' done in %d ms", name, (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package fr.tc11;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.BrotliOutputStream;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * "compress" build stage, run last on the generated site: writes a <code>.gz</code> and a <code>.br</code>
+ * sibling of every compressible file of <code>tc11.site.dir</code> (gzip level 9, Brotli quality 11), for
+ * servers that send pre-compressed files ({@link StaticSiteRoute}, nginx <code>gzip_static</code>…).
+ *
+ * A sibling gets the modification time of its file and is only rewritten when that time changes;
+ * siblings that are not smaller than their file are not kept, those of removed files are deleted.
+ * Files are compressed in parallel. Brotli needs the native library of brotli4j: without it (platform
+ * not supported), only gzip files are written.
+ */
+final class CompressStage implements BuildStages.Stage {
+
+    private static final Logger LOG = Logger.getLogger(CompressStage.class);
+
+    /** Content coding -> suffix of its files, by order of preference. */
+    static final Map<String, String> FORMATS = new LinkedHashMap<>();
+
+    static {
+        FORMATS.put("br", ".br");
+        FORMATS.put("gzip", ".gz");
+    }
+
+    /**
+     * Files considered, siblings written, siblings already up to date, siblings removed, and the
+     * bytes of the files and of their smallest sibling.
+     */
+    record Summary(int files, int written, int upToDate, int removed, long before, long after) {
+    }
+
+    private enum Status { WRITTEN, UP_TO_DATE, NOT_SMALLER }
+
+    private record Result(Path file, String format, Status status, long size) {
+    }
+
+    @Override
+    public void run(BuildConfig config) throws Exception {
+        generate(config.getPath("tc11.site.dir", "target/roq"),
+                config.getStrings("tc11.compress.extensions", "html,css,js,mjs,json,svg,xml,txt,map,webmanifest,ico"),
+                config.getStrings("tc11.compress.formats", "br,gzip"),
+                config.getInt("tc11.compress.min-size", 512), config.threads("tc11.compress.threads"));
+    }
+
+    Summary generate(Path siteDir, List<String> extensions, List<String> formats, int minSize, int threads)
+            throws IOException, InterruptedException {
+        if (!Files.isDirectory(siteDir)) {
+            throw new NoSuchFileException(siteDir.toString(), null, "generate the site before the compress stage");
+        }
+        List<String> enabled = new ArrayList<>();
+        for (String format : formats) {
+            if (!FORMATS.containsKey(format)) {
+                throw new IllegalArgumentException("Unknown compression format " + format + ", expected one of " + FORMATS.keySet());
+            }
+            if (format.equals("br") && !brotliAvailable()) {
+                LOG.warnf("Brotli is not available on this platform (%s), writing gzip files only", Brotli4jLoader.getUnavailabilityCause());
+                continue;
+            }
+            enabled.add(format);
+        }
+        List<Path> files;
+        List<Path> siblings;
+        try (Stream<Path> walk = Files.walk(siteDir)) {
+            List<Path> all = walk.filter(Files::isRegularFile).sorted().toList();
+            // Siblings of compressible files only: an archive.tar.gz of the site is not one
+            siblings = all.stream().filter(file -> isSibling(file) && extensions.contains(extension(source(file)))).toList();
+            files = all.stream()
+                    .filter(file -> !isSibling(file) && extensions.contains(extension(file)))
+                    .filter(file -> size(file) >= minSize)
+                    .toList();
+        }
+
+        List<Result> results = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Result>> tasks = new ArrayList<>();
+            for (Path file : files) {
+                for (String format : enabled) {
+                    tasks.add(executor.submit(() -> compress(file, format)));
+                }
+            }
+            for (Future<Result> task : tasks) {
+                try {
+                    results.add(task.get());
+                } catch (ExecutionException e) {
+                    LOG.warnf("Skipping compression: %s", e.getCause().getMessage());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Set<Path> kept = results.stream().filter(result -> result.status() != Status.NOT_SMALLER)
+                .map(result -> sibling(result.file(), result.format())).collect(Collectors.toSet());
+        int removed = 0;
+        for (Path sibling : siblings) {
+            if (!kept.contains(sibling) && Files.deleteIfExists(sibling)) removed++;
+        }
+
+        Map<Path, Long> smallest = new LinkedHashMap<>();
+        files.forEach(file -> smallest.put(file, size(file)));
+        results.stream().filter(result -> result.status() != Status.NOT_SMALLER)
+                .forEach(result -> smallest.merge(result.file(), result.size(), Math::min));
+        long before = files.stream().mapToLong(CompressStage::size).sum();
+        long after = smallest.values().stream().mapToLong(Long::longValue).sum();
+        Summary summary = new Summary(files.size(), count(results, Status.WRITTEN), count(results, Status.UP_TO_DATE), removed, before, after);
+        LOG.infof("Compress (%s): %d files, %d written, %d up to date, %d removed, %d KB -> %d KB",
+                String.join(", ", enabled), files.size(), summary.written(), summary.upToDate(), removed, before / 1024, after / 1024);
+        return summary;
+    }
+
+    private static int count(List<Result> results, Status status) {
+        return (int) results.stream().filter(result -> result.status() == status).count();
+    }
+
+    /**
+     * Writes the sibling of a file in a format, unless it is up to date; a sibling not smaller than
+     * the file is not kept.
+     */
+    private static Result compress(Path file, String format) throws IOException {
+        Path sibling = sibling(file, format);
+        FileTime modified = Files.getLastModifiedTime(file);
+        if (Files.isRegularFile(sibling) && Files.getLastModifiedTime(sibling).equals(modified)) {
+            return new Result(file, format, Status.UP_TO_DATE, Files.size(sibling));
+        }
+        Path temp = sibling.resolveSibling(sibling.getFileName() + ".tmp");
+        try {
+            try (OutputStream out = encoder(format, Files.newOutputStream(temp))) {
+                Files.copy(file, out);
+            }
+            long size = Files.size(temp);
+            if (size >= Files.size(file)) {
+                Files.deleteIfExists(sibling);
+                return new Result(file, format, Status.NOT_SMALLER, size);
+            }
+            Files.setLastModifiedTime(temp, modified);
+            Files.move(temp, sibling, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return new Result(file, format, Status.WRITTEN, size);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static OutputStream encoder(String format, OutputStream out) throws IOException {
+        if (format.equals("br")) {
+            return new BrotliOutputStream(out, new Encoder.Parameters().setQuality(11));
+        }
+        return new GZIPOutputStream(out, 64 * 1024) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        };
+    }
+
+    static boolean brotliAvailable() {
+        return Brotli4jLoader.isAvailable();
+    }
+
+    static Path sibling(Path file, String format) {
+        return file.resolveSibling(file.getFileName() + FORMATS.get(format));
+    }
+
+    private static Path source(Path sibling) {
+        String name = sibling.getFileName().toString();
+        return sibling.resolveSibling(name.substring(0, name.lastIndexOf('.')));
+    }
+
+    private static boolean isSibling(Path file) {
+        String name = file.getFileName().toString();
+        return FORMATS.values().stream().anyMatch(name::endsWith);
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static String extension(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,491 @@
+package fr.tc11;
+
+import org.jboss.logging.Logger;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Attribute;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.QueryParser;
+import org.jsoup.select.Selector;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * "critical-css" build stage, run after Roq generated the site (and after "page-features"): inlines in
+ * each page the CSS rules that apply above the fold, and loads its stylesheets without blocking rendering.
+ *
+ * There is no browser: the fold is the first <code>tc11.critical.fold-elements</code> elements of the body,
+ * and every style rule of the local stylesheets of <code>&lt;head&gt;</code> whose selector matches one of
+ * them ({@link #matchable(String)}, jsoup selectors) is kept, with its <code>@media</code>/<code>@supports</code>
+ * groups, the <code>@font-face</code> and <code>@property</code> rules. Matching errs on keeping rules: state
+ * pseudo-classes (<code>:hover</code>), pseudo-elements and selectors jsoup cannot read count as matching.
+ *
+ * Matching only depends on the tags and attributes of the fold ({@link #skeleton}, not on text), so pages of
+ * the same layout share their result: critical CSS is cached per skeleton and stylesheet hash, in memory and
+ * in <code>tc11.critical.cache-dir</code>. Pages are processed in parallel.
+ */
+final class CriticalCssStage implements BuildStages.Stage {
+
+    private static final Logger LOG = Logger.getLogger(CriticalCssStage.class);
+
+    /** Bump when the selection changes, to invalidate the cache. */
+    static final int VERSION = 1;
+
+    static final String MARKER = "data-critical";
+
+    /** Attributes whose value selectors may test; the others only count by name. */
+    private static final Set<String> VALUE_ATTRIBUTES = Set.of("class", "id", "type", "rel", "role", "lang", "dir", "open", "hidden");
+    private static final Set<String> STRUCTURAL = Set.of("first-child", "last-child", "only-child", "first-of-type", "last-of-type",
+            "only-of-type", "root");
+    private static final Set<String> NTH = Set.of("nth-child", "nth-of-type");
+    private static final Set<String> KEPT_AT_RULES = Set.of("font-face", "property", "layer", "namespace");
+
+    private static final Pattern HEAD_END = Pattern.compile("</head\\s*>", Pattern.CASE_INSENSITIVE);
+    private static final Pattern LINK = Pattern.compile("<link\\b[^>]*>", Pattern.CASE_INSENSITIVE);
+    private static final Pattern ATTRIBUTE = Pattern.compile("([a-zA-Z-]+)\\s*=\\s*(\"[^\"]*\"|'[^']*'|[^\\s>]+)");
+
+    private final Map<Path, List<CssRules.Node>> stylesheets = new ConcurrentHashMap<>();
+    private final Map<Path, String> stylesheetHashes = new ConcurrentHashMap<>();
+    private final Map<String, Optional<Evaluator>> evaluators = new ConcurrentHashMap<>();
+
+    /**
+     * Pages read, pages given critical CSS, distinct critical CSS computed by this run and reused
+     * (same skeleton and stylesheets as another page, or from the cache folder).
+     */
+    record Summary(int pages, int inlined, int computed, int reused) {
+    }
+
+    /** A render-blocking local stylesheet link of a page. */
+    record Stylesheet(String tag, String href, Path file) {
+    }
+
+    @Override
+    public void run(BuildConfig config) throws Exception {
+        generate(config.getPath("tc11.site.dir", "target/roq"), config.getPath("tc11.critical.cache-dir", "target/critical-css-cache"),
+                config.getInt("tc11.critical.fold-elements", 150), config.threads("tc11.critical.threads"));
+    }
+
+    Summary generate(Path siteDir, Path cacheDir, int foldElements, int threads) throws IOException, InterruptedException {
+        if (!Files.isDirectory(siteDir)) {
+            throw new NoSuchFileException(siteDir.toString(), null, "generate the site before the critical-css stage");
+        }
+        List<Path> pages;
+        try (Stream<Path> files = Files.walk(siteDir)) {
+            pages = files.filter(Files::isRegularFile).filter(file -> file.getFileName().toString().endsWith(".html")).sorted().toList();
+        }
+        Files.createDirectories(cacheDir);
+        Map<String, CompletableFuture<String>> results = new ConcurrentHashMap<>();
+        AtomicInteger computed = new AtomicInteger();
+        int inlined = 0;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Map<Path, Future<Boolean>> tasks = new LinkedHashMap<>();
+            for (Path page : pages) {
+                tasks.put(page, executor.submit(() -> process(page, siteDir, cacheDir, foldElements, results, computed)));
+            }
+            for (Map.Entry<Path, Future<Boolean>> task : tasks.entrySet()) {
+                try {
+                    if (task.getValue().get()) inlined++;
+                } catch (ExecutionException e) {
+                    LOG.warnf("Skipping critical CSS of %s: %s", task.getKey(), e.getCause().getMessage());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        int removed = removeStaleCache(cacheDir, results.keySet());
+        Summary summary = new Summary(pages.size(), inlined, computed.get(), inlined - computed.get());
+        LOG.infof("Critical CSS: %d pages, %d inlined, %d computed, %d reused, %d stale cache entries removed",
+                pages.size(), inlined, summary.computed(), summary.reused(), removed);
+        return summary;
+    }
+
+    private boolean process(Path page, Path siteDir, Path cacheDir, int foldElements, Map<String, CompletableFuture<String>> results,
+                            AtomicInteger computed) throws IOException {
+        String html = Files.readString(page, StandardCharsets.UTF_8);
+        Matcher headEnd = HEAD_END.matcher(html);
+        if (!headEnd.find() || html.substring(0, headEnd.start()).contains(MARKER)) return false;
+        List<Stylesheet> links = stylesheets(html.substring(0, headEnd.start()), siteDir);
+        if (links.isEmpty()) return false;
+
+        Document skeleton = skeleton(Jsoup.parse(html), foldElements);
+        StringBuilder key = new StringBuilder("v" + VERSION + "\n").append(skeleton.outerHtml());
+        for (Stylesheet link : links) {
+            key.append('\n').append(link.href()).append(' ').append(stylesheetHashes.computeIfAbsent(link.file(), file -> {
+                try {
+                    return ImageDerivativesStage.contentHash(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+        String hash = hash(key.toString());
+        CompletableFuture<String> created = new CompletableFuture<>();
+        CompletableFuture<String> existing = results.putIfAbsent(hash, created);
+        if (existing == null) {
+            // First page with this skeleton: read the cache folder, else compute
+            Path cached = cacheDir.resolve(hash + ".css");
+            try {
+                if (Files.isRegularFile(cached)) {
+                    created.complete(Files.readString(cached, StandardCharsets.UTF_8));
+                } else {
+                    String critical = critical(skeleton, links);
+                    write(cached, critical);
+                    computed.incrementAndGet();
+                    created.complete(critical);
+                }
+            } catch (IOException | RuntimeException e) {
+                created.completeExceptionally(e);
+                throw e;
+            }
+        }
+        String css = (existing != null ? existing : created).join();
+        if (css.isEmpty()) return false;
+        write(page, inline(html, links, css));
+        return true;
+    }
+
+    /**
+     * The stylesheets of the head that block rendering and are files of the site.
+     */
+    static List<Stylesheet> stylesheets(String head, Path siteDir) {
+        List<Stylesheet> links = new ArrayList<>();
+        Matcher link = LINK.matcher(head);
+        while (link.find()) {
+            Map<String, String> attributes = new LinkedHashMap<>();
+            Matcher attribute = ATTRIBUTE.matcher(link.group());
+            while (attribute.find()) {
+                String value = attribute.group(2);
+                if (value.startsWith("\"") || value.startsWith("'")) value = value.substring(1, value.length() - 1);
+                attributes.put(attribute.group(1).toLowerCase(Locale.ROOT), value);
+            }
+            List<String> rel = List.of(attributes.getOrDefault("rel", "").toLowerCase(Locale.ROOT).split("\\s+"));
+            String media = attributes.getOrDefault("media", "all").toLowerCase(Locale.ROOT);
+            String href = attributes.getOrDefault("href", "");
+            if (!rel.contains("stylesheet") || rel.contains("alternate") || !(media.equals("all") || media.equals("screen"))
+                    || !href.startsWith("/") || href.startsWith("//")) {
+                continue;
+            }
+            String path = href.replaceFirst("[?#].*", "").substring(1);
+            Path file = siteDir.resolve(path).normalize();
+            if (file.startsWith(siteDir.normalize()) && Files.isRegularFile(file)) {
+                links.add(new Stylesheet(link.group(), href, file));
+            }
+        }
+        return links;
+    }
+
+    /**
+     * A copy of the page reduced to what selectors can test: the first <code>foldElements</code> elements
+     * of the body, without text, scripts or SVG content, their class and id names made readable by jsoup
+     * ({@link #identifier(String)}) and the values of the other attributes blanked
+     * (except {@link #VALUE_ATTRIBUTES} and <code>aria-*</code>).
+     */
+    static Document skeleton(Document page, int foldElements) {
+        Document skeleton = page.clone();
+        skeleton.head().empty();
+        skeleton.select("script, style, template, noscript").remove();
+        skeleton.select("svg > *").remove();
+        int index = 0;
+        for (Element element : skeleton.body().getAllElements()) {
+            if (element == skeleton.body()) continue;
+            if (element.ownerDocument() != skeleton) continue; // under an element already removed
+            if (++index > foldElements) element.remove();
+        }
+        for (Element element : skeleton.getAllElements()) {
+            for (Node child : new ArrayList<>(element.childNodes())) {
+                if (!(child instanceof Element)) child.remove();
+            }
+            for (Attribute attribute : new ArrayList<>(element.attributes().asList())) {
+                String name = attribute.getKey();
+                if (name.equals("class")) {
+                    List<String> classes = new ArrayList<>();
+                    for (String value : attribute.getValue().trim().split("\\s+")) {
+                        if (!value.isEmpty()) classes.add(identifier(value));
+                    }
+                    element.attr("class", String.join(" ", classes));
+                } else if (name.equals("id")) {
+                    element.attr("id", identifier(attribute.getValue()));
+                } else if (!VALUE_ATTRIBUTES.contains(name) && !name.startsWith("aria-")) {
+                    element.attr(name, "");
+                }
+            }
+        }
+        return skeleton;
+    }
+
+    /**
+     * The critical CSS of a skeleton: the rules of the stylesheets matching one of its elements.
+     */
+    String critical(Document skeleton, List<Stylesheet> links) throws IOException {
+        StringBuilder css = new StringBuilder();
+        for (Stylesheet link : links) {
+            List<CssRules.Node> rules = stylesheets.computeIfAbsent(link.file(), file -> {
+                try {
+                    return CssRules.parse(Files.readString(file, StandardCharsets.UTF_8));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            css.append(CssRules.write(CssRules.filter(rules, node -> switch (node) {
+                case CssRules.Rule rule -> CssRules.selectors(rule.selectors()).stream().anyMatch(selector -> matches(skeleton, selector));
+                case CssRules.Group group -> !group.prelude().toLowerCase(Locale.ROOT).matches("@media\\s+print\\b.*");
+                case CssRules.AtRule atRule -> KEPT_AT_RULES.contains(atRule.name());
+            })));
+        }
+        return css.toString();
+    }
+
+    private boolean matches(Document skeleton, String selector) {
+        Optional<Evaluator> evaluator = evaluators.computeIfAbsent(selector, s -> {
+            String query = matchable(s);
+            if (query == null) return Optional.empty();
+            try {
+                return Optional.of(QueryParser.parse(query));
+            } catch (Selector.SelectorParseException e) {
+                return Optional.empty();
+            }
+        });
+        return evaluator.isEmpty() || !skeleton.select(evaluator.get()).isEmpty();
+    }
+
+    /**
+     * The selector as a jsoup query matching at least the same elements of a {@link #skeleton}: escaped
+     * class and id names are rewritten with {@link #identifier(String)}, pseudo-elements and pseudo-classes
+     * other than structural ones are dropped, attribute value tests only kept for {@link #VALUE_ATTRIBUTES}.
+     *
+     * @return the query, or null when the selector cannot be read (it is then kept)
+     */
+    static String matchable(String selector) {
+        String s = selector.trim();
+        StringBuilder query = new StringBuilder();
+        StringBuilder compound = new StringBuilder();
+        int i = 0;
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            if (Character.isWhitespace(c) || c == '>' || c == '+' || c == '~') {
+                if (i == 0) return null; // relative selector of a nested rule
+                String combinator = " ";
+                while (i < s.length() && (Character.isWhitespace(s.charAt(i)) || ">+~".indexOf(s.charAt(i)) >= 0)) {
+                    if (s.charAt(i) != ' ' && !Character.isWhitespace(s.charAt(i))) combinator = " " + s.charAt(i) + " ";
+                    i++;
+                }
+                query.append(compound.isEmpty() ? "*" : compound).append(combinator);
+                compound.setLength(0);
+            } else if (c == '[') {
+                int end = i + 1;
+                while (end < s.length() && s.charAt(end) != ']') {
+                    if (s.charAt(end) == '"' || s.charAt(end) == '\'') end = CssRules.endOfString(s, end);
+                    end++;
+                }
+                String attribute = attribute(s.substring(i + 1, Math.min(end, s.length())));
+                if (attribute == null) return null;
+                compound.append(attribute);
+                i = end + 1;
+            } else if (c == '.' || c == '#') {
+                int end = endOfIdentifier(s, i + 1);
+                if (end == i + 1) return null;
+                compound.append(c).append(identifier(unescape(s.substring(i + 1, end))));
+                i = end;
+            } else if (c == ':') {
+                boolean element = i + 1 < s.length() && s.charAt(i + 1) == ':';
+                int start = i + (element ? 2 : 1);
+                int end = endOfIdentifier(s, start);
+                String name = s.substring(start, end).toLowerCase(Locale.ROOT);
+                String argument = null;
+                if (end < s.length() && s.charAt(end) == '(') {
+                    int close = closingParenthesis(s, end);
+                    if (close < 0) return null;
+                    argument = s.substring(end + 1, close).trim();
+                    end = close + 1;
+                }
+                if (!element && argument == null && STRUCTURAL.contains(name)) {
+                    compound.append(':').append(name);
+                } else if (!element && argument != null && NTH.contains(name) && argument.matches("[0-9n+\\-\\s]+|odd|even")) {
+                    compound.append(':').append(name).append('(').append(argument.replace(" ", "")).append(')');
+                }
+                i = end;
+            } else if (c == '*') {
+                compound.append('*');
+                i++;
+            } else if (Character.isLetter(c) || c == '-' || c == '_') {
+                int end = endOfIdentifier(s, i);
+                compound.append(s.substring(i, end).toLowerCase(Locale.ROOT));
+                i = end;
+            } else {
+                return null;
+            }
+        }
+        if (query.isEmpty() && compound.isEmpty()) return "*";
+        return query.append(compound.isEmpty() ? "*" : compound).toString().trim();
+    }
+
+    private static String attribute(String test) {
+        Matcher matcher = Pattern.compile("\\s*([a-zA-Z_][\\w-]*)\\s*(?:([~|^$*]?=)\\s*(\"[^\"]*\"|'[^']*'|[^\\s\"']+)\\s*[iIsS]?)?\\s*").matcher(test);
+        if (!matcher.matches()) return null;
+        String name = matcher.group(1).toLowerCase(Locale.ROOT);
+        String operator = matcher.group(2);
+        boolean value = (VALUE_ATTRIBUTES.contains(name) || name.startsWith("aria-")) && !name.equals("class") && !name.equals("id");
+        if (operator == null || !value || operator.equals("~=") || operator.equals("|=")) {
+            return "[" + name + "]";
+        }
+        return "[" + name + operator + matcher.group(3) + "]";
+    }
+
+    /**
+     * A class or id name reduced to letters, digits and hyphens, so that jsoup reads it
+     * (<code>md:flex</code> -> <code>md_3a_flex</code>); distinct names stay distinct.
+     */
+    static String identifier(String name) {
+        StringBuilder out = new StringBuilder(name.length());
+        name.codePoints().forEach(c -> {
+            if (c < 128 && (Character.isLetterOrDigit(c) || c == '-')) {
+                out.append((char) c);
+            } else {
+                out.append('_').append(Integer.toHexString(c)).append('_');
+            }
+        });
+        return out.toString();
+    }
+
+    /**
+     * Resolves the CSS escapes of an identifier (<code>md\:flex</code>, <code>\31 0</code>).
+     */
+    static String unescape(String identifier) {
+        StringBuilder out = new StringBuilder(identifier.length());
+        for (int i = 0; i < identifier.length(); i++) {
+            char c = identifier.charAt(i);
+            if (c != '\\' || i + 1 >= identifier.length()) {
+                out.append(c);
+                continue;
+            }
+            int end = i + 1;
+            while (end < identifier.length() && end < i + 7 && Character.digit(identifier.charAt(end), 16) >= 0) end++;
+            if (end > i + 1) {
+                out.appendCodePoint(Integer.parseInt(identifier.substring(i + 1, end), 16));
+                if (end < identifier.length() && identifier.charAt(end) == ' ') end++;
+                i = end - 1;
+            } else {
+                out.append(identifier.charAt(++i));
+            }
+        }
+        return out.toString();
+    }
+
+    private static int endOfIdentifier(String s, int start) {
+        int i = start;
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            if (c == '\\') {
+                i = Math.min(i + 2, s.length());
+            } else if (Character.isLetterOrDigit(c) || c == '-' || c == '_' || c > 127) {
+                i++;
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+
+    private static int closingParenthesis(String s, int open) {
+        int depth = 0;
+        for (int i = open; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '"' || c == '\'') {
+                i = CssRules.endOfString(s, i);
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The page with the critical CSS in a <code>&lt;style&gt;</code> before its first stylesheet, and its
+     * stylesheets loaded as <code>media="print"</code> then switched to <code>all</code> once loaded
+     * (<code>&lt;noscript&gt;</code> fallback).
+     */
+    static String inline(String html, List<Stylesheet> links, String css) {
+        StringBuilder out = new StringBuilder(html.length() + css.length() + 256);
+        int from = 0;
+        for (int i = 0; i < links.size(); i++) {
+            Stylesheet link = links.get(i);
+            int at = html.indexOf(link.tag(), from);
+            out.append(html, from, at);
+            if (i == 0) {
+                out.append("<style ").append(MARKER).append('>').append(css.replace("</style", "<\\/style")).append("</style>");
+            }
+            String href = link.href().replace("\"", "&quot;");
+            out.append("<link rel=\"stylesheet\" href=\"").append(href)
+                    .append("\" media=\"print\" onload=\"this.media='all';this.onload=null\">")
+                    .append("<noscript>").append(link.tag()).append("</noscript>");
+            from = at + link.tag().length();
+        }
+        return out.append(html, from, html.length()).toString();
+    }
+
+    private static String hash(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8))).substring(0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.writeString(temp, content, StandardCharsets.UTF_8);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static int removeStaleCache(Path cacheDir, Set<String> used) throws IOException {
+        int removed = 0;
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            for (Path file : files.filter(Files::isRegularFile).toList()) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".css") && !used.contains(name.substring(0, name.length() - ".css".length()))) {
+                    Files.delete(file);
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+}
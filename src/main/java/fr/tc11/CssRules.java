@@ -0,0 +1,235 @@
+package fr.tc11;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Just enough of a CSS parser for the build stages: a stylesheet as a tree of style rules, grouping
+ * at-rules (<code>@media</code>, <code>@supports</code>, <code>@layer</code>… holding rules) and other
+ * at-rules kept as written (<code>@font-face</code>, <code>@keyframes</code>, <code>@import</code>…).
+ *
+ * Declarations and preludes are not parsed, only split on the braces and semicolons outside strings,
+ * so any valid stylesheet round-trips (comments removed).
+ */
+final class CssRules {
+
+    /** At-rules whose block holds rules rather than declarations. */
+    static final Set<String> GROUPING = Set.of("media", "supports", "layer", "container", "scope", "document", "-moz-document");
+
+    sealed interface Node permits Rule, Group, AtRule {
+        void write(StringBuilder out);
+    }
+
+    /** <code>selectors { declarations }</code> */
+    record Rule(String selectors, String declarations) implements Node {
+        @Override
+        public void write(StringBuilder out) {
+            out.append(selectors).append('{').append(declarations).append('}');
+        }
+    }
+
+    /** <code>@media (…) { rules }</code> and other {@link #GROUPING} at-rules. */
+    record Group(String prelude, List<Node> children) implements Node {
+        @Override
+        public void write(StringBuilder out) {
+            out.append(prelude).append('{');
+            children.forEach(child -> child.write(out));
+            out.append('}');
+        }
+    }
+
+    /** Any other at-rule, as written: <code>@font-face {…}</code>, <code>@layer a, b;</code>… */
+    record AtRule(String name, String text) implements Node {
+        @Override
+        public void write(StringBuilder out) {
+            out.append(text);
+        }
+    }
+
+    private CssRules() {
+    }
+
+    static List<Node> parse(String css) {
+        return new Parser(stripComments(css)).nodes(false);
+    }
+
+    static String write(List<Node> nodes) {
+        StringBuilder out = new StringBuilder();
+        nodes.forEach(node -> node.write(out));
+        return out.toString();
+    }
+
+    /**
+     * The rules accepted by the predicate, in their groups; groups left empty are dropped.
+     */
+    static List<Node> filter(List<Node> nodes, Predicate<Node> keep) {
+        List<Node> kept = new ArrayList<>();
+        for (Node node : nodes) {
+            if (node instanceof Group group) {
+                if (!keep.test(group)) continue;
+                List<Node> children = filter(group.children(), keep);
+                if (!children.isEmpty()) kept.add(new Group(group.prelude(), children));
+            } else if (keep.test(node)) {
+                kept.add(node);
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Splits a selector list on its top-level commas.
+     */
+    static List<String> selectors(String selectors) {
+        List<String> list = new ArrayList<>();
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i < selectors.length(); i++) {
+            char c = selectors.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '"' || c == '\'') {
+                i = endOfString(selectors, i);
+            } else if (c == '(' || c == '[') {
+                depth++;
+            } else if (c == ')' || c == ']') {
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                list.add(selectors.substring(start, i).trim());
+                start = i + 1;
+            }
+        }
+        list.add(selectors.substring(start).trim());
+        list.removeIf(String::isEmpty);
+        return list;
+    }
+
+    static String stripComments(String css) {
+        StringBuilder out = new StringBuilder(css.length());
+        for (int i = 0; i < css.length(); i++) {
+            char c = css.charAt(i);
+            if (c == '"' || c == '\'') {
+                int end = endOfString(css, i);
+                out.append(css, i, Math.min(end + 1, css.length()));
+                i = end;
+            } else if (c == '\\' && i + 1 < css.length()) {
+                out.append(c).append(css.charAt(++i));
+            } else if (c == '/' && i + 1 < css.length() && css.charAt(i + 1) == '*') {
+                int end = css.indexOf("*/", i + 2);
+                i = end < 0 ? css.length() : end + 1;
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Index of the quote closing the string opened at <code>start</code> (or the last index).
+     */
+    static int endOfString(String text, int start) {
+        char quote = text.charAt(start);
+        for (int i = start + 1; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == quote || c == '\n') {
+                return i;
+            }
+        }
+        return text.length() - 1;
+    }
+
+    private static final class Parser {
+        private final String css;
+        private int pos;
+
+        Parser(String css) {
+            this.css = css;
+        }
+
+        List<Node> nodes(boolean nested) {
+            List<Node> nodes = new ArrayList<>();
+            while (true) {
+                while (pos < css.length() && Character.isWhitespace(css.charAt(pos))) pos++;
+                if (pos >= css.length()) return nodes;
+                if (css.charAt(pos) == '}') {
+                    pos++;
+                    if (nested) return nodes;
+                    continue;
+                }
+                int start = pos;
+                char end = skipPrelude();
+                String prelude = css.substring(start, pos).trim();
+                if (end == ';') {
+                    pos++;
+                    if (prelude.startsWith("@")) nodes.add(new AtRule(atRuleName(prelude), prelude + ";"));
+                } else if (end == '{') {
+                    pos++;
+                    if (prelude.startsWith("@")) {
+                        String name = atRuleName(prelude);
+                        if (GROUPING.contains(name)) {
+                            nodes.add(new Group(prelude, nodes(true)));
+                        } else {
+                            nodes.add(new AtRule(name, prelude + "{" + block().trim() + "}"));
+                        }
+                    } else {
+                        nodes.add(new Rule(prelude, block().trim()));
+                    }
+                }
+                // end == '}' or end of input: prelude without block, dropped
+            }
+        }
+
+        /**
+         * Moves to the next <code>{</code>, <code>;</code> or <code>}</code> outside strings and brackets.
+         */
+        private char skipPrelude() {
+            int depth = 0;
+            for (; pos < css.length(); pos++) {
+                char c = css.charAt(pos);
+                if (c == '\\') {
+                    pos++;
+                } else if (c == '"' || c == '\'') {
+                    pos = endOfString(css, pos);
+                } else if (c == '(' || c == '[') {
+                    depth++;
+                } else if (c == ')' || c == ']') {
+                    depth--;
+                } else if (depth <= 0 && (c == '{' || c == ';' || c == '}')) {
+                    return c;
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Content of the block whose <code>{</code> was just read, moving past its <code>}</code>.
+         */
+        private String block() {
+            int start = pos;
+            int depth = 1;
+            for (; pos < css.length(); pos++) {
+                char c = css.charAt(pos);
+                if (c == '\\') {
+                    pos++;
+                } else if (c == '"' || c == '\'') {
+                    pos = endOfString(css, pos);
+                } else if (c == '{') {
+                    depth++;
+                } else if (c == '}' && --depth == 0) {
+                    return css.substring(start, pos++);
+                }
+            }
+            return css.substring(start);
+        }
+
+        private static String atRuleName(String prelude) {
+            int end = 1;
+            while (end < prelude.length() && (Character.isLetterOrDigit(prelude.charAt(end)) || prelude.charAt(end) == '-')) end++;
+            return prelude.substring(1, end).toLowerCase(Locale.ROOT);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package fr.tc11;
+
+import io.quarkus.arc.Unremovable;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import jakarta.inject.Singleton;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gives templates access to the images resized by the "images" build stage
+ * ({@link ImageDerivativesStage}), through the manifest it wrote, and to the size of images.
+ *
+ * When the stage did not run (e.g. in dev mode), the manifest is empty and the helpers
+ * fall back to the original images, whose size is then read from their header.
+ */
+@Singleton
+@Unremovable
+public class DerivedImages {
+
+    private static final Logger LOG = Logger.getLogger(DerivedImages.class);
+
+    // Roq copies public/ as is to the site root
+    private static final Path PUBLIC_DIR = Path.of("public");
+
+    @ConfigProperty(name = "tc11.images.output-dir", defaultValue = "public/derived/images")
+    String outputDir;
+
+    @ConfigProperty(name = "tc11.images.content-dir", defaultValue = "content")
+    String contentDir;
+
+    @ConfigProperty(name = "tc11.og.output-dir", defaultValue = "public/derived/og")
+    String ogOutputDir;
+
+    private volatile ImageManifest manifest;
+    private volatile Map<String, String> ogCards;
+
+    // Sizes read from image headers, for images missing from the manifest
+    private final Map<Path, HeaderSize> headerSizes = new ConcurrentHashMap<>();
+
+    private record HeaderSize(long size, FileTime modified, ImageDimensions dimensions) {
+    }
+
+    ImageManifest manifest() {
+        ImageManifest current = manifest;
+        if (current == null) {
+            current = ImageManifest.read(Path.of(outputDir).resolve(ImageManifest.FILE_NAME));
+            manifest = current;
+        }
+        return current;
+    }
+
+    /**
+     * URL of the Open Graph card generated for a post by the "og-cards" stage ({@link OgCardStage}).
+     *
+     * @param folder the post folder relative to the content folder (e.g. posts/2026-04-02-week-end)
+     * @return the root-relative URL, or null when the post has no card
+     */
+    String ogCard(String folder) {
+        if (folder == null) return null;
+        Map<String, String> cards = ogCards;
+        if (cards == null) {
+            cards = OgCardStage.readManifest(Path.of(ogOutputDir).resolve(OgCardStage.MANIFEST));
+            ogCards = cards;
+        }
+        return cards.get(ImageManifest.normalize(folder));
+    }
+
+    /**
+     * Finds the derivatives of an image attached to a page.
+     *
+     * @param folder the page folder relative to the content folder, or null when unknown
+     * @param url the image URL or file name, possibly percent-encoded
+     * @return the manifest entry, or null when the image was not processed
+     */
+    ImageManifest.Entry find(String folder, String url) {
+        if (url == null || url.isBlank()) return null;
+        String name = decode(url.substring(url.lastIndexOf('/') + 1));
+        ImageManifest manifest = manifest();
+        ImageManifest.Entry entry = folder != null ? manifest.get(ImageManifest.key(folder, name)) : null;
+        return entry != null ? entry : manifest.findByName(name);
+    }
+
+    /**
+     * Intrinsic size of an image attached to a page or of a site image (e.g. <code>/assets/hero-banner.jpg</code>).
+     *
+     * @param folder the page folder relative to the content folder, or null when unknown
+     * @param url the image URL or file name, possibly percent-encoded
+     * @return the size, or null when the image cannot be found or read
+     */
+    ImageDimensions dimensions(String folder, String url) {
+        ImageManifest.Entry entry = find(folder, url);
+        if (entry != null) {
+            return new ImageDimensions(entry.width(), entry.height());
+        }
+        if (url == null || url.isBlank() || url.contains("://")) return null;
+        String path = decode(url);
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        try {
+            Path pageFolder = Path.of(contentDir, folder == null ? "" : folder);
+            // Site image, file of the page folder (its URL may differ from the folder), content path
+            ImageDimensions dimensions = path.startsWith("/") ? headerSize(PUBLIC_DIR.resolve(path.substring(1))) : null;
+            if (dimensions == null) dimensions = headerSize(pageFolder.resolve(path.startsWith("/") ? name : path));
+            if (dimensions == null && path.startsWith("/")) dimensions = headerSize(Path.of(contentDir, path.substring(1)));
+            return dimensions;
+        } catch (InvalidPathException e) {
+            return null;
+        }
+    }
+
+    private ImageDimensions headerSize(Path file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            HeaderSize cached = headerSizes.get(file);
+            if (cached == null || cached.size() != attributes.size() || !cached.modified().equals(attributes.lastModifiedTime())) {
+                cached = new HeaderSize(attributes.size(), attributes.lastModifiedTime(), ImageDimensions.read(file));
+                headerSizes.put(file, cached);
+            }
+            return cached.dimensions();
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            LOG.debugf("No size for image %s: %s", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private static String decode(String name) {
+        if (name.indexOf('%') < 0) return name;
+        // Keeps '+' as is: file names are path segments, not form values
+        return URLDecoder.decode(name.replace("+", "%2B"), StandardCharsets.UTF_8);
+    }
+}
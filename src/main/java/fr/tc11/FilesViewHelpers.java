@@ -2,60 +2,92 @@ package fr.tc11; // adapte le package
 
 
 import io.quarkus.qute.TemplateExtension;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 @TemplateExtension(namespace = "files") // utilisation: {files:images(page)}
 public class FilesViewHelpers {
 
-    private static final Pattern ATTACH_RX = Pattern.compile(
-        ".*\\.(pdf|docx|xlsx|pptx|zip|rar|txt|csv|odt|ods|odp)$",
-        Pattern.CASE_INSENSITIVE
+    private static final Set<String> ATTACHMENT_EXTENSIONS = Set.of(
+        "pdf", "docx", "xlsx", "pptx", "zip", "rar", "txt", "csv", "odt", "ods", "odp"
     );
-    private static final Pattern IMAGE_RX = Pattern.compile(
-        ".*\\.(jpg|jpeg|png|gif|bmp|webp|svg)$",
-        Pattern.CASE_INSENSITIVE
+    private static final Set<String> IMAGE_EXTENSIONS = Set.of(
+        "jpg", "jpeg", "png", "gif", "bmp", "webp", "svg"
     );
 
     private static final String DEFAULT_OG_IMAGE_PATH = "/assets/hero-banner.jpg";
 
+    /*
+     * Méthodes résolues une seule fois par classe (page, asset, data, url), y compris les
+     * absences (Optional.empty()), au lieu d'un getMethod()/invoke() à chaque appel de template.
+     * On reste en réflexion plutôt que d'utiliser l'API typée de Roq pour ne pas en dépendre
+     * à la compilation.
+     */
+    private static final MethodType OBJECT_GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType OBJECT_LOOKUP = MethodType.methodType(Object.class, Object.class, Object.class);
+
+    private static final ClassValue<Map<String, Optional<MethodHandle>>> NO_ARG_METHODS = new ClassValue<>() {
+        @Override
+        protected Map<String, Optional<MethodHandle>> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private static final ClassValue<Optional<MethodHandle>> GET_METHODS = new ClassValue<>() {
+        @Override
+        protected Optional<MethodHandle> computeValue(Class<?> type) {
+            return resolve(type, "get", OBJECT_LOOKUP, Object.class);
+        }
+    };
+
+    /*
+     * Classement des fichiers calculé une fois par page (clé = identité de l'objet page, référence
+     * faible) : post.html et main.html appellent plusieurs helpers sur la même page pendant la génération.
+     */
+    private static final ReferenceQueue<Object> COLLECTED_PAGES = new ReferenceQueue<>();
+    private static final Map<PageKey, PageFiles> PAGE_FILES = new ConcurrentHashMap<>();
+
     /* ====== API Qute (safe) ====== */
 
     public static List<String> images(Object page) {
-        var urls = safeFileUrls(page);
-        // filtre sur le "nom" (basename) pour détecter l’extension
-        return urls.stream().filter(u -> isImage(basename(u))).toList();
+        return pageFiles(page).images();
     }
 
     public static String firstImage(Object page) {
-        var imgs = images(page);
-        return imgs.isEmpty() ? null : imgs.get(0);
+        return pageFiles(page).firstImage();
     }
 
     public static boolean hasImages(Object page) {
-        return !images(page).isEmpty();
+        return !pageFiles(page).images().isEmpty();
     }
 
     public static int imagesCount(Object page) {
-        return images(page).size();
+        return pageFiles(page).images().size();
     }
 
     public static List<String> attachments(Object page) {
-        var urls = safeFileUrls(page);
-        return urls.stream().filter(u -> isAttachment(basename(u))).toList();
+        return pageFiles(page).attachments();
     }
 
     public static boolean hasAttachments(Object page) {
-        return !attachments(page).isEmpty();
+        return !pageFiles(page).attachments().isEmpty();
     }
 
     public static int attachmentsCount(Object page) {
-        return attachments(page).size();
+        return pageFiles(page).attachments().size();
     }
 
     /**
@@ -63,9 +95,10 @@ public class FilesViewHelpers {
      * and Twitter Card (twitter:image) meta tags.
      *
      * Resolution order:
-     * 1. page.data.cover (frontmatter cover image)
-     * 2. First image attached to the page (files in the same directory)
-     * 3. Default site banner (/assets/hero-banner.jpg)
+     * 1. 1200x630 card generated for the post by the "og-cards" build stage ({@link OgCardStage})
+     * 2. page.data.cover (frontmatter cover image)
+     * 3. First image attached to the page (files in the same directory)
+     * 4. Default site banner (/assets/hero-banner.jpg)
      *
      * Usage in templates: {files:ogImage(page)}
      */
@@ -73,6 +106,11 @@ public class FilesViewHelpers {
         String siteUrl = jakarta.enterprise.inject.spi.CDI.current()
                 .select(SiteTemplateExtension.SiteConfig.class).get().getUrl();
 
+        String card = page != null ? derivedImages().ogCard(pageFiles(page).folder()) : null;
+        if (card != null) {
+            return siteUrl + card;
+        }
+
         String cover = getPageDataString(page, "cover");
         if (cover != null && !cover.isBlank()) {
             return toAbsolute(cover, siteUrl, getPageUrlAbsolute(page));
@@ -86,6 +124,103 @@ public class FilesViewHelpers {
         return siteUrl + DEFAULT_OG_IMAGE_PATH;
     }
 
+    /**
+     * Image du bandeau d'une page : cover du frontmatter, sinon première image, sinon la bannière du site.
+     *
+     * Usage : {files:heroImage(page)}
+     */
+    public static String heroImage(Object page) {
+        String cover = getPageDataString(page, "cover");
+        if (cover != null && !cover.isBlank()) return cover;
+        String img = firstImage(page);
+        return img != null && !img.isBlank() ? img : DEFAULT_OG_IMAGE_PATH;
+    }
+
+    /**
+     * Valeur de l'attribut srcset d'une image de la page, à partir des copies redimensionnées au build
+     * (étape "images", voir {@link ImageDerivativesStage}) suivies de l'original.
+     * Chaîne vide si l'image n'a pas de copie : le navigateur garde alors src.
+     *
+     * Usage : &lt;img src="{img}" srcset="{files:srcset(page, img)}" sizes="100vw"&gt;
+     */
+    public static String srcset(Object page, String img) {
+        ImageManifest.Entry entry = derivedImage(page, img);
+        if (entry == null || entry.variants().isEmpty()) return "";
+        var srcset = new StringBuilder();
+        for (ImageManifest.Variant variant : entry.variants()) {
+            srcset.append(variant.url()).append(' ').append(variant.width()).append("w, ");
+        }
+        // Les espaces séparent les candidats d'un srcset : on les encode dans l'URL de l'original
+        return srcset.append(img.replace(" ", "%20")).append(' ').append(entry.width()).append('w').toString();
+    }
+
+    /**
+     * Miniature (plus petite copie redimensionnée) d'une image de la page, ou l'image elle-même.
+     *
+     * Usage : {files:thumb(page, img)}
+     */
+    public static String thumb(Object page, String img) {
+        ImageManifest.Entry entry = derivedImage(page, img);
+        ImageManifest.Variant smallest = entry != null ? entry.smallest() : null;
+        return smallest != null ? smallest.url() : img;
+    }
+
+    /**
+     * Aperçu flou d'une image de la page (data URI d'une miniature de 16 px, générée par l'étape "images"),
+     * à afficher en fond le temps que l'image se charge ; chaîne vide si l'image n'a pas été traitée.
+     *
+     * Usage : style="background: {files:color(page, img)} url('{files:placeholder(page, img)}') center / cover"
+     */
+    public static String placeholder(Object page, String img) {
+        ImageManifest.Entry entry = derivedImage(page, img);
+        return entry != null && entry.placeholder() != null ? entry.placeholder() : "";
+    }
+
+    /** Couleur dominante d'une image de la page (ex. "#3a5f8c"), chaîne vide si inconnue. */
+    public static String color(Object page, String img) {
+        ImageManifest.Entry entry = derivedImage(page, img);
+        return entry != null && entry.color() != null ? entry.color() : "";
+    }
+
+    /**
+     * Largeur intrinsèque d'une image de la page (ou du site, ex. "/assets/hero-banner.jpg"), lue dans
+     * l'index de l'étape "images" ou à défaut dans l'en-tête du fichier ; 0 si inconnue.
+     * Avec {files:height(page, img)}, donne les attributs width/height qui évitent les décalages de mise en page.
+     */
+    public static int width(Object page, String img) {
+        ImageDimensions dimensions = dimensions(page, img);
+        return dimensions != null ? dimensions.width() : 0;
+    }
+
+    /** Hauteur intrinsèque d'une image, voir {@link #width(Object, String)} ; 0 si inconnue. */
+    public static int height(Object page, String img) {
+        ImageDimensions dimensions = dimensions(page, img);
+        return dimensions != null ? dimensions.height() : 0;
+    }
+
+    private static ImageDimensions dimensions(Object page, String img) {
+        if (img == null || img.isBlank() || img.startsWith("http://") || img.startsWith("https://")) return null;
+        return derivedImages().dimensions(imageFolder(page, img), stripQuery(img));
+    }
+
+    private static ImageManifest.Entry derivedImage(Object page, String img) {
+        if (img == null || img.isBlank() || img.startsWith("http://") || img.startsWith("https://")) return null;
+        return derivedImages().find(imageFolder(page, img), basename(img));
+    }
+
+    private static DerivedImages derivedImages() {
+        return jakarta.enterprise.inject.spi.CDI.current().select(DerivedImages.class).get();
+    }
+
+    private static String imageFolder(Object page, String img) {
+        String folder = page != null ? pageFiles(page).folder() : null;
+        // Sans dossier source, une URL "/posts/x/photo.jpg" désigne au mieux content/posts/x ;
+        // en dernier recours DerivedImages cherche le nom de fichier seul
+        int slash = img.lastIndexOf('/');
+        if (folder == null && img.startsWith("/") && slash > 0) folder = img.substring(1, slash);
+        return folder;
+    }
+
     /**
      * Converts an image path to an absolute URL:
      * - already absolute (starts with "https://" or "http://") → return as-is
@@ -103,30 +238,25 @@ public class FilesViewHelpers {
 
     /** Accesses a string value from page.data (frontmatter) via reflection. */
     private static String getPageDataString(Object page, String key) {
+        Object data = invoke(page, "data");
+        if (data == null) return null;
+        MethodHandle get = GET_METHODS.get(data.getClass()).orElse(null);
+        if (get == null) return null;
         try {
-            Method dataMethod = page.getClass().getMethod("data");
-            Object data = dataMethod.invoke(page);
-            if (data == null) return null;
-            Method getMethod = data.getClass().getMethod("get", Object.class);
-            Object val = getMethod.invoke(data, key);
+            Object val = get.invokeExact(data, (Object) key);
             return val instanceof String s ? s : null;
-        } catch (Exception ignored) {
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable ignored) {
             return null;
         }
     }
 
     /** Returns the absolute URL of the page (e.g. "https://tc11.fr/posts/my-post/") via reflection. */
     private static String getPageUrlAbsolute(Object page) {
-        try {
-            Method urlMethod = page.getClass().getMethod("url");
-            Object url = urlMethod.invoke(page);
-            if (url == null) return null;
-            Method absoluteMethod = url.getClass().getMethod("absolute");
-            Object abs = absoluteMethod.invoke(url);
-            return abs instanceof String s ? s : null;
-        } catch (Exception ignored) {
-            return null;
-        }
+        Object url = invoke(page, "url");
+        if (url == null) return null;
+        return callString(url, "absolute");
     }
 
     /** Afficher un nom "propre" (pour alt/titre) */
@@ -142,23 +272,104 @@ public class FilesViewHelpers {
 
     /* ====== Helpers ====== */
 
-    private static boolean isAttachment(String name) {
-        return ATTACH_RX.matcher(name).matches();
+    /**
+     * Fichiers d'une page, classés en une passe (images et pièces jointes dans l'ordre d'origine),
+     * et dossier de la page relatif à content/ (null si inconnu)
+     */
+    private record PageFiles(List<String> images, List<String> attachments, String folder) {
+
+        private static final PageFiles EMPTY = new PageFiles(List.of(), List.of(), null);
+
+        String firstImage() {
+            return images.isEmpty() ? null : images.get(0);
+        }
+    }
+
+    /** Clé faible comparée par identité : la page n'est pas retenue une fois la génération terminée */
+    private static final class PageKey extends WeakReference<Object> {
+        private final int hash;
+
+        PageKey(Object page, ReferenceQueue<Object> queue) {
+            super(page, queue);
+            this.hash = System.identityHashCode(page);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) return true;
+            if (!(other instanceof PageKey key)) return false;
+            Object page = get();
+            return page != null && page == key.get();
+        }
+    }
+
+    private static PageFiles pageFiles(Object page) {
+        if (page == null) return PageFiles.EMPTY;
+        PageFiles files = PAGE_FILES.get(new PageKey(page, null));
+        if (files == null) {
+            for (Object collected; (collected = COLLECTED_PAGES.poll()) != null; ) {
+                PAGE_FILES.remove(collected);
+            }
+            files = classify(safeFileUrls(page), sourceFolder(page));
+            PAGE_FILES.put(new PageKey(page, COLLECTED_PAGES), files);
+        }
+        return files;
+    }
+
+    private static PageFiles classify(List<String> urls, String folder) {
+        var images = new ArrayList<String>();
+        var attachments = new ArrayList<String>();
+        for (String url : urls) {
+            // filtre sur le "nom" (basename) pour détecter l’extension
+            String extension = extension(basename(url));
+            boolean image = IMAGE_EXTENSIONS.contains(extension);
+            if (image || ATTACHMENT_EXTENSIONS.contains(extension)) {
+                (image ? images : attachments).add(url);
+            }
+        }
+        return new PageFiles(List.copyOf(images), List.copyOf(attachments), folder);
+    }
+
+    /**
+     * Dossier source de la page relatif à content/ (ex. "posts/2026-04-02-week-end"), via
+     * info().sourceFilePath() ou sourcePath() ; null si Roq n'expose ni l'un ni l'autre.
+     */
+    private static String sourceFolder(Object page) {
+        Object info = invoke(page, "info");
+        Object path = info != null ? invoke(info, "sourceFilePath") : null;
+        if (path == null) path = invoke(page, "sourcePath");
+        if (path == null) return null;
+        String source = path.toString().replace('\\', '/');
+        if (source.startsWith("content/")) source = source.substring("content/".length());
+        int slash = source.lastIndexOf('/');
+        return slash > 0 ? source.substring(0, slash) : "";
     }
 
-    private static boolean isImage(String name) {
-        return IMAGE_RX.matcher(name).matches();
+    /** Extension en minuscules ("" si aucune), comparée aux ensembles d'extensions connues */
+    private static String extension(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 ? name.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
     }
 
     private static String basename(String s) {
         if (s == null) return "";
-        int q = s.indexOf('?'); if (q >= 0) s = s.substring(0, q);
-        int h = s.indexOf('#'); if (h >= 0) s = s.substring(0, h);
+        s = stripQuery(s);
         int slash = Math.max(s.lastIndexOf('/'), s.lastIndexOf('\\'));
         if (slash >= 0) s = s.substring(slash + 1);
         return s;
     }
 
+    private static String stripQuery(String s) {
+        int q = s.indexOf('?'); if (q >= 0) s = s.substring(0, q);
+        int h = s.indexOf('#'); if (h >= 0) s = s.substring(0, h);
+        return s;
+    }
+
     /**
      * Récupère une liste d’URLs de fichiers de manière "ultra-safe".
      * Essaie successivement: getFiles(), files(), getAssets(), assets()
@@ -198,27 +409,46 @@ public class FilesViewHelpers {
     /** Invoke une méthode sans param retournant une List<?>; renvoie null si absente/exception */
     @SuppressWarnings("unchecked")
     private static <T> List<T> invokeList(Object target, String methodName, Class<T> elemType) {
-        try {
-            Method m = target.getClass().getMethod(methodName);
-            Object val = m.invoke(target);
-            if (val instanceof List<?> list) {
-                // Pas de cast strict sur elemType pour rester permissif
-                return (List<T>) list;
-            }
-        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException ignored) {
-            // inclut les RoqStaticFileException etc. -> on renvoie null
+        Object val = invoke(target, methodName);
+        if (val instanceof List<?> list) {
+            // Pas de cast strict sur elemType pour rester permissif
+            return (List<T>) list;
         }
         return null;
     }
 
     /** Appelle une méthode String sans param; null si indisponible */
     private static String callString(Object target, String methodName) {
+        Object val = invoke(target, methodName);
+        return (val instanceof String) ? (String) val : null;
+    }
+
+    /** Appelle une méthode publique sans param via le cache de la classe; null si absente/exception */
+    private static Object invoke(Object target, String methodName) {
+        MethodHandle handle = NO_ARG_METHODS.get(target.getClass())
+                .computeIfAbsent(methodName, name -> resolve(target.getClass(), name, OBJECT_GETTER))
+                .orElse(null);
+        if (handle == null) return null;
         try {
-            Method m = target.getClass().getMethod(methodName);
-            Object val = m.invoke(target);
-            return (val instanceof String) ? (String) val : null;
-        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            return handle.invokeExact(target);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable ignored) {
+            // inclut les RoqStaticFileException etc. -> on renvoie null
             return null;
         }
     }
+
+    /**
+     * Résout une méthode publique (héritée comprise) en MethodHandle adapté au type donné.
+     * Une méthode absente ou inaccessible (ex. classe non publique) donne Optional.empty().
+     */
+    private static Optional<MethodHandle> resolve(Class<?> type, String name, MethodType adaptedType, Class<?>... parameterTypes) {
+        try {
+            Method m = type.getMethod(name, parameterTypes);
+            return Optional.of(MethodHandles.publicLookup().unreflect(m).asType(adaptedType));
+        } catch (NoSuchMethodException | IllegalAccessException | SecurityException e) {
+            return Optional.empty();
+        }
+    }
 }
@@ -0,0 +1,91 @@
+package fr.tc11;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An icon set in the Iconify JSON format (<code>{"prefix", "width", "height", "icons": {name: {"body"}}}</code>),
+ * read from <code>src/main/resources/icons/&lt;prefix&gt;.json</code>, and the SVG markup of its icons.
+ *
+ * The files only hold the icons used by the site: to add one, copy its entry from the
+ * <code>@iconify-json/&lt;prefix&gt;</code> package (or https://icon-sets.iconify.design).
+ */
+final class IconSet {
+
+    /** Size of the icons of a set that does not give one (Iconify default). */
+    static final int DEFAULT_SIZE = 16;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * One icon: SVG content of its view box (0 0 width height).
+     */
+    record Icon(String id, String body, int width, int height) {
+    }
+
+    private final String prefix;
+    private final Map<String, Icon> icons;
+
+    private IconSet(String prefix, Map<String, Icon> icons) {
+        this.prefix = prefix;
+        this.icons = icons;
+    }
+
+    /**
+     * Reads the set of the given prefix from the classpath.
+     *
+     * @return the set, or null when there is no such file
+     */
+    static IconSet load(String prefix) throws IOException {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        try (InputStream in = (loader != null ? loader : IconSet.class.getClassLoader()).getResourceAsStream("icons/" + prefix + ".json")) {
+            return in == null ? null : read(in);
+        }
+    }
+
+    static IconSet read(InputStream in) throws IOException {
+        JsonNode root = MAPPER.readTree(in);
+        String prefix = root.path("prefix").asText();
+        if (prefix.isEmpty()) {
+            throw new IOException("Icon set without prefix");
+        }
+        int width = root.path("width").asInt(DEFAULT_SIZE);
+        int height = root.path("height").asInt(DEFAULT_SIZE);
+        Map<String, Icon> icons = new TreeMap<>();
+        for (Map.Entry<String, JsonNode> entry : root.path("icons").properties()) {
+            JsonNode icon = entry.getValue();
+            icons.put(entry.getKey(), new Icon("icon-" + prefix + "-" + entry.getKey(), icon.path("body").asText(),
+                    icon.path("width").asInt(width), icon.path("height").asInt(height)));
+        }
+        return new IconSet(prefix, icons);
+    }
+
+    String prefix() {
+        return prefix;
+    }
+
+    /**
+     * @return the icon, or null when the set does not have it
+     */
+    Icon get(String name) {
+        return icons.get(name);
+    }
+
+    Map<String, Icon> icons() {
+        return icons;
+    }
+
+    /**
+     * Inline SVG of the icon, one text line high, in the text color.
+     */
+    static String svg(Icon icon) {
+        String width = icon.width() == icon.height() ? "1em" : Math.round(icon.width() * 1000.0 / icon.height()) / 1000.0 + "em";
+        return "<svg class=\"icon\" width=\"" + width + "\" height=\"1em\" viewBox=\"0 0 " + icon.width() + " " + icon.height()
+                + "\" aria-hidden=\"true\">" + icon.body() + "</svg>";
+    }
+}
@@ -0,0 +1,67 @@
+package fr.tc11;
+
+import io.quarkus.qute.RawString;
+import io.quarkus.qute.TemplateExtension;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Qute template extension to inline SVG icons of the local icon sets ({@link IconSet}), at generation time.
+ *
+ * Usage in templates: {icon:svg('mdi:facebook')} where the icon is shown.
+ *
+ * Each icon is written as a full inline <code>&lt;svg&gt;</code>: pages use a handful of small icons, so a
+ * sprite would save little and would need state shared across the rendering of a page.
+ * Sets and markup are cached, so an icon costs a map lookup.
+ */
+@TemplateExtension(namespace = "icon")
+public class IconTemplateExtension {
+
+    private static final Logger LOG = Logger.getLogger(IconTemplateExtension.class);
+
+    private static final RawString EMPTY = new RawString("");
+
+    private static final Map<String, Optional<IconSet>> SETS = new ConcurrentHashMap<>();
+    private static final Map<String, Optional<IconSet.Icon>> ICONS = new ConcurrentHashMap<>();
+    private static final Map<String, RawString> MARKUP = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the inline SVG of an icon.
+     *
+     * @param name prefix and name of the icon (e.g. mdi:facebook)
+     * @return the SVG, empty for an unknown icon
+     */
+    public static RawString svg(String name) {
+        IconSet.Icon icon = ICONS.computeIfAbsent(name, IconTemplateExtension::lookup).orElse(null);
+        if (icon == null) return EMPTY;
+        return MARKUP.computeIfAbsent(icon.id(), id -> new RawString(IconSet.svg(icon)));
+    }
+
+    private static Optional<IconSet.Icon> lookup(String name) {
+        int colon = name.indexOf(':');
+        if (colon <= 0) {
+            LOG.warnf("Icon '%s' has no prefix (expected e.g. mdi:facebook)", name);
+            return Optional.empty();
+        }
+        String prefix = name.substring(0, colon);
+        IconSet set = SETS.computeIfAbsent(prefix, IconTemplateExtension::loadSet).orElse(null);
+        IconSet.Icon icon = set == null ? null : set.get(name.substring(colon + 1));
+        if (icon == null) {
+            LOG.warnf("Unknown icon '%s', add it to src/main/resources/icons/%s.json", name, prefix);
+        }
+        return Optional.ofNullable(icon);
+    }
+
+    private static Optional<IconSet> loadSet(String prefix) {
+        try {
+            return Optional.ofNullable(IconSet.load(prefix));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read icon set " + prefix, e);
+        }
+    }
+}
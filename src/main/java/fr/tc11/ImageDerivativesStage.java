@@ -0,0 +1,241 @@
+package fr.tc11;
+
+import org.jboss.logging.Logger;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * "images" build stage: generates resized copies of every image of the content folder
+ * (thumbnail, medium and large by default) into <code>public/derived/images</code> and
+ * indexes them in an {@link ImageManifest}, used by <code>files:srcset</code> and
+ * <code>files:thumb</code>. GIF, WebP and SVG images are not resized but their size is
+ * indexed too, for <code>files:width</code> and <code>files:height</code>. Decoded images also get
+ * a tiny placeholder and their dominant colour (<code>files:placeholder</code>, <code>files:color</code>).
+ *
+ * Derived files are named after the SHA-256 of the source content, so an image that did not
+ * change since the previous build is skipped, and identical images are only processed once.
+ * Images are processed in parallel, one per core by default.
+ */
+final class ImageDerivativesStage implements BuildStages.Stage {
+
+    private static final Logger LOG = Logger.getLogger(ImageDerivativesStage.class);
+
+    // Formats ImageIO decodes; GIFs are left alone so that animations are kept
+    static final Set<String> SOURCE_EXTENSIONS = Set.of("jpg", "jpeg", "png", "bmp");
+    // Formats only indexed (size read from the header) for the width/height attributes
+    static final Set<String> INDEXED_EXTENSIONS = Set.of("gif", "webp", "svg");
+
+    private static final int HASH_LENGTH = 16;
+    private static final int PLACEHOLDER_WIDTH = 16;
+
+    @Override
+    public void run(BuildConfig config) throws Exception {
+        Path contentDir = config.getPath("tc11.images.content-dir", "content");
+        Path outputDir = config.getPath("tc11.images.output-dir", "public/derived/images");
+        String urlPrefix = config.get("tc11.images.url-prefix", "/derived/images");
+        List<Integer> widths = config.getInts("tc11.images.widths", "320,800,1600");
+        float quality = config.getFloat("tc11.images.jpeg-quality", 0.82f);
+        int threads = config.threads("tc11.images.threads");
+
+        generate(contentDir, outputDir, urlPrefix, widths, quality, threads);
+    }
+
+    /**
+     * Generates the derivatives of every image under the content folder and rewrites the manifest.
+     *
+     * @return the new manifest
+     */
+    ImageManifest generate(Path contentDir, Path outputDir, String urlPrefix, List<Integer> widths,
+                           float quality, int threads) throws IOException, InterruptedException {
+        List<Path> sources = findImages(contentDir);
+        Path manifestFile = outputDir.resolve(ImageManifest.FILE_NAME);
+        ImageManifest previous = ImageManifest.read(manifestFile);
+        Map<String, ImageManifest.Entry> previousByHash = new HashMap<>();
+        previous.images().values().forEach(entry -> previousByHash.put(entry.hash(), entry));
+
+        AtomicInteger generated = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            // 1. Hash every source (I/O bound, cheap)
+            Map<String, Future<String>> hashes = new LinkedHashMap<>();
+            for (Path source : sources) {
+                hashes.put(keyOf(contentDir, source), executor.submit(() -> contentHash(source)));
+            }
+            Map<String, String> hashByKey = new LinkedHashMap<>();
+            Map<String, Path> sourceByHash = new LinkedHashMap<>();
+            int i = 0;
+            for (Map.Entry<String, Future<String>> hash : hashes.entrySet()) {
+                Path source = sources.get(i++);
+                String value = await(hash.getValue(), source);
+                if (value != null) {
+                    hashByKey.put(hash.getKey(), value);
+                    sourceByHash.putIfAbsent(value, source);
+                }
+            }
+
+            // 2. Resize each distinct content once, unless its derivatives are already there
+            Map<String, Future<ImageManifest.Entry>> entries = new LinkedHashMap<>();
+            for (Map.Entry<String, Path> content : sourceByHash.entrySet()) {
+                String hash = content.getKey();
+                ImageManifest.Entry known = previousByHash.get(hash);
+                if (known != null && variantsExist(known, outputDir)) {
+                    entries.put(hash, CompletableFuture.completedFuture(known));
+                } else {
+                    entries.put(hash, executor.submit(() -> {
+                        ImageManifest.Entry entry = derive(content.getValue(), hash, outputDir, urlPrefix, widths, quality);
+                        generated.incrementAndGet();
+                        return entry;
+                    }));
+                }
+            }
+
+            Map<String, ImageManifest.Entry> images = new LinkedHashMap<>();
+            Map<String, ImageManifest.Entry> byHash = new HashMap<>();
+            for (Map.Entry<String, Future<ImageManifest.Entry>> entry : entries.entrySet()) {
+                ImageManifest.Entry value = await(entry.getValue(), sourceByHash.get(entry.getKey()));
+                if (value != null) byHash.put(entry.getKey(), value);
+            }
+            hashByKey.forEach((key, hash) -> {
+                ImageManifest.Entry entry = byHash.get(hash);
+                if (entry != null) images.put(key, entry);
+            });
+
+            ImageManifest manifest = new ImageManifest(images);
+            manifest.write(manifestFile);
+            int removed = removeOrphans(outputDir, manifest);
+            LOG.infof("Derived images: %d sources, %d generated, %d up to date, %d stale files removed",
+                    sources.size(), generated.get(), byHash.size() - generated.get(), removed);
+            return manifest;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Decodes one image and writes its variants for each configured width smaller than the image.
+     */
+    static ImageManifest.Entry derive(Path source, String hash, Path outputDir, String urlPrefix,
+                                      List<Integer> widths, float quality) throws IOException {
+        if (INDEXED_EXTENSIONS.contains(extension(source.getFileName().toString()))) {
+            ImageDimensions dimensions = ImageDimensions.read(source);
+            if (dimensions == null) {
+                throw new IOException("unreadable image header");
+            }
+            return new ImageManifest.Entry(hash, dimensions.width(), dimensions.height(), List.of(), null, null);
+        }
+        int largest = widths.stream().mapToInt(Integer::intValue).max().orElse(0);
+        ImageProcessing.Decoded decoded = ImageProcessing.read(Files.readAllBytes(source), largest);
+        if (decoded == null) {
+            throw new IOException("unsupported image format");
+        }
+        String extension = decoded.image().getColorModel().hasAlpha() ? "png" : "jpg";
+        List<ImageManifest.Variant> variants = new ArrayList<>();
+        BufferedImage smallest = decoded.image();
+        for (int width : widths.stream().sorted().distinct().toList()) {
+            if (width >= decoded.width()) continue;
+            var resized = ImageProcessing.resize(decoded.image(), width);
+            String fileName = hash + "-" + width + "." + extension;
+            ImageProcessing.write(resized, outputDir.resolve(fileName), quality);
+            variants.add(new ImageManifest.Variant(resized.getWidth(), resized.getHeight(), urlPrefix + "/" + fileName));
+            if (variants.size() == 1) smallest = resized;
+        }
+        // Placeholder and colour come from the thumbnail: same look, far fewer pixels
+        return new ImageManifest.Entry(hash, decoded.width(), decoded.height(), variants,
+                ImageProcessing.placeholder(smallest, PLACEHOLDER_WIDTH), ImageProcessing.dominantColor(smallest));
+    }
+
+    static List<Path> findImages(Path contentDir) throws IOException {
+        if (!Files.isDirectory(contentDir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.walk(contentDir)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(file -> {
+                        String extension = extension(file.getFileName().toString());
+                        return SOURCE_EXTENSIONS.contains(extension) || INDEXED_EXTENSIONS.contains(extension);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /** Manifest key of a source: its path relative to the content folder. */
+    static String keyOf(Path contentDir, Path source) {
+        Path relative = contentDir.relativize(source);
+        Path parent = relative.getParent();
+        return ImageManifest.key(parent == null ? "" : parent.toString(), relative.getFileName().toString());
+    }
+
+    static String contentHash(Path file) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(Files.readAllBytes(file))).substring(0, HASH_LENGTH);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean variantsExist(ImageManifest.Entry entry, Path outputDir) {
+        for (ImageManifest.Variant variant : entry.variants()) {
+            if (!Files.isRegularFile(outputDir.resolve(fileName(variant.url())))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int removeOrphans(Path outputDir, ImageManifest manifest) throws IOException {
+        Set<String> referenced = new HashSet<>();
+        referenced.add(ImageManifest.FILE_NAME);
+        manifest.images().values().forEach(entry -> entry.variants().forEach(v -> referenced.add(fileName(v.url()))));
+        int removed = 0;
+        try (Stream<Path> files = Files.list(outputDir)) {
+            for (Path file : files.filter(Files::isRegularFile).toList()) {
+                if (!referenced.contains(file.getFileName().toString())) {
+                    Files.delete(file);
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+
+    private static <T> T await(Future<T> future, Path source) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            LOG.warnf("Skipping image %s: %s", source, e.getCause().getMessage());
+            return null;
+        }
+    }
+
+    private static String fileName(String url) {
+        return url.substring(url.lastIndexOf('/') + 1);
+    }
+
+    static String extension(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 ? name.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+}
@@ -0,0 +1,174 @@
+package fr.tc11;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Intrinsic size of an image read from its header only (JPEG SOF, PNG IHDR, GIF logical screen,
+ * WebP VP8/VP8L/VP8X chunk, SVG root element), without decoding pixels.
+ *
+ * JPEG sizes take the EXIF orientation into account, like browsers do.
+ */
+record ImageDimensions(int width, int height) {
+
+    // Most JPEG headers (EXIF thumbnail included) fit well below; beyond, the file is not worth scanning
+    private static final int MAX_JPEG_HEADER = 1 << 20;
+    private static final int SVG_HEADER = 4096;
+
+    private static final Pattern SVG_TAG = Pattern.compile("<svg\\b[^>]*>", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SVG_WIDTH = Pattern.compile("\\swidth\\s*=\\s*[\"']\\s*([0-9.]+)\\s*(px)?\\s*[\"']");
+    private static final Pattern SVG_HEIGHT = Pattern.compile("\\sheight\\s*=\\s*[\"']\\s*([0-9.]+)\\s*(px)?\\s*[\"']");
+    private static final Pattern SVG_VIEW_BOX = Pattern.compile(
+            "\\sviewBox\\s*=\\s*[\"']\\s*[-0-9.]+[\\s,]+[-0-9.]+[\\s,]+([0-9.]+)[\\s,]+([0-9.]+)\\s*[\"']");
+
+    /**
+     * Reads the size of an image file.
+     *
+     * @return the size, or null when the format is unknown or the header is invalid
+     */
+    static ImageDimensions read(Path file) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 512)) {
+            return read(in);
+        }
+    }
+
+    static ImageDimensions read(InputStream in) throws IOException {
+        if (!in.markSupported()) in = new BufferedInputStream(in, 512);
+        in.mark(SVG_HEADER);
+        byte[] signature = in.readNBytes(12);
+        if (signature.length < 4) return null;
+        try {
+            if ((signature[0] & 0xFF) == 0xFF && (signature[1] & 0xFF) == 0xD8) {
+                in.reset();
+                in.skipNBytes(2);
+                return jpeg(in);
+            }
+            if ((signature[0] & 0xFF) == 0x89 && signature[1] == 'P' && signature[2] == 'N' && signature[3] == 'G') {
+                // 8-byte signature, chunk length, "IHDR", then width and height
+                byte[] ihdr = in.readNBytes(12);
+                if (ihdr.length < 12 || ihdr[0] != 'I' || ihdr[1] != 'H' || ihdr[2] != 'D' || ihdr[3] != 'R') return null;
+                return of(int32(ihdr, 4), int32(ihdr, 8));
+            }
+            if (signature[0] == 'G' && signature[1] == 'I' && signature[2] == 'F' && signature.length >= 10) {
+                return of(uint16le(signature, 6), uint16le(signature, 8));
+            }
+            if (signature.length == 12 && signature[0] == 'R' && signature[1] == 'I' && signature[2] == 'F' && signature[3] == 'F'
+                    && signature[8] == 'W' && signature[9] == 'E' && signature[10] == 'B' && signature[11] == 'P') {
+                return webp(in.readNBytes(18));
+            }
+            in.reset();
+            return svg(new String(in.readNBytes(SVG_HEADER), StandardCharsets.UTF_8));
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static ImageDimensions jpeg(InputStream in) throws IOException {
+        int orientation = 1;
+        long read = 2;
+        while (read < MAX_JPEG_HEADER) {
+            int marker = in.read();
+            if (marker != 0xFF) return null;
+            int type = in.read();
+            while (type == 0xFF) type = in.read(); // fill bytes
+            if (type < 0 || type == 0xD9 || type == 0xDA) return null;
+            if (type == 0x01 || (type >= 0xD0 && type <= 0xD7)) continue; // no length
+            byte[] length = in.readNBytes(2);
+            if (length.length < 2) return null;
+            int size = uint16(length, 0) - 2;
+            if (size < 0) return null;
+            read += 4 + size;
+            boolean sof = type >= 0xC0 && type <= 0xCF && type != 0xC4 && type != 0xC8 && type != 0xCC;
+            if (sof) {
+                byte[] frame = in.readNBytes(5);
+                if (frame.length < 5) return null;
+                int height = uint16(frame, 1);
+                int width = uint16(frame, 3);
+                return orientation >= 5 ? of(height, width) : of(width, height);
+            }
+            if (type == 0xE1 && orientation == 1) {
+                byte[] app1 = in.readNBytes(size);
+                // Re-wraps the segment so that the EXIF parser of ImageProcessing can read it
+                byte[] jpeg = new byte[app1.length + 6];
+                jpeg[0] = (byte) 0xFF;
+                jpeg[1] = (byte) 0xD8;
+                jpeg[2] = (byte) 0xFF;
+                jpeg[3] = (byte) 0xE1;
+                jpeg[4] = (byte) ((size + 2) >> 8);
+                jpeg[5] = (byte) (size + 2);
+                System.arraycopy(app1, 0, jpeg, 6, app1.length);
+                orientation = ImageProcessing.exifOrientation(jpeg);
+            } else {
+                in.skipNBytes(size);
+            }
+        }
+        return null;
+    }
+
+    private static ImageDimensions webp(byte[] chunk) {
+        // chunk: fourcc (4), size (4), then the chunk payload
+        if (chunk.length < 18) return null;
+        String type = new String(chunk, 0, 4, StandardCharsets.US_ASCII);
+        return switch (type) {
+            // Lossy: frame tag (3), start code (3), then 14-bit width and height
+            case "VP8 " -> of(uint16le(chunk, 14) & 0x3FFF, uint16le(chunk, 16) & 0x3FFF);
+            // Lossless: signature byte, then 14-bit width - 1 and height - 1
+            case "VP8L" -> {
+                int bits = (chunk[9] & 0xFF) | (chunk[10] & 0xFF) << 8 | (chunk[11] & 0xFF) << 16 | (chunk[12] & 0xFF) << 24;
+                yield of((bits & 0x3FFF) + 1, ((bits >> 14) & 0x3FFF) + 1);
+            }
+            // Extended: flags (4), then 24-bit canvas width - 1 and height - 1
+            case "VP8X" -> of(uint24le(chunk, 12) + 1, uint24le(chunk, 15) + 1);
+            default -> null;
+        };
+    }
+
+    private static ImageDimensions svg(String header) {
+        Matcher tag = SVG_TAG.matcher(header);
+        if (!tag.find()) return null;
+        String svg = tag.group();
+        Matcher width = SVG_WIDTH.matcher(svg);
+        Matcher height = SVG_HEIGHT.matcher(svg);
+        try {
+            if (width.find() && height.find()) {
+                return of(round(width.group(1)), round(height.group(1)));
+            }
+            // Sizes in %, em... : the aspect ratio of the viewBox is what matters for the layout
+            Matcher viewBox = SVG_VIEW_BOX.matcher(svg);
+            return viewBox.find() ? of(round(viewBox.group(1)), round(viewBox.group(2))) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static int round(String number) {
+        return (int) Math.round(Double.parseDouble(number));
+    }
+
+    private static ImageDimensions of(int width, int height) {
+        return width > 0 && height > 0 ? new ImageDimensions(width, height) : null;
+    }
+
+    private static int uint16(byte[] b, int pos) {
+        return (b[pos] & 0xFF) << 8 | (b[pos + 1] & 0xFF);
+    }
+
+    private static int uint16le(byte[] b, int pos) {
+        return (b[pos] & 0xFF) | (b[pos + 1] & 0xFF) << 8;
+    }
+
+    private static int uint24le(byte[] b, int pos) {
+        return (b[pos] & 0xFF) | (b[pos + 1] & 0xFF) << 8 | (b[pos + 2] & 0xFF) << 16;
+    }
+
+    private static int int32(byte[] b, int pos) {
+        return (b[pos] & 0xFF) << 24 | (b[pos + 1] & 0xFF) << 16 | (b[pos + 2] & 0xFF) << 8 | (b[pos + 3] & 0xFF);
+    }
+}
@@ -0,0 +1,161 @@
+package fr.tc11;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Index of the images derived at build time from the content folder, written by the
+ * "images" build stage ({@link ImageDerivativesStage}) and read by {@link DerivedImages}
+ * while rendering.
+ *
+ * Images are keyed by their path relative to the content folder, with '/' separators
+ * and NFC-normalised names (e.g. <code>posts/2026-04-02-week-end/Photo 1.jpg</code>).
+ */
+final class ImageManifest {
+
+    private static final Logger LOG = Logger.getLogger(ImageManifest.class);
+
+    static final int FORMAT_VERSION = 2;
+    static final String FILE_NAME = "manifest.json";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    /**
+     * One resized copy of an image.
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record Variant(int width, int height, String url) {
+    }
+
+    /**
+     * A source image: content hash, intrinsic size (after EXIF orientation), its variants
+     * (smallest first), and for decoded images a data URI placeholder and the dominant colour.
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record Entry(String hash, int width, int height, List<Variant> variants, String placeholder, String color) {
+
+        Entry {
+            variants = variants == null ? List.of()
+                    : variants.stream().sorted(Comparator.comparingInt(Variant::width)).toList();
+        }
+
+        /** Smallest variant, or null when the image is already small. */
+        Variant smallest() {
+            return variants.isEmpty() ? null : variants.get(0);
+        }
+
+        /** Largest variant not wider than the given width, or the smallest one. */
+        Variant upTo(int width) {
+            Variant best = smallest();
+            for (Variant variant : variants) {
+                if (variant.width() <= width) best = variant;
+            }
+            return best;
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private record Document(int version, Map<String, Entry> images) {
+    }
+
+    private final Map<String, Entry> images;
+    // File name -> keys, to resolve images of pages whose source folder is unknown
+    private volatile Map<String, List<String>> keysByName;
+
+    ImageManifest(Map<String, Entry> images) {
+        this.images = Map.copyOf(images);
+    }
+
+    static ImageManifest empty() {
+        return new ImageManifest(Map.of());
+    }
+
+    Map<String, Entry> images() {
+        return images;
+    }
+
+    /**
+     * Reads a manifest; a missing, unreadable or other-version file gives an empty manifest.
+     */
+    static ImageManifest read(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return empty();
+        }
+        try {
+            Document document = MAPPER.readValue(file.toFile(), Document.class);
+            if (document.version() != FORMAT_VERSION || document.images() == null) {
+                LOG.infof("Ignoring image manifest %s with format version %d", file, document.version());
+                return empty();
+            }
+            return new ImageManifest(document.images());
+        } catch (IOException e) {
+            LOG.warnf("Failed to read image manifest %s: %s", file, e.getMessage());
+            return empty();
+        }
+    }
+
+    /**
+     * Writes the manifest atomically, keys sorted so that it diffs cleanly between builds.
+     */
+    void write(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling(FILE_NAME + ".tmp");
+        try {
+            MAPPER.writeValue(temp.toFile(), new Document(FORMAT_VERSION, new TreeMap<>(images)));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    Entry get(String key) {
+        return images.get(key);
+    }
+
+    /**
+     * Finds an image by file name only; null when no image or several images have that name.
+     */
+    Entry findByName(String name) {
+        Map<String, List<String>> index = keysByName;
+        if (index == null) {
+            index = new HashMap<>();
+            for (String key : images.keySet()) {
+                index.computeIfAbsent(fileName(key), k -> new ArrayList<>()).add(key);
+            }
+            keysByName = index;
+        }
+        List<String> keys = index.get(normalize(name));
+        return keys != null && keys.size() == 1 ? images.get(keys.get(0)) : null;
+    }
+
+    /**
+     * Builds the manifest key of a file from its folder and name, both relative to the content folder.
+     */
+    static String key(String folder, String name) {
+        String normalized = normalize(name);
+        if (folder == null || folder.isEmpty()) return normalized;
+        return normalize(folder.replace('\\', '/')) + "/" + normalized;
+    }
+
+    static String normalize(String path) {
+        return Normalizer.normalize(path, Normalizer.Form.NFC);
+    }
+
+    private static String fileName(String key) {
+        return key.substring(key.lastIndexOf('/') + 1);
+    }
+}
@@ -0,0 +1,311 @@
+package fr.tc11;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Base64;
+import java.util.Iterator;
+
+/**
+ * Pure Java (ImageIO/Java2D) image operations used by the build stages: decoding with
+ * EXIF orientation, high-quality downscaling, JPEG/PNG encoding, placeholders and dominant colour.
+ */
+final class ImageProcessing {
+
+    // Placeholders are stretched and blurred by the browser: quality hardly matters, size does
+    private static final float PLACEHOLDER_QUALITY = 0.4f;
+    private static final int COLOR_SAMPLE_WIDTH = 64;
+
+    private ImageProcessing() {
+    }
+
+    /**
+     * A decoded image with the intrinsic size of the original (after orientation), which is
+     * larger than the image itself when source pixels were skipped while decoding.
+     */
+    record Decoded(BufferedImage image, int width, int height) {
+    }
+
+    /**
+     * Decodes an image, skipping source pixels when it is much larger than needed, and applies
+     * the EXIF orientation so that the result looks like the original does in a browser.
+     *
+     * @param bytes the encoded image
+     * @param minWidth the width the decoded image must keep at least (after orientation)
+     * @return the decoded image, or null when no ImageIO reader supports the format
+     */
+    static Decoded read(byte[] bytes, int minWidth) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int orientation = exifOrientation(bytes);
+                boolean swapped = orientation >= 5;
+                int width = swapped ? reader.getHeight(0) : reader.getWidth(0);
+                int height = swapped ? reader.getWidth(0) : reader.getHeight(0);
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, width / Math.max(1, minWidth));
+                if (step > 1) {
+                    param.setSourceSubsampling(step, step, 0, 0);
+                }
+                return new Decoded(orient(reader.read(0, param), orientation), width, height);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Downscales an image to the given width, halving it with bilinear filtering first so that
+     * every pixel contributes, then finishing with a bicubic step. Never upscales.
+     */
+    static BufferedImage resize(BufferedImage source, int targetWidth) {
+        if (targetWidth >= source.getWidth()) {
+            return source;
+        }
+        int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * (double) targetWidth / source.getWidth()));
+        int type = source.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            boolean last = width / 2 < targetWidth;
+            width = last ? targetWidth : width / 2;
+            height = last ? targetHeight : Math.max(targetHeight, height / 2);
+            current = draw(current, width, height, type,
+                    last ? RenderingHints.VALUE_INTERPOLATION_BICUBIC : RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        } while (width != targetWidth);
+        return current;
+    }
+
+    /**
+     * Scales and crops an image to cover exactly the given size, centred.
+     */
+    static BufferedImage cover(BufferedImage source, int width, int height) {
+        double scale = Math.max(width / (double) source.getWidth(), height / (double) source.getHeight());
+        int scaledWidth = Math.max(width, (int) Math.ceil(source.getWidth() * scale));
+        BufferedImage scaled = scaledWidth < source.getWidth()
+                ? resize(source, scaledWidth)
+                : draw(source, scaledWidth, Math.max(height, (int) Math.ceil(source.getHeight() * scale)),
+                        BufferedImage.TYPE_INT_RGB, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        int x = (scaled.getWidth() - width) / 2;
+        int y = (scaled.getHeight() - height) / 2;
+        return draw(scaled.getSubimage(x, y, width, height), width, height, BufferedImage.TYPE_INT_RGB,
+                RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+    }
+
+    /**
+     * Writes an image as JPEG (opaque) or PNG (with transparency), through a temporary file
+     * moved into place so that readers never see a partial file.
+     */
+    static void write(BufferedImage image, Path file, float jpegQuality) throws IOException {
+        Files.createDirectories(file.getParent());
+        // Not createTempFile: its owner-only permissions would be kept by the published file
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            if (file.getFileName().toString().endsWith(".png")) {
+                ImageIO.write(image, "png", temp.toFile());
+            } else {
+                writeJpeg(opaque(image), temp.toFile(), jpegQuality);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Encodes a tiny copy of an image as a data URI, to be shown (stretched, so blurred) while the
+     * image loads: JPEG or PNG, whichever is smaller, PNG when transparent.
+     */
+    static String placeholder(BufferedImage source, int width) throws IOException {
+        BufferedImage tiny = resize(source, width);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(tiny, "png", png);
+        if (tiny.getColorModel().hasAlpha()) {
+            return dataUri("image/png", png.toByteArray());
+        }
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        writeJpeg(opaque(tiny), jpeg, PLACEHOLDER_QUALITY);
+        return jpeg.size() < png.size()
+                ? dataUri("image/jpeg", jpeg.toByteArray())
+                : dataUri("image/png", png.toByteArray());
+    }
+
+    private static String dataUri(String mediaType, byte[] bytes) {
+        return "data:" + mediaType + ";base64," + Base64.getEncoder().encodeToString(bytes);
+    }
+
+    /**
+     * Dominant colour of an image (e.g. "#3a5f8c"): the average of the most populated cell of a
+     * 16x16x16 RGB histogram, computed on a small copy; transparent pixels are ignored.
+     */
+    static String dominantColor(BufferedImage source) {
+        BufferedImage small = resize(source, Math.min(source.getWidth(), COLOR_SAMPLE_WIDTH));
+        int[] counts = new int[4096];
+        long[] sums = new long[4096 * 3];
+        for (int y = 0; y < small.getHeight(); y++) {
+            for (int x = 0; x < small.getWidth(); x++) {
+                int argb = small.getRGB(x, y);
+                if ((argb >>> 24) < 128) continue;
+                int r = (argb >> 16) & 0xFF, g = (argb >> 8) & 0xFF, b = argb & 0xFF;
+                int cell = (r >> 4) << 8 | (g >> 4) << 4 | (b >> 4);
+                counts[cell]++;
+                sums[cell * 3] += r;
+                sums[cell * 3 + 1] += g;
+                sums[cell * 3 + 2] += b;
+            }
+        }
+        int best = 0;
+        for (int cell = 1; cell < counts.length; cell++) {
+            if (counts[cell] > counts[best]) best = cell;
+        }
+        if (counts[best] == 0) return null;
+        int n = counts[best];
+        return String.format("#%02x%02x%02x", sums[best * 3] / n, sums[best * 3 + 1] / n, sums[best * 3 + 2] / n);
+    }
+
+    private static void writeJpeg(BufferedImage image, Object target, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(target)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static BufferedImage opaque(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+            return image;
+        }
+        return draw(image, image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB,
+                RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+    }
+
+    private static BufferedImage draw(BufferedImage source, int width, int height, int type, Object interpolation) {
+        BufferedImage target = new BufferedImage(width, height, type);
+        Graphics2D g = target.createGraphics();
+        try {
+            if (type == BufferedImage.TYPE_INT_RGB) {
+                // Transparent areas become white rather than black once flattened to JPEG
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, width, height);
+            }
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    /**
+     * Rotates/mirrors an image according to an EXIF orientation value (1 to 8).
+     */
+    static BufferedImage orient(BufferedImage image, int orientation) {
+        if (orientation <= 1 || orientation > 8) {
+            return image;
+        }
+        int w = image.getWidth();
+        int h = image.getHeight();
+        boolean swapped = orientation >= 5;
+        AffineTransform t = new AffineTransform();
+        switch (orientation) {
+            case 2 -> { t.translate(w, 0); t.scale(-1, 1); }
+            case 3 -> { t.translate(w, h); t.rotate(Math.PI); }
+            case 4 -> { t.translate(0, h); t.scale(1, -1); }
+            case 5 -> { t.rotate(Math.PI / 2); t.scale(1, -1); }
+            case 6 -> { t.translate(h, 0); t.rotate(Math.PI / 2); }
+            case 7 -> { t.scale(-1, 1); t.translate(-h, 0); t.translate(0, w); t.rotate(3 * Math.PI / 2); }
+            case 8 -> { t.translate(0, w); t.rotate(3 * Math.PI / 2); }
+            default -> { }
+        }
+        int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage target = new BufferedImage(swapped ? h : w, swapped ? w : h, type);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.drawImage(image, t, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    /**
+     * Reads the EXIF orientation tag (0x0112) from the APP1 segment of a JPEG, without decoding it.
+     *
+     * @return the orientation (1 to 8), or 1 when absent or not a JPEG
+     */
+    static int exifOrientation(byte[] jpeg) {
+        if (jpeg.length < 4 || (jpeg[0] & 0xFF) != 0xFF || (jpeg[1] & 0xFF) != 0xD8) {
+            return 1;
+        }
+        int pos = 2;
+        while (pos + 4 <= jpeg.length && (jpeg[pos] & 0xFF) == 0xFF) {
+            int marker = jpeg[pos + 1] & 0xFF;
+            int length = ((jpeg[pos + 2] & 0xFF) << 8) | (jpeg[pos + 3] & 0xFF);
+            if (marker == 0xDA || marker == 0xD9 || length < 2) {
+                break; // start of scan: no more metadata
+            }
+            int segment = pos + 4;
+            if (marker == 0xE1 && segment + 14 <= jpeg.length && segment + length - 2 <= jpeg.length
+                    && jpeg[segment] == 'E' && jpeg[segment + 1] == 'x' && jpeg[segment + 2] == 'i' && jpeg[segment + 3] == 'f') {
+                return tiffOrientation(jpeg, segment + 6, segment + length - 2);
+            }
+            pos = segment + length - 2;
+        }
+        return 1;
+    }
+
+    private static int tiffOrientation(byte[] b, int tiff, int end) {
+        boolean little = b[tiff] == 'I';
+        int ifd = tiff + readInt(b, tiff + 4, little);
+        if (ifd < tiff || ifd + 2 > end) return 1;
+        int entries = readShort(b, ifd, little);
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            if (entry + 12 > end) break;
+            if (readShort(b, entry, little) == 0x0112) {
+                int value = readShort(b, entry + 8, little);
+                return value >= 1 && value <= 8 ? value : 1;
+            }
+        }
+        return 1;
+    }
+
+    private static int readShort(byte[] b, int pos, boolean little) {
+        return little ? (b[pos] & 0xFF) | ((b[pos + 1] & 0xFF) << 8) : ((b[pos] & 0xFF) << 8) | (b[pos + 1] & 0xFF);
+    }
+
+    private static int readInt(byte[] b, int pos, boolean little) {
+        return little
+                ? (b[pos] & 0xFF) | ((b[pos + 1] & 0xFF) << 8) | ((b[pos + 2] & 0xFF) << 16) | ((b[pos + 3] & 0xFF) << 24)
+                : ((b[pos] & 0xFF) << 24) | ((b[pos + 1] & 0xFF) << 16) | ((b[pos + 2] & 0xFF) << 8) | (b[pos + 3] & 0xFF);
+    }
+}
@@ -0,0 +1,59 @@
+package fr.tc11;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.quarkus.qute.TemplateData;
+
+/**
+ * An Instagram post as carried from the fetch sources to the templates, the snapshot cache and the
+ * fallback instagram.json.
+ *
+ * Only the API sources know the metadata: posts scraped from the profile page or read from RSS Bridge
+ * have a shortcode and a permalink only, and the other fields are null.
+ *
+ * @param shortcode the post shortcode, derived from the permalink when not given
+ * @param permalink the post URL on instagram.com
+ * @param mediaType IMAGE, VIDEO or CAROUSEL_ALBUM, or null when unknown
+ * @param timestamp the publication date as returned by the API (ISO 8601), or null
+ * @param caption the caption excerpt, or null
+ * @param thumbnail the self-hosted thumbnail, or null when none was downloaded
+ */
+@TemplateData
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record InstagramPost(String shortcode, String permalink, String mediaType, String timestamp, String caption,
+                            InstagramThumbnail thumbnail) {
+
+    public InstagramPost {
+        if (shortcode == null && permalink != null) {
+            shortcode = InstagramPostsFetcher.shortcodeOf(permalink);
+        }
+    }
+
+    /**
+     * A post known by its URL only.
+     */
+    static InstagramPost of(String permalink) {
+        return new InstagramPost(null, permalink, null, null, null, null);
+    }
+
+    /**
+     * A post returned by the Instagram/Graph API, with its metadata.
+     */
+    static InstagramPost of(InstagramResponseParser.InstagramMedia media) {
+        return new InstagramPost(null, media.permalink(), media.mediaType(), media.timestamp(), media.caption(), null);
+    }
+
+    InstagramPost withThumbnail(InstagramThumbnail thumbnail) {
+        return new InstagramPost(shortcode, permalink, mediaType, timestamp, caption, thumbnail);
+    }
+
+    /**
+     * Returns true for videos and reels, which the grid marks with a play icon.
+     */
+    @JsonIgnore
+    public boolean isVideo() {
+        return "VIDEO".equals(mediaType);
+    }
+}
@@ -1,6 +1,5 @@
 package fr.tc11;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.microsoft.playwright.Browser;
@@ -11,10 +10,12 @@ import com.microsoft.playwright.Playwright;
 import com.microsoft.playwright.options.WaitUntilState;
 import io.quarkus.runtime.Startup;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
@@ -26,14 +27,27 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -44,10 +58,29 @@ import java.util.regex.Pattern;
  * to Qute templates, allowing instagram.json to be generated dynamically.
  * 
  * Uses the following fallback chain:
- * 1. Headless browser scraping via Playwright
- * 2. Instagram Graph API (if credentials configured)
- * 3. RSS Bridge (no authentication required, simple HTTP request)
- * 4. Existing instagram.json file from classpath (if all else fails)
+ * 1. Instagram API (if an access token is configured)
+ * 2. Headless browser scraping via Playwright
+ * 3. Instagram Graph API (if credentials configured)
+ * 4. RSS Bridge (no authentication required, simple HTTP request)
+ * 5. Existing instagram.json file from classpath (if all else fails)
+ * 
+ * In "race" fetch mode the sources are started staggered by a hedge delay and
+ * the first non-empty result wins, still preferring earlier sources that finish
+ * within a short grace window.
+ * 
+ * Successful fetches are stored in an on-disk snapshot ({@link InstagramSnapshotStore}).
+ * A fresh snapshot is served without any network call; a stale one is served while
+ * the chain above refreshes it in the background.
+ * 
+ * In "async" startup mode the bean starts from the classpath fallback and loads the
+ * posts on a virtual thread, so startup and pages that never render Instagram posts
+ * do not wait; {@link InstagramTemplateExtension} waits for the initial load, bounded
+ * by the configured render wait.
+ * 
+ * Every source produces {@link InstagramPost}s; the API sources also return the metadata of each
+ * post, and the images of the displayed posts are downloaded and resized into self-hosted
+ * thumbnails ({@link InstagramThumbnails}) attached to the posts exposed by
+ * {@link InstagramTemplateExtension}.
  * 
  * @see <a href="https://rss-bridge.org/">RSS Bridge</a>
  * @see <a href="https://developers.facebook.com/docs/instagram-api/">Instagram Graph API Documentation</a>
@@ -71,19 +104,25 @@ public class InstagramPostsFetcher {
     // Instagram profile URL for headless browser scraping
     private static final String INSTAGRAM_PROFILE_URL = "https://www.instagram.com/%s/";
     
-    // Pattern to find post shortcodes in the page
+    // Patterns to find post shortcodes in link hrefs
     private static final Pattern POST_LINK_PATTERN = Pattern.compile("/p/([A-Za-z0-9_-]+)");
     private static final Pattern REEL_LINK_PATTERN = Pattern.compile("/reel/([A-Za-z0-9_-]+)");
-    private static final Pattern SHORTCODE_JSON_PATTERN = Pattern.compile("\\\"shortcode\\\":\\\"([A-Za-z0-9_-]+)\\\"");
     
     private static final int MAX_POSTS = 6;
     // How many posts to retrieve from sources before blacklist filtering; must be > MAX_POSTS
     private static final int FETCH_LIMIT = 20;
+    // How many posts the incremental API fetch keeps from previous snapshots
+    private static final int MAX_STORED_POSTS = 100;
     private static final int CONNECT_TIMEOUT_SECONDS = 10;
     private static final int REQUEST_TIMEOUT_SECONDS = 30;
     private static final int BROWSER_TIMEOUT_MS = 30000;
     private static final int BROWSER_CONTENT_LOAD_WAIT_MS = 2000;
     private static final int BROWSER_FETCH_ATTEMPTS = 2;
+    static final String FETCH_MODE_SEQUENTIAL = "sequential";
+    static final String FETCH_MODE_RACE = "race";
+    static final String STARTUP_MODE_BLOCKING = "blocking";
+    static final String STARTUP_MODE_ASYNC = "async";
+    private static final String FALLBACK_SOURCE = "fallback instagram.json";
     private static final DateTimeFormatter DEBUG_TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
     
     // Classpath resource path for fallback instagram.json
@@ -107,6 +146,64 @@ public class InstagramPostsFetcher {
     @ConfigProperty(name = "tc11.instagram.blacklist")
     Optional<String> blacklist;
 
+    // "sequential" tries one source after the other, "race" starts them staggered by the hedge delay
+    @ConfigProperty(name = "tc11.instagram.fetch-mode", defaultValue = FETCH_MODE_SEQUENTIAL)
+    String fetchMode;
+
+    @ConfigProperty(name = "tc11.instagram.race.hedge-delay", defaultValue = "2s")
+    Duration hedgeDelay;
+
+    @ConfigProperty(name = "tc11.instagram.race.grace-window", defaultValue = "500ms")
+    Duration graceWindow;
+
+    // Overall deadline for the whole chain, after which the classpath fallback is used
+    @ConfigProperty(name = "tc11.instagram.fetch-deadline", defaultValue = "120s")
+    Duration fetchDeadline;
+
+    // On-disk snapshot of the last fetched posts, served without network access while younger than the TTL
+    @ConfigProperty(name = "tc11.instagram.cache.enabled", defaultValue = "true")
+    boolean cacheEnabled;
+
+    @ConfigProperty(name = "tc11.instagram.cache.dir", defaultValue = "target/instagram-cache")
+    String cacheDir;
+
+    @ConfigProperty(name = "tc11.instagram.cache.ttl", defaultValue = "6h")
+    Duration cacheTtl;
+
+    // "blocking" loads the posts during startup, "async" starts from the fallback and loads them in the background
+    @ConfigProperty(name = "tc11.instagram.startup-mode", defaultValue = STARTUP_MODE_BLOCKING)
+    String startupMode;
+
+    // How long rendering {instagram:posts} waits for the background load before using the current posts
+    @ConfigProperty(name = "tc11.instagram.startup.render-wait", defaultValue = "150s")
+    Duration renderWait;
+
+    // API fetches only walk pages until they reach a post of the current snapshot and merge the new ones in
+    @ConfigProperty(name = "tc11.instagram.incremental.enabled", defaultValue = "true")
+    boolean incrementalEnabled;
+
+    @ConfigProperty(name = "tc11.instagram.incremental.max-pages", defaultValue = "5")
+    int incrementalMaxPages;
+
+    // Square thumbnails of the displayed posts, downloaded from the API media URLs into site assets
+    @ConfigProperty(name = "tc11.instagram.thumbnails.enabled", defaultValue = "true")
+    boolean thumbnailsEnabled;
+
+    @ConfigProperty(name = "tc11.instagram.thumbnails.dir", defaultValue = "public/assets/instagram")
+    String thumbnailsDir;
+
+    @ConfigProperty(name = "tc11.instagram.thumbnails.url-prefix", defaultValue = "/assets/instagram")
+    String thumbnailsUrlPrefix;
+
+    @ConfigProperty(name = "tc11.instagram.thumbnails.size", defaultValue = "480")
+    int thumbnailsSize;
+
+    @ConfigProperty(name = "tc11.instagram.thumbnails.concurrency", defaultValue = "4")
+    int thumbnailsConcurrency;
+
+    @ConfigProperty(name = "tc11.images.jpeg-quality", defaultValue = "0.82")
+    float jpegQuality;
+
     @ConfigProperty(name = "tc11.instagram.debug.enabled", defaultValue = "false")
     boolean debugEnabled;
 
@@ -116,8 +213,21 @@ public class InstagramPostsFetcher {
     private final ObjectMapper objectMapper = new ObjectMapper();
     private final HttpClient httpClient;
     
-    // In-memory storage for fetched posts (initialized once in @PostConstruct)
-    private List<String> instagramPosts = Collections.emptyList();
+    // Immutable snapshot of the current posts and its filtered view, swapped atomically when a fetch completes
+    private final AtomicReference<PublishedPosts> current = new AtomicReference<>(
+            new PublishedPosts(new InstagramSnapshot(List.of(), FALLBACK_SOURCE, Instant.EPOCH), List.of()));
+
+    // Blacklisted shortcodes, parsed once from the configuration
+    Set<String> blacklistedShortcodes = Set.of();
+
+    // Released once the initial load (cache, fetch chain or fallback) has published its posts
+    private final CountDownLatch initialLoad = new CountDownLatch(1);
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private InstagramSnapshotStore snapshotStore;
+
+    private InstagramThumbnails thumbnails;
 
     public InstagramPostsFetcher() {
         this.httpClient = HttpClient.newBuilder()
@@ -128,173 +238,459 @@ public class InstagramPostsFetcher {
 
     @PostConstruct
     void init() {
+        blacklistedShortcodes = parseBlacklist(blacklist.orElse(null));
+
+        // Read even when disabled, so that thumbnails written by an earlier fetch are still shown
+        if (thumbnailsEnabled) {
+            thumbnails = new InstagramThumbnails(Path.of(thumbnailsDir), thumbnailsUrlPrefix, thumbnailsSize,
+                    jpegQuality, thumbnailsConcurrency, this::downloadImage);
+        }
+
         if (!enabled) {
             LOG.info("Instagram posts fetcher is disabled");
             // Load fallback posts even when disabled so the REST endpoint always returns data
-            instagramPosts = readFallbackPosts();
+            publish(fallbackSnapshot());
+            initialLoad.countDown();
             return;
         }
 
-        List<String> fallbackPosts = readFallbackPosts();
-        List<String> fetchedUrls = null;
-        
-        // Try Instagram API first (preferred - only requires access token)
-        if (hasInstagramApiToken()) {
-            LOG.info("Fetching Instagram posts via Instagram API...");
-            try {
-                fetchedUrls = fetchInstagramPostsViaInstagramApi();
-                if (!fetchedUrls.isEmpty()) {
-                    instagramPosts = Collections.unmodifiableList(new ArrayList<>(fetchedUrls));
-                    LOG.infof("Successfully fetched %d Instagram posts via Instagram API", fetchedUrls.size());
+        if (cacheEnabled) {
+            snapshotStore = new InstagramSnapshotStore(Path.of(cacheDir), instagramUsername, objectMapper);
+        }
+
+        if (STARTUP_MODE_ASYNC.equalsIgnoreCase(startupMode)) {
+            // Serve the classpath fallback until the background load publishes fresher posts
+            publish(fallbackSnapshot());
+            LOG.info("Loading Instagram posts in the background...");
+            executor.submit(this::load);
+            return;
+        }
+        load();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Loads the posts from the snapshot cache, the fetch chain or the classpath fallback,
+     * then releases the initial-load barrier.
+     */
+    void load() {
+        try {
+            if (snapshotStore != null) {
+                Optional<InstagramSnapshot> cached = snapshotStore.read();
+                if (cached.isPresent()) {
+                    InstagramSnapshot snapshot = cached.get();
+                    publish(snapshot);
+                    if (snapshot.isFresh(cacheTtl, Instant.now())) {
+                        LOG.infof("Using %d cached Instagram posts from %s (fetched %s)",
+                                snapshot.posts().size(), snapshot.source(), snapshot.fetchedAt());
+                        return;
+                    }
+                    // Stale-while-revalidate: keep serving the cached posts while a refresh runs
+                    LOG.infof("Cached Instagram posts from %s are stale (fetched %s), refreshing in the background",
+                            snapshot.source(), snapshot.fetchedAt());
+                    executor.submit(() -> {
+                        if (!refresh()) {
+                            LOG.warn("Background Instagram refresh failed, keeping cached posts");
+                        }
+                    });
                     return;
                 }
-            } catch (Exception e) {
-                LOG.warnf("Instagram API failed: %s. Trying other methods...", e.getMessage());
             }
-        } else {
-            LOG.info("Instagram API token not configured. Trying headless browser...");
+
+            if (refresh()) {
+                return;
+            }
+
+            // Final fallback to existing instagram.json from classpath
+            InstagramSnapshot fallback = fallbackSnapshot();
+            publish(fallback);
+            if (!fallback.posts().isEmpty()) {
+                LOG.infof("Using %d fallback posts from instagram.json", fallback.posts().size());
+            } else {
+                LOG.warn("No Instagram posts available - instagram.json will be empty");
+            }
+        } finally {
+            initialLoad.countDown();
         }
+    }
 
-        // Try headless browser scraping
-        LOG.info("Fetching Instagram posts via headless browser...");
+    /**
+     * Waits until the initial load has published its posts, for at most the configured render wait.
+     * Only called when a template actually renders {@code instagram:posts}, so other pages never wait.
+     *
+     * @return true if the initial load completed, false if the wait timed out
+     */
+    public boolean awaitInitialLoad() {
         try {
-            fetchedUrls = fetchInstagramPostsViaHeadlessBrowser();
-            if (!fetchedUrls.isEmpty()) {
-                instagramPosts = Collections.unmodifiableList(new ArrayList<>(fetchedUrls));
-                LOG.infof("Successfully fetched %d Instagram posts via headless browser", fetchedUrls.size());
-                return;
+            if (initialLoad.await(renderWait.toMillis(), TimeUnit.MILLISECONDS)) {
+                return true;
             }
-        } catch (Exception e) {
-            LOG.warnf("Headless browser scraping failed: %s. Trying other methods...", e.getMessage());
+            LOG.warnf("Instagram posts still loading after %s, rendering the current posts", renderWait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
+        return false;
+    }
 
-        // Try legacy Graph API if both credentials are configured
+    /**
+     * Publishes a snapshot together with its filtered view, computed once here rather than on every render.
+     */
+    void publish(InstagramSnapshot snapshot) {
+        current.set(new PublishedPosts(snapshot, withThumbnails(visiblePosts(snapshot.posts(), blacklistedShortcodes))));
+    }
+
+    /**
+     * Attaches the self-hosted thumbnails to the given posts; posts without one in the index keep
+     * the thumbnail they were read with (e.g. from the fallback instagram.json), if any.
+     *
+     * @return unmodifiable list of the posts with their thumbnails
+     */
+    List<InstagramPost> withThumbnails(List<InstagramPost> posts) {
+        if (thumbnails == null) {
+            return List.copyOf(posts);
+        }
+        List<InstagramPost> attached = new ArrayList<>(posts.size());
+        for (InstagramPost post : posts) {
+            InstagramThumbnail thumbnail = thumbnails.get(post.shortcode());
+            attached.add(thumbnail != null ? post.withThumbnail(thumbnail) : post);
+        }
+        return List.copyOf(attached);
+    }
+
+    private InstagramSnapshot fallbackSnapshot() {
+        return new InstagramSnapshot(readFallbackPosts(), FALLBACK_SOURCE, Instant.EPOCH);
+    }
+
+    /**
+     * Runs the fetch chain and, on success, publishes the posts and stores them in the snapshot cache.
+     *
+     * @return true if a source returned posts
+     */
+    boolean refresh() {
+        if (!hasInstagramApiToken()) {
+            LOG.info("Instagram API token not configured. Trying headless browser...");
+        }
+
+        // In sequential mode a source only starts once the previous one has failed;
+        // in race mode the next source is also started after each hedge delay.
+        Duration hedge = FETCH_MODE_RACE.equalsIgnoreCase(fetchMode) ? hedgeDelay : null;
+        FetchOutcome outcome = fetchFirstAvailable(fetchSources(), hedge, graceWindow, fetchDeadline);
+        if (outcome == null) {
+            return false;
+        }
+
+        InstagramSnapshot snapshot = new InstagramSnapshot(outcome.posts(), outcome.source(), Instant.now());
+        // Before publishing, so that rendering never sees the new posts without their thumbnails
+        syncThumbnails(snapshot.posts(), outcome.media());
+        publish(snapshot);
+        LOG.infof("Successfully fetched %d Instagram posts via %s", outcome.posts().size(), outcome.source());
+        if (snapshotStore != null) {
+            snapshotStore.write(snapshot);
+        }
+        return true;
+    }
+
+    /**
+     * Downloads the missing thumbnails of the posts displayed from the given list and deletes
+     * the thumbnails of the posts no longer displayed. Does nothing when the fetch returned no
+     * media, so that a list scraped without metadata never discards thumbnails.
+     *
+     * @param posts the posts, before blacklist filtering
+     * @param media the API metadata returned by the same fetch, keyed by shortcode
+     */
+    void syncThumbnails(List<InstagramPost> posts, Map<String, InstagramResponseParser.InstagramMedia> media) {
+        if (thumbnails == null || media.isEmpty()) {
+            return;
+        }
+        try {
+            thumbnails.sync(visiblePosts(posts, blacklistedShortcodes), media);
+        } catch (IOException e) {
+            LOG.warnf("Failed to update Instagram thumbnails: %s", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Downloads an image returned by the API, for {@link InstagramThumbnails}.
+     */
+    byte[] downloadImage(String url) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .timeout(Duration.ofSeconds(REQUEST_TIMEOUT_SECONDS))
+                .GET()
+                .build();
+
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IOException("image download returned status " + response.statusCode());
+        }
+        return response.body();
+    }
+
+    /**
+     * Builds the list of fetch sources in preference order, skipping the ones
+     * whose credentials are not configured.
+     */
+    List<FetchSource> fetchSources() {
+        List<FetchSource> sources = new ArrayList<>();
+        // Instagram API first (preferred - only requires access token)
+        if (hasInstagramApiToken()) {
+            Map<String, InstagramResponseParser.InstagramMedia> media = new HashMap<>();
+            sources.add(new FetchSource("Instagram API", () -> fetchInstagramPostsViaInstagramApi(media), media));
+        }
+        sources.add(new FetchSource("headless browser", this::fetchInstagramPostsViaHeadlessBrowser));
+        // Legacy Graph API if both credentials are configured
         if (hasGraphApiCredentials()) {
-            LOG.info("Fetching Instagram posts via Graph API");
-            try {
-                fetchedUrls = fetchInstagramPostsViaGraphApi();
-                if (!fetchedUrls.isEmpty()) {
-                    instagramPosts = Collections.unmodifiableList(new ArrayList<>(fetchedUrls));
-                    LOG.infof("Successfully fetched %d Instagram posts via Graph API", fetchedUrls.size());
-                    return;
+            Map<String, InstagramResponseParser.InstagramMedia> media = new HashMap<>();
+            sources.add(new FetchSource("Graph API", () -> fetchInstagramPostsViaGraphApi(media), media));
+        }
+        sources.add(new FetchSource("RSS Bridge", this::fetchInstagramPostsViaRssBridge));
+        return sources;
+    }
+
+    /**
+     * Runs the given sources and returns the first non-empty result, or {@code null}
+     * if every source failed or the deadline expired.
+     *
+     * Sources are started in order: the next one starts as soon as every running source
+     * has failed, or after {@code hedgeDelay} when it is not {@code null}. Once a source
+     * succeeds, more preferred sources that are still running get {@code graceWindow}
+     * to finish so that preference order is honoured. Losing sources are interrupted.
+     *
+     * @param sources the sources in preference order
+     * @param hedgeDelay delay before starting the next source in parallel, or {@code null} to run sequentially
+     * @param graceWindow how long to wait for a more preferred source once a result is available
+     * @param deadline overall deadline for the whole chain
+     * @return the winning outcome, or {@code null} if no source returned posts in time
+     */
+    FetchOutcome fetchFirstAvailable(List<FetchSource> sources, Duration hedgeDelay, Duration graceWindow, Duration deadline) {
+        if (sources.isEmpty()) {
+            return null;
+        }
+
+        ExecutorService raceExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        BlockingQueue<SourceResult> completed = new LinkedBlockingQueue<>();
+        List<Future<?>> running = new ArrayList<>();
+        boolean[] done = new boolean[sources.size()];
+        long deadlineAt = System.nanoTime() + deadline.toNanos();
+        long nextStartAt = Long.MAX_VALUE;
+        long graceEndsAt = Long.MAX_VALUE;
+        int started = 0;
+        int finished = 0;
+        SourceResult best = null;
+
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                // Start the next source when nothing is in flight, or when the hedge delay has elapsed
+                if (started < sources.size() && best == null && (finished == started || now >= nextStartAt)) {
+                    running.add(startSource(raceExecutor, sources.get(started), started, completed));
+                    started++;
+                    nextStartAt = hedgeDelay != null ? now + hedgeDelay.toNanos() : Long.MAX_VALUE;
+                }
+
+                if (best != null && (now >= graceEndsAt || allDoneBefore(done, best.index()))) {
+                    return new FetchOutcome(sources.get(best.index()).name(), best.posts(), sources.get(best.index()).media());
+                }
+                if (finished == sources.size() || now >= deadlineAt) {
+                    break;
+                }
+
+                long wakeUpAt = Math.min(deadlineAt, best != null ? graceEndsAt : nextStartAt);
+                SourceResult result = completed.poll(Math.max(0, wakeUpAt - now), TimeUnit.NANOSECONDS);
+                if (result == null) {
+                    continue;
+                }
+                done[result.index()] = true;
+                finished++;
+
+                String name = sources.get(result.index()).name();
+                if (result.error() != null) {
+                    LOG.warnf("%s failed: %s. Trying other methods...", name, result.error().getMessage());
+                } else if (result.posts() == null || result.posts().isEmpty()) {
+                    LOG.infof("%s returned no posts. Trying other methods...", name);
+                } else if (best == null || result.index() < best.index()) {
+                    if (best == null) {
+                        graceEndsAt = System.nanoTime() + graceWindow.toNanos();
+                    }
+                    best = result;
                 }
-            } catch (Exception e) {
-                LOG.warnf("Graph API failed: %s. Trying RSS Bridge...", e.getMessage());
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // Cancel the losers; the headless browser closes itself once it notices the interruption
+            running.forEach(future -> future.cancel(true));
+            raceExecutor.shutdownNow();
         }
-        
-        // Fallback to RSS Bridge
-        LOG.info("Fetching Instagram posts via RSS Bridge...");
-        try {
-            fetchedUrls = fetchInstagramPostsViaRssBridge();
-            if (!fetchedUrls.isEmpty()) {
-                instagramPosts = Collections.unmodifiableList(new ArrayList<>(fetchedUrls));
-                LOG.infof("Successfully fetched %d Instagram posts via RSS Bridge", fetchedUrls.size());
-                return;
+
+        if (best != null) {
+            return new FetchOutcome(sources.get(best.index()).name(), best.posts(), sources.get(best.index()).media());
+        }
+        if (finished < sources.size()) {
+            LOG.warnf("Instagram fetch deadline of %s expired before any source returned posts", deadline);
+        }
+        return null;
+    }
+
+    private static Future<?> startSource(ExecutorService raceExecutor, FetchSource source, int index,
+                                         BlockingQueue<SourceResult> completed) {
+        LOG.infof("Fetching Instagram posts via %s...", source.name());
+        return raceExecutor.submit(() -> {
+            try {
+                completed.add(new SourceResult(index, source.fetch().call(), null));
+            } catch (Exception e) {
+                completed.add(new SourceResult(index, null, e));
+            }
+        });
+    }
+
+    private static boolean allDoneBefore(boolean[] done, int index) {
+        for (int i = 0; i < index; i++) {
+            if (!done[i]) {
+                return false;
             }
-        } catch (Exception e) {
-            LOG.warnf("RSS Bridge failed: %s", e.getMessage());
         }
-        
-        // Final fallback to existing instagram.json from classpath
-        if (!fallbackPosts.isEmpty()) {
-            instagramPosts = Collections.unmodifiableList(new ArrayList<>(fallbackPosts));
-            LOG.infof("Using %d fallback posts from instagram.json", fallbackPosts.size());
-        } else {
-            LOG.warn("No Instagram posts available - instagram.json will be empty");
-            instagramPosts = Collections.emptyList();
+        return true;
+    }
+
+    /**
+     * A named Instagram source, listed in preference order by {@link #fetchSources()}, with the
+     * map its fetch fills with the API metadata of the posts (left empty by scraping sources).
+     */
+    record FetchSource(String name, Callable<List<InstagramPost>> fetch,
+                       Map<String, InstagramResponseParser.InstagramMedia> media) {
+
+        FetchSource(String name, Callable<List<InstagramPost>> fetch) {
+            this(name, fetch, Map.of());
         }
     }
-    
+
     /**
-     * Returns the list of Instagram post URLs.
+     * The posts returned by the winning source, with their API metadata.
+     */
+    record FetchOutcome(String source, List<InstagramPost> posts,
+                        Map<String, InstagramResponseParser.InstagramMedia> media) {
+    }
+
+    /**
+     * A published snapshot and the posts actually displayed from it.
+     */
+    private record PublishedPosts(InstagramSnapshot snapshot, List<InstagramPost> visible) {
+    }
+
+    private record SourceResult(int index, List<InstagramPost> posts, Exception error) {
+    }
+
+    /**
+     * Returns the posts to display, with their metadata and thumbnails.
      * This is used by the Qute template extension to expose posts to templates.
+     * The filtered view is computed once per published snapshot, so this is a single volatile read.
      * 
-     * @return unmodifiable list of Instagram post URLs (with blacklisted posts filtered out)
+     * @return unmodifiable list of Instagram posts (with blacklisted posts filtered out)
      */
-    public List<String> getInstagramPosts() {
-        List<String> filtered = filterBlacklistedPosts(instagramPosts);
-        if (filtered.size() <= MAX_POSTS) {
-            return filtered;
-        }
-        return Collections.unmodifiableList(new ArrayList<>(filtered.subList(0, MAX_POSTS)));
+    public List<InstagramPost> getInstagramPosts() {
+        return current.get().visible();
+    }
+
+    /**
+     * Returns the URLs of the posts to display, as listed by the /instagram.json endpoint.
+     * 
+     * @return list of Instagram post URLs (with blacklisted posts filtered out)
+     */
+    public List<String> getInstagramPostUrls() {
+        return getInstagramPosts().stream().map(InstagramPost::permalink).toList();
     }
 
     /**
-     * Filters out blacklisted posts from the given list.
+     * Parses the blacklist configuration into a set of shortcodes.
      * Blacklist can contain either shortcodes (e.g., "DKurQ_ktdgw") or full URLs.
      * 
-     * @param posts the list of Instagram post URLs to filter
-     * @return filtered list with blacklisted posts removed
+     * @param blacklist comma-separated shortcodes or post URLs
+     * @return unmodifiable set of blacklisted shortcodes
      */
-    private List<String> filterBlacklistedPosts(List<String> posts) {
-        if (blacklist.isEmpty() || blacklist.get().isBlank()) {
-            return posts;
+    static Set<String> parseBlacklist(String blacklist) {
+        if (blacklist == null || blacklist.isBlank()) {
+            return Set.of();
         }
-        
-        // Parse blacklist entries (can be shortcodes or full URLs)
-        String[] blacklistEntries = blacklist.get().split(",");
-        Set<String> blacklistedShortcodes = new LinkedHashSet<>();
-        
-        for (String entry : blacklistEntries) {
+
+        Set<String> shortcodes = new HashSet<>();
+        for (String entry : blacklist.split(",")) {
             String trimmed = entry.trim();
             if (trimmed.isEmpty()) continue;
-            
-            // If it's a full URL, extract the shortcode
-            if (trimmed.startsWith("http://") || trimmed.startsWith("https://")) {
-                // Extract shortcode from URLs like https://www.instagram.com/p/DKurQ_ktdgw or https://www.instagram.com/p/DKurQ_ktdgw/
-                Matcher matcher = POST_LINK_PATTERN.matcher(trimmed);
-                if (matcher.find()) {
-                    blacklistedShortcodes.add(matcher.group(1));
-                }
-            } else {
-                // It's already a shortcode
-                blacklistedShortcodes.add(trimmed);
-            }
-        }
-        
-        if (blacklistedShortcodes.isEmpty()) {
-            return posts;
-        }
-        
-        // Filter out blacklisted posts
-        List<String> filtered = new ArrayList<>();
-        for (String post : posts) {
-            boolean isBlacklisted = false;
-            for (String shortcode : blacklistedShortcodes) {
-                if (isPostBlacklisted(post, shortcode)) {
-                    isBlacklisted = true;
-                    LOG.debugf("Filtering out blacklisted post: %s (shortcode: %s)", post, shortcode);
-                    break;
-                }
-            }
-            if (!isBlacklisted) {
-                filtered.add(post);
+
+            // Extract the shortcode from URLs like https://www.instagram.com/p/DKurQ_ktdgw/
+            String shortcode = trimmed.startsWith("http://") || trimmed.startsWith("https://")
+                    ? shortcodeOf(trimmed)
+                    : trimmed;
+            if (shortcode != null) {
+                shortcodes.add(shortcode);
             }
         }
-        
-        if (filtered.size() < posts.size()) {
-            LOG.infof("Filtered %d blacklisted posts, %d posts remaining", posts.size() - filtered.size(), filtered.size());
+        return Set.copyOf(shortcodes);
+    }
+
+    /**
+     * Returns the shortcode of an Instagram post URL: the segment after /p/ or /reel/,
+     * or the last path segment for other URL shapes.
+     * 
+     * @param postUrl the Instagram post URL
+     * @return the shortcode, or null if the URL has no path segment
+     */
+    static String shortcodeOf(String postUrl) {
+        int start = postUrl.indexOf("/p/");
+        if (start >= 0) {
+            start += 3;
+        } else if ((start = postUrl.indexOf("/reel/")) >= 0) {
+            start += 6;
+        } else {
+            // Last non-empty path segment, ignoring query string and trailing slash
+            int end = postUrl.indexOf('?');
+            end = end >= 0 ? end : postUrl.length();
+            while (end > 0 && postUrl.charAt(end - 1) == '/') end--;
+            start = postUrl.lastIndexOf('/', end - 1) + 1;
+            return start < end ? postUrl.substring(start, end) : null;
         }
-        
-        return Collections.unmodifiableList(filtered);
+        int end = start;
+        while (end < postUrl.length() && isShortcodeChar(postUrl.charAt(end))) end++;
+        return end > start ? postUrl.substring(start, end) : null;
     }
-    
+
+    private static boolean isShortcodeChar(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_' || c == '-';
+    }
+
     /**
-     * Checks if a post URL matches a blacklisted shortcode.
-     * Uses precise matching with URL delimiters to avoid false positives.
+     * Removes blacklisted posts and keeps at most {@code MAX_POSTS}.
+     * Each post is looked up in the blacklist set by its shortcode.
      * 
-     * @param postUrl the Instagram post URL to check
-     * @param shortcode the blacklisted shortcode to match against
-     * @return true if the post should be blacklisted
+     * @param posts the Instagram posts, in display order
+     * @param blacklistedShortcodes the shortcodes to exclude
+     * @return unmodifiable list of the posts to display
      */
-    private boolean isPostBlacklisted(String postUrl, String shortcode) {
-        // Instagram URLs are in the format: https://www.instagram.com/p/SHORTCODE or https://www.instagram.com/p/SHORTCODE/
-        // Match with proper delimiters to avoid false positives
-        return postUrl.contains("/p/" + shortcode) || 
-               postUrl.contains("/reel/" + shortcode) || 
-               postUrl.endsWith("/" + shortcode) || 
-               postUrl.endsWith("/" + shortcode + "/");
+    static List<InstagramPost> visiblePosts(List<InstagramPost> posts, Set<String> blacklistedShortcodes) {
+        List<InstagramPost> visible = new ArrayList<>(Math.min(posts.size(), MAX_POSTS));
+        int filtered = 0;
+        for (InstagramPost post : posts) {
+            if (!blacklistedShortcodes.isEmpty() && blacklistedShortcodes.contains(post.shortcode())) {
+                LOG.debugf("Filtering out blacklisted post: %s", post.permalink());
+                filtered++;
+                continue;
+            }
+            if (visible.size() < MAX_POSTS) {
+                visible.add(post);
+            }
+        }
+
+        if (filtered > 0) {
+            LOG.infof("Filtered %d blacklisted posts, %d posts remaining", filtered, posts.size() - filtered);
+        }
+        return List.copyOf(visible);
     }
 
     /**
@@ -318,98 +714,241 @@ public class InstagramPostsFetcher {
      * Only requires a valid access token — no account ID needed.
      * This is the preferred method when a token is available.
      *
+     * @param media filled with the API metadata of the returned posts, keyed by shortcode
      * @see <a href="https://developers.facebook.com/docs/instagram-platform/instagram-api-with-instagram-login/get-started">
      *      Instagram API with Instagram Login</a>
      */
-    List<String> fetchInstagramPostsViaInstagramApi() throws IOException, InterruptedException {
+    List<InstagramPost> fetchInstagramPostsViaInstagramApi(Map<String, InstagramResponseParser.InstagramMedia> media)
+            throws IOException, InterruptedException {
+        return fetchMediaPages(instagramApiMediaUrl(), "Instagram API", media);
+    }
+
+    private String instagramApiMediaUrl() {
         String token = accessToken.orElseThrow(() -> new IllegalStateException("Access token not configured"));
 
-        String apiUrl = String.format("%s/me/media?fields=%s&limit=%d&access_token=%s",
+        return String.format("%s/me/media?fields=%s&limit=%d&access_token=%s",
                 INSTAGRAM_API_BASE,
                 MEDIA_FIELDS,
                 FETCH_LIMIT,
                 URLEncoder.encode(token, StandardCharsets.UTF_8));
+    }
 
+    /**
+     * Fetches Instagram posts using RSS Bridge.
+     * This is the simplest method - no authentication required, just a simple HTTP request.
+     * Uses rss-bridge.org to get Instagram feed as JSON.
+     */
+    List<InstagramPost> fetchInstagramPostsViaRssBridge() throws IOException, InterruptedException {
+        String rssBridgeUrl = String.format(RSS_BRIDGE_URL, URLEncoder.encode(instagramUsername, StandardCharsets.UTF_8));
+        
         HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(apiUrl))
+                .uri(URI.create(rssBridgeUrl))
                 .header("Accept", "application/json")
+                .header("User-Agent", "Mozilla/5.0 (compatible; TC11SiteBot/1.0)")
                 .timeout(Duration.ofSeconds(REQUEST_TIMEOUT_SECONDS))
                 .GET()
                 .build();
 
-        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
 
-        if (response.statusCode() != 200) {
-            String errorMessage = parseGraphApiError(response.body());
-            throw new IOException("Instagram API returned status " + response.statusCode() + ": " + errorMessage);
+        try (InputStream body = response.body()) {
+            if (response.statusCode() != 200) {
+                throw new IOException("RSS Bridge returned status " + response.statusCode());
+            }
+            return postsOf(InstagramResponseParser.parseRssBridgeItems(body, FETCH_LIMIT));
         }
+    }
 
-        return parseMediaResponse(response.body());
+    /**
+     * Parses the RSS Bridge JSON response and extracts post URLs.
+     * The response follows the JSON Feed format with items containing 'url' or 'id' fields.
+     */
+    List<String> parseRssBridgeResponse(String jsonResponse) {
+        return InstagramResponseParser.parseRssBridgeItems(
+                new ByteArrayInputStream(jsonResponse.getBytes(StandardCharsets.UTF_8)), FETCH_LIMIT);
     }
 
     /**
-     * Fetches Instagram posts using RSS Bridge.
-     * This is the simplest method - no authentication required, just a simple HTTP request.
-     * Uses rss-bridge.org to get Instagram feed as JSON.
+     * Fetches the newest posts from a Graph/Instagram API media endpoint, following
+     * <code>paging.next</code> links.
+     * 
+     * With incremental fetching enabled, paging stops at the first post already in the
+     * current snapshot, and older pages are only requested while the blacklist leaves fewer
+     * than {@code MAX_POSTS} posts to display. The fetched posts are the truth down to the
+     * oldest of them: snapshot posts missing from them are deleted or archived and dropped,
+     * only the snapshot posts older than the oldest fetched post are kept after them. When
+     * no known post is found within the page budget, only the fetched posts are returned,
+     * so the result never has a gap.
+     * 
+     * @param firstPageUrl the media endpoint URL, including fields, limit and token
+     * @param apiName the API name used in logs and error messages
+     * @param media filled with the API metadata of the fetched posts, keyed by shortcode
+     * @return the posts, newest first
      */
-    List<String> fetchInstagramPostsViaRssBridge() throws IOException, InterruptedException {
-        String rssBridgeUrl = String.format(RSS_BRIDGE_URL, URLEncoder.encode(instagramUsername, StandardCharsets.UTF_8));
-        
+    List<InstagramPost> fetchMediaPages(String firstPageUrl, String apiName,
+                                        Map<String, InstagramResponseParser.InstagramMedia> media)
+            throws IOException, InterruptedException {
+        return fetchMediaPages(firstPageUrl, apiName, incrementalEnabled ? current.get().snapshot().posts() : List.of(), media);
+    }
+
+    /**
+     * Fetches the newest posts from a media endpoint, merged with the given previous posts
+     * (none for a full fetch).
+     */
+    List<InstagramPost> fetchMediaPages(String firstPageUrl, String apiName, List<InstagramPost> previous,
+                                        Map<String, InstagramResponseParser.InstagramMedia> media)
+            throws IOException, InterruptedException {
+        Set<String> known = new HashSet<>();
+        for (InstagramPost post : previous) {
+            if (post.shortcode() != null) {
+                known.add(post.shortcode());
+            }
+        }
+
+        List<InstagramPost> fetched = new ArrayList<>();
+        Set<String> fetchedShortcodes = new HashSet<>();
+        boolean reachedKnown = false;
+        List<InstagramPost> posts = fetched;
+        String url = firstPageUrl;
+        int pages = 0;
+        while (url != null && pages < Math.max(1, incrementalMaxPages)) {
+            InstagramResponseParser.MediaPage page = fetchMediaPage(url, apiName);
+            pages++;
+            for (InstagramResponseParser.InstagramMedia item : page.media()) {
+                InstagramPost post = InstagramPost.of(item);
+                if (post.shortcode() != null) {
+                    media.put(post.shortcode(), item);
+                }
+                if (fetchedShortcodes.add(post.shortcode())) {
+                    fetched.add(post);
+                    reachedKnown |= known.contains(post.shortcode());
+                }
+            }
+            posts = reachedKnown ? mergePosts(fetched, olderThanFetched(previous, fetched, fetchedShortcodes)) : fetched;
+            if ((reachedKnown || known.isEmpty()) && countVisible(posts) >= MAX_POSTS) {
+                break;
+            }
+            url = page.next();
+        }
+
+        if (reachedKnown) {
+            long fresh = fetched.stream().filter(post -> !known.contains(post.shortcode())).count();
+            long dropped = previous.stream().filter(post -> !fetchedShortcodes.contains(post.shortcode())).count()
+                    - (posts.size() - fetched.size());
+            LOG.infof("%s: %d new posts in %d page(s), %d known posts no longer returned (deleted or archived)",
+                    apiName, fresh, pages, dropped);
+        } else if (!known.isEmpty()) {
+            LOG.infof("%s: no known post found in %d page(s), using the %d fetched posts",
+                    apiName, pages, fetched.size());
+        }
+        return posts;
+    }
+
+    /**
+     * Fetches and parses one page of a Graph/Instagram API media response as it streams in.
+     * Error bodies are small and read fully to extract the API error message.
+     */
+    InstagramResponseParser.MediaPage fetchMediaPage(String url, String apiName) throws IOException, InterruptedException {
         HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(rssBridgeUrl))
+                .uri(URI.create(url))
                 .header("Accept", "application/json")
-                .header("User-Agent", "Mozilla/5.0 (compatible; TC11SiteBot/1.0)")
                 .timeout(Duration.ofSeconds(REQUEST_TIMEOUT_SECONDS))
                 .GET()
                 .build();
 
-        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-        
-        if (response.statusCode() != 200) {
-            throw new IOException("RSS Bridge returned status " + response.statusCode());
+        HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+
+        try (InputStream body = response.body()) {
+            if (response.statusCode() != 200) {
+                String errorMessage = parseGraphApiError(new String(body.readAllBytes(), StandardCharsets.UTF_8));
+                throw new IOException(apiName + " returned status " + response.statusCode() + ": " + errorMessage);
+            }
+            return InstagramResponseParser.parseMediaPage(body, FETCH_LIMIT);
         }
+    }
 
-        return parseRssBridgeResponse(response.body());
+    /**
+     * The posts of the previous snapshot older than the oldest fetched post: those after the last
+     * fetched one in the snapshot, and published before the oldest fetched post when both dates are
+     * known. The other snapshot posts were not returned although in the fetched range.
+     */
+    static List<InstagramPost> olderThanFetched(List<InstagramPost> previous, List<InstagramPost> fetched,
+                                                Set<String> fetchedShortcodes) {
+        int lastFetched = -1;
+        for (int i = 0; i < previous.size(); i++) {
+            if (fetchedShortcodes.contains(previous.get(i).shortcode())) {
+                lastFetched = i;
+            }
+        }
+        String oldestTimestamp = fetched.isEmpty() ? null : fetched.getLast().timestamp();
+        List<InstagramPost> older = new ArrayList<>();
+        for (InstagramPost post : previous.subList(lastFetched + 1, previous.size())) {
+            // API timestamps share one format and offset (2026-05-01T10:15:30+0000): compared as strings
+            if (oldestTimestamp == null || post.timestamp() == null || post.timestamp().compareTo(oldestTimestamp) < 0) {
+                older.add(post);
+            }
+        }
+        return older;
     }
 
     /**
-     * Parses the RSS Bridge JSON response and extracts post URLs.
-     * The response follows the JSON Feed format with items containing 'url' or 'id' fields.
+     * Concatenates post lists, keeping the first occurrence of each shortcode
+     * and at most {@code MAX_STORED_POSTS} posts.
      */
-    List<String> parseRssBridgeResponse(String jsonResponse) {
-        List<String> postUrls = new ArrayList<>();
-        
-        try {
-            JsonNode root = objectMapper.readTree(jsonResponse);
-            JsonNode items = root.path("items");
-            
-            if (items.isArray()) {
-                for (JsonNode item : items) {
-                    if (postUrls.size() >= FETCH_LIMIT) break;
-                    
-                    // Try 'url' field first, then 'id'
-                    String url = item.path("url").asText();
-                    if (url == null || url.isEmpty()) {
-                        url = item.path("id").asText();
-                    }
-                    
-                    if (url != null && !url.isEmpty() && url.contains("instagram.com/p/")) {
-                        postUrls.add(url);
-                    }
+    @SafeVarargs
+    static List<InstagramPost> mergePosts(List<InstagramPost>... lists) {
+        Set<String> seen = new HashSet<>();
+        List<InstagramPost> merged = new ArrayList<>();
+        for (List<InstagramPost> list : lists) {
+            for (InstagramPost post : list) {
+                if (merged.size() >= MAX_STORED_POSTS) {
+                    return merged;
+                }
+                if (seen.add(post.shortcode())) {
+                    merged.add(post);
                 }
             }
-        } catch (Exception e) {
-            LOG.warnf("Failed to parse RSS Bridge response: %s", e.getMessage());
         }
-        
+        return merged;
+    }
+
+    /**
+     * Wraps post URLs returned by the sources that only know the URLs (headless browser, RSS Bridge).
+     */
+    static List<InstagramPost> postsOf(List<String> postUrls) {
+        List<InstagramPost> posts = new ArrayList<>(postUrls.size());
+        for (String postUrl : postUrls) {
+            posts.add(InstagramPost.of(postUrl));
+        }
+        return posts;
+    }
+
+    private static List<String> permalinks(List<InstagramResponseParser.InstagramMedia> media) {
+        List<String> postUrls = new ArrayList<>(media.size());
+        for (InstagramResponseParser.InstagramMedia item : media) {
+            postUrls.add(item.permalink());
+        }
         return postUrls;
     }
 
+    private int countVisible(List<InstagramPost> posts) {
+        int visible = 0;
+        for (InstagramPost post : posts) {
+            if (!blacklistedShortcodes.contains(post.shortcode())) {
+                visible++;
+            }
+        }
+        return visible;
+    }
+
     /**
      * Fetches Instagram posts using the Graph API.
      * Requires a valid access token and Instagram Business Account ID.
+     *
+     * @param media filled with the API metadata of the returned posts, keyed by shortcode
      */
-    List<String> fetchInstagramPostsViaGraphApi() throws IOException, InterruptedException {
+    List<InstagramPost> fetchInstagramPostsViaGraphApi(Map<String, InstagramResponseParser.InstagramMedia> media)
+            throws IOException, InterruptedException {
         String token = accessToken.orElseThrow(() -> new IllegalStateException("Access token not configured"));
         String igAccountId = accountId.orElseThrow(() -> new IllegalStateException("Account ID not configured"));
         
@@ -421,21 +960,7 @@ public class InstagramPostsFetcher {
                 FETCH_LIMIT,
                 URLEncoder.encode(token, StandardCharsets.UTF_8));
 
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(apiUrl))
-                .header("Accept", "application/json")
-                .timeout(Duration.ofSeconds(REQUEST_TIMEOUT_SECONDS))
-                .GET()
-                .build();
-
-        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-        
-        if (response.statusCode() != 200) {
-            String errorMessage = parseGraphApiError(response.body());
-            throw new IOException("Graph API returned status " + response.statusCode() + ": " + errorMessage);
-        }
-
-        return parseMediaResponse(response.body());
+        return fetchMediaPages(apiUrl, "Graph API", media);
     }
 
     /**
@@ -443,7 +968,7 @@ public class InstagramPostsFetcher {
      * Navigates to the public Instagram profile page anonymously and extracts
      * post links from the rendered DOM via JavaScript.
      */
-    List<String> fetchInstagramPostsViaHeadlessBrowser() {
+    List<InstagramPost> fetchInstagramPostsViaHeadlessBrowser() {
         LOG.infof("Starting headless browser to scrape @%s", instagramUsername);
         
         try (Playwright playwright = Playwright.create()) {
@@ -473,6 +998,7 @@ public class InstagramPostsFetcher {
                 String profileUrlWithLang = profileUrl + "?hl=en";
 
                 for (int attempt = 1; attempt <= BROWSER_FETCH_ATTEMPTS; attempt++) {
+                    checkNotCancelled();
                     String targetUrl = attempt == 1 ? profileUrl : profileUrlWithLang;
                     LOG.debugf("Navigating to %s (attempt %d/%d)", targetUrl, attempt, BROWSER_FETCH_ATTEMPTS);
 
@@ -487,15 +1013,17 @@ public class InstagramPostsFetcher {
                         LOG.warnf("Post link selector timed out on attempt %d/%d", attempt, BROWSER_FETCH_ATTEMPTS);
                     }
 
+                    checkNotCancelled();
                     page.waitForTimeout(BROWSER_CONTENT_LOAD_WAIT_MS);
                     page.evaluate("window.scrollTo(0, document.body.scrollHeight)");
                     page.waitForTimeout(BROWSER_CONTENT_LOAD_WAIT_MS);
+                    checkNotCancelled();
 
                     writeDebugArtifacts(page, attempt);
 
                     List<String> postUrls = extractPostUrlsFromPage(page);
                     if (!postUrls.isEmpty()) {
-                        return postUrls;
+                        return postsOf(postUrls);
                     }
                 }
 
@@ -507,6 +1035,16 @@ public class InstagramPostsFetcher {
         }
     }
 
+    /**
+     * Stops a source that lost the race. Playwright calls are not interruptible, so the
+     * headless browser checks this between steps and closes the browser on its own thread.
+     */
+    private static void checkNotCancelled() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Instagram fetch cancelled");
+        }
+    }
+
     private List<String> extractPostUrlsFromPage(Page page) {
         Object result = page.evaluate(
                 "() => Array.from(document.querySelectorAll('a[href]'))" +
@@ -624,43 +1162,13 @@ public class InstagramPostsFetcher {
     }
 
     /**
-     * Extracts Instagram post URLs from the rendered HTML page.
+     * Extracts Instagram post URLs from the rendered HTML page, in a single pass
+     * over post links, reel links and JSON shortcodes (see {@link InstagramShortcodeScanner}).
      * Uses /p/ URL format for all content types as it works for embedding both posts and reels.
      */
-    List<String> extractPostUrlsFromHtml(String html) {
-        Set<String> shortcodes = new LinkedHashSet<>();
-        
-        // Extract from post links (/p/)
-        Matcher postMatcher = POST_LINK_PATTERN.matcher(html);
-        while (postMatcher.find()) {
-            String shortcode = postMatcher.group(1);
-            if (shortcode.length() >= 10 && shortcode.length() <= 12) {
-                shortcodes.add(shortcode);
-            }
-        }
-        
-        // Extract from reel links (/reel/) - we use /p/ format as it works for embedding both types
-        Matcher reelMatcher = REEL_LINK_PATTERN.matcher(html);
-        while (reelMatcher.find()) {
-            String shortcode = reelMatcher.group(1);
-            if (shortcode.length() >= 10 && shortcode.length() <= 12) {
-                shortcodes.add(shortcode);
-            }
-        }
-
-        // Extract from JSON payloads embedded in script tags (fallback when links are not in anchors)
-        Matcher jsonMatcher = SHORTCODE_JSON_PATTERN.matcher(html);
-        while (jsonMatcher.find()) {
-            String shortcode = jsonMatcher.group(1);
-            if (shortcode.length() >= 8 && shortcode.length() <= 20) {
-                shortcodes.add(shortcode);
-            }
-        }
-        
-        // Convert shortcodes to full URLs using /p/ format (works for embedding both posts and reels)
+    List<String> extractPostUrlsFromHtml(CharSequence html) {
         List<String> postUrls = new ArrayList<>();
-        for (String shortcode : shortcodes) {
-            if (postUrls.size() >= FETCH_LIMIT) break;
+        for (String shortcode : InstagramShortcodeScanner.scan(html, FETCH_LIMIT)) {
             postUrls.add("https://www.instagram.com/p/" + shortcode);
         }
         
@@ -672,25 +1180,8 @@ public class InstagramPostsFetcher {
      * Parses the Graph API media response and extracts post permalinks.
      */
     List<String> parseMediaResponse(String jsonResponse) {
-        List<String> postUrls = new ArrayList<>();
-        
-        try {
-            JsonNode root = objectMapper.readTree(jsonResponse);
-            JsonNode data = root.path("data");
-            
-            if (data.isArray()) {
-                for (JsonNode media : data) {
-                    String permalink = media.path("permalink").asText();
-                    if (permalink != null && !permalink.isEmpty()) {
-                        postUrls.add(permalink);
-                    }
-                }
-            }
-        } catch (Exception e) {
-            LOG.warnf("Failed to parse Graph API response: %s", e.getMessage());
-        }
-        
-        return postUrls;
+        return permalinks(InstagramResponseParser.parseMedia(
+                new ByteArrayInputStream(jsonResponse.getBytes(StandardCharsets.UTF_8)), FETCH_LIMIT));
     }
 
     /**
@@ -715,11 +1206,12 @@ public class InstagramPostsFetcher {
     /**
      * Reads fallback posts from instagram.json in the classpath.
      * This is used when all fetching methods fail.
+     * Entries are post objects as written by the refresh workflow, or plain post URLs.
      */
-    List<String> readFallbackPosts() {
+    List<InstagramPost> readFallbackPosts() {
         try (InputStream is = getClass().getResourceAsStream(FALLBACK_RESOURCE_PATH)) {
             if (is != null) {
-                return objectMapper.readValue(is, new TypeReference<List<String>>() {});
+                return readPosts(objectMapper, objectMapper.readTree(is));
             }
         } catch (IOException e) {
             LOG.debugf("Failed to read fallback instagram.json from classpath: %s", e.getMessage());
@@ -727,6 +1219,24 @@ public class InstagramPostsFetcher {
         return List.of();
     }
     
+    /**
+     * Reads a JSON array of posts, each one either a post object or a plain post URL.
+     */
+    static List<InstagramPost> readPosts(ObjectMapper objectMapper, JsonNode array) throws IOException {
+        List<InstagramPost> posts = new ArrayList<>();
+        if (!array.isArray()) {
+            return posts;
+        }
+        for (JsonNode node : array) {
+            InstagramPost post = node.isTextual() ? InstagramPost.of(node.asText())
+                    : objectMapper.treeToValue(node, InstagramPost.class);
+            if (post.permalink() != null && !post.permalink().isEmpty()) {
+                posts.add(post);
+            }
+        }
+        return posts;
+    }
+
     // Package-private methods for testing
     
     /**
@@ -737,10 +1247,12 @@ public class InstagramPostsFetcher {
     }
     
     /**
-     * For testing: fetch via Instagram API.
+     * For testing: fetch via Instagram API the posts to write to the fallback instagram.json: the
+     * visible fetched posts only, never those of the snapshot, which is read from that same file.
      */
-    List<String> testFetchInstagramPostsViaInstagramApi() throws IOException, InterruptedException {
-        return fetchInstagramPostsViaInstagramApi();
+    List<InstagramPost> testFetchInstagramPostsViaInstagramApi(Map<String, InstagramResponseParser.InstagramMedia> media)
+            throws IOException, InterruptedException {
+        return visiblePosts(fetchMediaPages(instagramApiMediaUrl(), "Instagram API", List.of(), media), blacklistedShortcodes);
     }
     
     /**
@@ -0,0 +1,237 @@
+package fr.tc11;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming parsers for the Instagram/Graph API media responses and the RSS Bridge JSON feed.
+ *
+ * Only the fields we use are read; everything else is skipped token by token without
+ * being materialised, captions are cut to a short excerpt, and parsing stops as soon as
+ * enough items have been collected.
+ */
+final class InstagramResponseParser {
+
+    private static final Logger LOG = Logger.getLogger(InstagramResponseParser.class);
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    // Longest caption kept per media item, in characters
+    static final int CAPTION_MAX_LENGTH = 300;
+
+    private InstagramResponseParser() {
+    }
+
+    /**
+     * One media item of a Graph API response. {@code thumbnailUrl} is only set for videos,
+     * {@code mediaUrl} is the video itself for videos and the (first) image otherwise.
+     */
+    record InstagramMedia(String id, String permalink, String mediaType, String timestamp,
+                          String mediaUrl, String thumbnailUrl, String caption) {
+
+        /**
+         * URL of an image showing the media: the video thumbnail, else the media itself.
+         */
+        String imageUrl() {
+            return thumbnailUrl != null && !thumbnailUrl.isEmpty() ? thumbnailUrl : mediaUrl;
+        }
+    }
+
+    /**
+     * One page of a Graph API media response, with the URL of the next (older) page if any.
+     */
+    record MediaPage(List<InstagramMedia> media, String next) {
+    }
+
+    /**
+     * Parses a Graph API media response: <code>{"data": [{...}, ...], "paging": {...}}</code>.
+     * Items without a permalink are skipped.
+     *
+     * @param body the response body, closed by the caller
+     * @param limit maximum number of items to collect before stopping
+     * @return the collected items; on malformed input, the items parsed before the error
+     */
+    static List<InstagramMedia> parseMedia(InputStream body, int limit) {
+        return parseMedia(body, limit, false).media();
+    }
+
+    /**
+     * Parses a Graph API media response including its <code>paging.next</code> link.
+     * Items past the limit are skipped without being read, but the rest of the body
+     * is still scanned so that the paging link that follows the data can be returned.
+     *
+     * @param body the response body, closed by the caller
+     * @param limit maximum number of items to collect
+     * @return the collected items and the next page URL (null on the last page)
+     */
+    static MediaPage parseMediaPage(InputStream body, int limit) {
+        return parseMedia(body, limit, true);
+    }
+
+    private static MediaPage parseMedia(InputStream body, int limit, boolean readPaging) {
+        List<InstagramMedia> media = new ArrayList<>();
+        String next = null;
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return new MediaPage(media, null);
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("data".equals(field) && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        if (media.size() >= limit) {
+                            if (!readPaging) {
+                                return new MediaPage(media, null);
+                            }
+                            parser.skipChildren();
+                            continue;
+                        }
+                        InstagramMedia item = readMedia(parser);
+                        if (item != null) {
+                            media.add(item);
+                        }
+                    }
+                    if (media.size() >= limit && !readPaging) {
+                        return new MediaPage(media, null);
+                    }
+                } else if (readPaging && "paging".equals(field) && value == JsonToken.START_OBJECT) {
+                    next = readNextLink(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            LOG.warnf("Failed to parse Graph API response: %s", e.getMessage());
+        }
+        return new MediaPage(media, next);
+    }
+
+    private static String readNextLink(JsonParser parser) throws IOException {
+        String next = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if ("next".equals(field)) {
+                next = parser.getValueAsString();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return next == null || next.isEmpty() ? null : next;
+    }
+
+    private static InstagramMedia readMedia(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        String id = null;
+        String permalink = null;
+        String mediaType = null;
+        String timestamp = null;
+        String mediaUrl = null;
+        String thumbnailUrl = null;
+        String caption = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "id" -> id = parser.getValueAsString();
+                case "permalink" -> permalink = parser.getValueAsString();
+                case "media_type" -> mediaType = parser.getValueAsString();
+                case "timestamp" -> timestamp = parser.getValueAsString();
+                case "media_url" -> mediaUrl = parser.getValueAsString();
+                case "thumbnail_url" -> thumbnailUrl = parser.getValueAsString();
+                case "caption" -> caption = excerpt(parser.getValueAsString());
+                default -> parser.skipChildren();
+            }
+        }
+        return permalink == null || permalink.isEmpty() ? null
+                : new InstagramMedia(id, permalink, mediaType, timestamp, mediaUrl, thumbnailUrl, caption);
+    }
+
+    /**
+     * Cuts a caption to {@code CAPTION_MAX_LENGTH} characters on a word boundary, without
+     * splitting a surrogate pair, and collapses whitespace.
+     */
+    static String excerpt(String caption) {
+        if (caption == null) {
+            return null;
+        }
+        String text = caption.replaceAll("\\s+", " ").trim();
+        if (text.length() <= CAPTION_MAX_LENGTH) {
+            return text;
+        }
+        int end = text.lastIndexOf(' ', CAPTION_MAX_LENGTH - 1);
+        if (end <= CAPTION_MAX_LENGTH / 2) {
+            end = CAPTION_MAX_LENGTH - 1;
+            if (Character.isHighSurrogate(text.charAt(end - 1))) end--;
+        }
+        return text.substring(0, end).stripTrailing() + "…";
+    }
+
+    /**
+     * Parses an RSS Bridge JSON Feed and extracts post URLs from the 'url' field,
+     * or from 'id' when 'url' is missing. Only instagram.com/p/ URLs are kept.
+     *
+     * @param body the response body, closed by the caller
+     * @param limit maximum number of URLs to collect before stopping
+     * @return the collected URLs; on malformed input, the URLs parsed before the error
+     */
+    static List<String> parseRssBridgeItems(InputStream body, int limit) {
+        List<String> postUrls = new ArrayList<>();
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return postUrls;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("items".equals(field) && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        String url = readItemUrl(parser);
+                        if (url != null && url.contains("instagram.com/p/")) {
+                            postUrls.add(url);
+                            if (postUrls.size() >= limit) {
+                                return postUrls;
+                            }
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            LOG.warnf("Failed to parse RSS Bridge response: %s", e.getMessage());
+        }
+        return postUrls;
+    }
+
+    private static String readItemUrl(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        String url = null;
+        String id = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "url" -> url = parser.getValueAsString();
+                case "id" -> id = parser.getValueAsString();
+                default -> parser.skipChildren();
+            }
+        }
+        // Try 'url' field first, then 'id'
+        return url != null && !url.isEmpty() ? url : id;
+    }
+}
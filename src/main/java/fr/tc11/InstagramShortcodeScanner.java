@@ -0,0 +1,253 @@
+package fr.tc11;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds Instagram post shortcodes in a rendered profile page in a single linear sweep.
+ *
+ * Recognises <code>/p/SHORTCODE</code> and <code>/reel/SHORTCODE</code> links (10 to 12
+ * characters) and <code>"shortcode":"SHORTCODE"</code> entries of embedded JSON payloads
+ * (8 to 20 characters). Each token is matched independently, like separate regex scans
+ * would, but all of them are fed the same characters once. Candidates are only turned
+ * into strings once they pass the length rules.
+ *
+ * Results keep the order of the former three-pass extraction: post links first, then reel
+ * links, then JSON shortcodes, each in document order and without duplicates.
+ */
+final class InstagramShortcodeScanner {
+
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    private final int limit;
+    private final TokenMatcher postMatcher = new TokenMatcher("/p/", 10, 12, false);
+    private final TokenMatcher reelMatcher = new TokenMatcher("/reel/", 10, 12, false);
+    private final TokenMatcher jsonMatcher = new TokenMatcher("\"shortcode\":\"", 8, 20, true);
+    private final Set<String> posts = new LinkedHashSet<>();
+    private final Set<String> reels = new LinkedHashSet<>();
+    private final Set<String> jsonShortcodes = new LinkedHashSet<>();
+
+    private InstagramShortcodeScanner(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Scans a page held in memory.
+     *
+     * @param text the page content
+     * @param limit maximum number of shortcodes to return
+     * @return the unique shortcodes found, in priority order
+     */
+    static List<String> scan(CharSequence text, int limit) {
+        InstagramShortcodeScanner scanner = new InstagramShortcodeScanner(limit);
+        char[] buffer = new char[READ_BUFFER_SIZE];
+        for (int start = 0, n = text.length(); start < n && !scanner.isComplete(); start += buffer.length) {
+            int end = Math.min(n, start + buffer.length);
+            // Bulk copies avoid a per-character charAt() on the multi-megabyte page
+            if (text instanceof String string) {
+                string.getChars(start, end, buffer, 0);
+            } else if (text instanceof StringBuilder builder) {
+                builder.getChars(start, end, buffer, 0);
+            } else {
+                for (int i = start; i < end; i++) {
+                    buffer[i - start] = text.charAt(i);
+                }
+            }
+            scanner.scan(buffer, end - start);
+        }
+        return scanner.finish();
+    }
+
+    /**
+     * Scans a page as it is read; reading stops as soon as the result cannot change anymore.
+     *
+     * @param reader the page content, closed by the caller
+     * @param limit maximum number of shortcodes to return
+     * @return the unique shortcodes found, in priority order
+     */
+    static List<String> scan(Reader reader, int limit) throws IOException {
+        InstagramShortcodeScanner scanner = new InstagramShortcodeScanner(limit);
+        char[] buffer = new char[READ_BUFFER_SIZE];
+        int read;
+        while (!scanner.isComplete() && (read = reader.read(buffer)) != -1) {
+            scanner.scan(buffer, read);
+        }
+        return scanner.finish();
+    }
+
+    private void scan(char[] buffer, int length) {
+        for (int i = 0; i < length && !isComplete(); i++) {
+            if (isIdle()) {
+                while (i < length && !isTokenStart(buffer[i])) {
+                    i++;
+                }
+                if (i == length) break;
+            }
+            accept(buffer[i]);
+        }
+    }
+
+    private void accept(char c) {
+        String post = postMatcher.accept(c);
+        if (post != null) {
+            posts.add(post);
+        }
+        String reel = reelMatcher.accept(c);
+        if (reel != null) {
+            reels.add(reel);
+        }
+        String json = jsonMatcher.accept(c);
+        if (json != null) {
+            jsonShortcodes.add(json);
+        }
+    }
+
+    /**
+     * No token is partially matched and no run is being read: every character up to the
+     * next '/' or '"' leaves all matchers unchanged and can be skipped.
+     */
+    private boolean isIdle() {
+        return postMatcher.isIdle() && reelMatcher.isIdle() && jsonMatcher.isIdle();
+    }
+
+    private static boolean isTokenStart(char c) {
+        return c == '/' || c == '"';
+    }
+
+    /**
+     * Post links come first in the result, so once enough of them are found the rest
+     * of the page cannot change it.
+     */
+    private boolean isComplete() {
+        return posts.size() >= limit;
+    }
+
+    private List<String> finish() {
+        // A run still open at the end of the input ends the match, as with a regex
+        String post = postMatcher.accept('\0');
+        if (post != null && !isComplete()) {
+            posts.add(post);
+        }
+        String reel = reelMatcher.accept('\0');
+        if (reel != null) {
+            reels.add(reel);
+        }
+
+        Set<String> shortcodes = new LinkedHashSet<>(posts);
+        shortcodes.addAll(reels);
+        shortcodes.addAll(jsonShortcodes);
+        List<String> result = new ArrayList<>(Math.min(shortcodes.size(), limit));
+        for (String shortcode : shortcodes) {
+            if (result.size() >= limit) break;
+            result.add(shortcode);
+        }
+        return result;
+    }
+
+    /**
+     * Incremental matcher for one token followed by a run of shortcode characters,
+     * equivalent to a <code>find()</code> loop over <code>TOKEN([A-Za-z0-9_-]+)</code>
+     * (with a closing quote when {@code quoted}).
+     */
+    private static final class TokenMatcher {
+
+        private final char[] token;
+        // border[k]: length of the longest proper prefix of token[0..k) that is also its suffix (KMP)
+        private final int[] border;
+        private final int minLength;
+        private final int maxLength;
+        private final boolean quoted;
+        private final char[] run;
+
+        private int matched;
+        private boolean capturing;
+        private int length;
+
+        TokenMatcher(String token, int minLength, int maxLength, boolean quoted) {
+            this.token = token.toCharArray();
+            this.border = borders(this.token);
+            this.minLength = minLength;
+            this.maxLength = maxLength;
+            this.quoted = quoted;
+            this.run = new char[maxLength];
+        }
+
+        /**
+         * Feeds the next character.
+         *
+         * @return the shortcode completed by this character, if it passes the length rules
+         */
+        String accept(char c) {
+            if (capturing) {
+                if (isShortcodeChar(c)) {
+                    if (length < maxLength) {
+                        run[length] = c;
+                    }
+                    length++;
+                    // Keep matching the token too: if the run turns out not to match, scanning resumes inside it
+                    advance(c);
+                    return null;
+                }
+                capturing = false;
+                if (length > 0 && (!quoted || c == '"')) {
+                    String shortcode = length >= minLength && length <= maxLength ? new String(run, 0, length) : null;
+                    matched = 0;
+                    if (!quoted && advance(c)) {
+                        startCapture();
+                    }
+                    // A closing quote is part of the match and cannot start a new token
+                    return shortcode;
+                }
+            }
+            if (advance(c)) {
+                startCapture();
+            }
+            return null;
+        }
+
+        boolean isIdle() {
+            return matched == 0 && !capturing;
+        }
+
+        private void startCapture() {
+            capturing = true;
+            length = 0;
+        }
+
+        private boolean advance(char c) {
+            while (matched > 0 && token[matched] != c) {
+                matched = border[matched];
+            }
+            if (token[matched] == c) {
+                matched++;
+            }
+            if (matched == token.length) {
+                matched = border[matched];
+                return true;
+            }
+            return false;
+        }
+
+        private static int[] borders(char[] token) {
+            int[] border = new int[token.length + 1];
+            for (int i = 1, k = 0; i < token.length; i++) {
+                while (k > 0 && token[i] != token[k]) {
+                    k = border[k];
+                }
+                if (token[i] == token[k]) {
+                    k++;
+                }
+                border[i + 1] = k;
+            }
+            return border;
+        }
+    }
+
+    private static boolean isShortcodeChar(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_' || c == '-';
+    }
+}
@@ -0,0 +1,26 @@
+package fr.tc11;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Immutable set of Instagram posts as produced by one fetch source.
+ *
+ * @param posts the posts, in the order returned by the source
+ * @param source the name of the source that produced the posts (e.g. "Instagram API")
+ * @param fetchedAt when the posts were fetched
+ */
+record InstagramSnapshot(List<InstagramPost> posts, String source, Instant fetchedAt) {
+
+    InstagramSnapshot {
+        posts = List.copyOf(posts);
+    }
+
+    /**
+     * Returns true if the snapshot is younger than the given time-to-live.
+     */
+    boolean isFresh(Duration ttl, Instant now) {
+        return fetchedAt.plus(ttl).isAfter(now);
+    }
+}
@@ -0,0 +1,92 @@
+package fr.tc11;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * On-disk cache of the last {@link InstagramSnapshot}, so that restarts (dev-mode reloads,
+ * site generation) can serve posts without going to the network.
+ *
+ * The file is versioned: a snapshot written with another format version is ignored
+ * and simply replaced by the next successful fetch.
+ */
+class InstagramSnapshotStore {
+
+    private static final Logger LOG = Logger.getLogger(InstagramSnapshotStore.class);
+
+    static final int FORMAT_VERSION = 2;
+
+    private final Path file;
+    private final ObjectMapper objectMapper;
+
+    InstagramSnapshotStore(Path directory, String username, ObjectMapper objectMapper) {
+        this.file = directory.resolve("instagram-" + username + ".json");
+        this.objectMapper = objectMapper;
+    }
+
+    Path file() {
+        return file;
+    }
+
+    /**
+     * Reads the stored snapshot, if any.
+     *
+     * @return the snapshot, or empty if the file is missing, unreadable or from another format version
+     */
+    Optional<InstagramSnapshot> read() {
+        if (!Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        try {
+            JsonNode root = objectMapper.readTree(file.toFile());
+            if (root.path("version").asInt() != FORMAT_VERSION) {
+                LOG.debugf("Ignoring Instagram snapshot %s with unsupported version %s", file, root.path("version"));
+                return Optional.empty();
+            }
+            List<InstagramPost> posts = InstagramPostsFetcher.readPosts(objectMapper, root.path("posts"));
+            Instant fetchedAt = Instant.parse(root.path("fetchedAt").asText());
+            return Optional.of(new InstagramSnapshot(posts, root.path("source").asText(), fetchedAt));
+        } catch (Exception e) {
+            LOG.warnf("Failed to read Instagram snapshot %s: %s", file, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Writes the snapshot, replacing the previous one atomically so that a concurrent
+     * reader never sees a partially written file. Synchronized: writers share one temporary file.
+     */
+    synchronized void write(InstagramSnapshot snapshot) {
+        ObjectNode root = objectMapper.createObjectNode();
+        root.put("version", FORMAT_VERSION);
+        root.put("source", snapshot.source());
+        root.put("fetchedAt", snapshot.fetchedAt().toString());
+        ArrayNode posts = root.putArray("posts");
+        snapshot.posts().forEach(post -> posts.add(objectMapper.valueToTree(post)));
+
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try {
+                objectMapper.writerWithDefaultPrettyPrinter().writeValue(temp.toFile(), root);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            LOG.debugf("Instagram snapshot written to %s", file);
+        } catch (IOException e) {
+            LOG.warnf("Failed to write Instagram snapshot %s: %s", file, e.getMessage());
+        }
+    }
+}
@@ -8,27 +8,34 @@ import java.util.List;
 /**
  * Qute template extension to expose Instagram posts to templates.
  * 
- * Usage in templates: {instagram:posts}
+ * Usage in templates: {#for post in instagram:posts}{post.permalink}{/for}
  * 
- * This allows the instagram.json file to be generated at build time
- * with dynamically fetched Instagram post URLs.
+ * This allows the instagram.json file and the home page grid
+ * (partials/instagram-grid.html) to be generated at build time
+ * with dynamically fetched Instagram posts.
  */
 @TemplateExtension(namespace = "instagram")
 public class InstagramTemplateExtension {
 
-    // Cache the fetcher instance since Instagram posts are fetched once at startup
+    // Cache the fetcher instance since it is an application-scoped singleton
     private static volatile InstagramPostsFetcher cachedFetcher;
 
     /**
-     * Returns the list of Instagram post URLs.
-     * Used in Qute templates to generate instagram.json content.
+     * Returns the Instagram posts to display, with their permalink, media type, timestamp,
+     * caption excerpt and self-hosted thumbnail (null when the post has none).
+     * When the posts are loaded in the background, waits (bounded) for the initial load.
      * 
-     * @return list of Instagram post URLs
+     * @return list of Instagram posts
      */
-    public static List<String> posts() {
+    public static List<InstagramPost> posts() {
+        return fetcher().getInstagramPosts();
+    }
+
+    private static InstagramPostsFetcher fetcher() {
         if (cachedFetcher == null) {
             cachedFetcher = CDI.current().select(InstagramPostsFetcher.class).get();
         }
-        return cachedFetcher.getInstagramPosts();
+        cachedFetcher.awaitInitialLoad();
+        return cachedFetcher;
     }
 }
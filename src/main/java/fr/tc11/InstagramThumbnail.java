@@ -0,0 +1,16 @@
+package fr.tc11;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import io.quarkus.qute.TemplateData;
+
+/**
+ * Self-hosted square thumbnail of an Instagram post.
+ *
+ * @param url the root-relative URL of the image (e.g. /assets/instagram/0123456789abcdef.jpg)
+ * @param width the image width in pixels
+ * @param height the image height in pixels
+ */
+@TemplateData
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record InstagramThumbnail(String url, int width, int height) {
+}
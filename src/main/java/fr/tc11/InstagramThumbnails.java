@@ -0,0 +1,228 @@
+package fr.tc11;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.jboss.logging.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Self-hosted thumbnails of the displayed Instagram posts, so that the home page grid can show
+ * small local images instead of loading instagram.com embeds.
+ *
+ * Images are downloaded from the URLs returned by the API (which expire after a few days), with
+ * at most {@code concurrency} downloads in flight, cropped to squares and saved under a hash of the
+ * downloaded bytes. An index ({@value #INDEX_FILE}) maps each shortcode to its thumbnail; it is read
+ * back on startup, so that builds without network access still find the thumbnails written by an
+ * earlier fetch.
+ */
+class InstagramThumbnails {
+
+    private static final Logger LOG = Logger.getLogger(InstagramThumbnails.class);
+
+    static final int FORMAT_VERSION = 1;
+    static final String INDEX_FILE = "thumbnails.json";
+
+    private static final int HASH_LENGTH = 16;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    /**
+     * Fetches the bytes of an image URL.
+     */
+    interface Downloader {
+        byte[] download(String url) throws IOException, InterruptedException;
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private record Document(int version, Map<String, InstagramThumbnail> thumbnails) {
+    }
+
+    private final Path directory;
+    private final String urlPrefix;
+    private final int size;
+    private final float quality;
+    private final int concurrency;
+    private final Downloader downloader;
+
+    // Shortcode -> thumbnail, replaced as a whole by each sync
+    private volatile Map<String, InstagramThumbnail> thumbnails;
+
+    /**
+     * @param directory where thumbnails and the index are written
+     * @param urlPrefix the URL of that directory on the site (e.g. /assets/instagram)
+     * @param size the side of the square thumbnails, in pixels
+     * @param quality the JPEG quality
+     * @param concurrency the maximum number of downloads in flight
+     * @param downloader fetches the image URLs returned by the API
+     */
+    InstagramThumbnails(Path directory, String urlPrefix, int size, float quality, int concurrency, Downloader downloader) {
+        this.directory = directory;
+        this.urlPrefix = urlPrefix;
+        this.size = size;
+        this.quality = quality;
+        this.concurrency = Math.max(1, concurrency);
+        this.downloader = downloader;
+        this.thumbnails = readIndex(directory.resolve(INDEX_FILE));
+    }
+
+    /**
+     * Returns the thumbnail of a post, or null when it has none.
+     */
+    InstagramThumbnail get(String shortcode) {
+        return shortcode == null ? null : thumbnails.get(shortcode);
+    }
+
+    /**
+     * Makes the thumbnails match the given posts: posts that already have one keep it, the others
+     * are downloaded when the API returned their media, and thumbnails of posts no longer listed
+     * are deleted.
+     *
+     * @param posts the posts to keep thumbnails for
+     * @param media the API metadata, keyed by shortcode
+     * @return the number of downloaded thumbnails
+     */
+    synchronized int sync(List<InstagramPost> posts, Map<String, InstagramResponseParser.InstagramMedia> media)
+            throws IOException, InterruptedException {
+        Map<String, InstagramThumbnail> current = thumbnails;
+        Map<String, Future<InstagramThumbnail>> pending = new LinkedHashMap<>();
+        AtomicInteger downloaded = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        try {
+            for (InstagramPost post : posts) {
+                String shortcode = post.shortcode();
+                if (shortcode == null || pending.containsKey(shortcode)) continue;
+                InstagramResponseParser.InstagramMedia item = media.get(shortcode);
+                InstagramThumbnail existing = current.get(shortcode);
+                if (existing != null && Files.isRegularFile(file(existing.url()))) {
+                    pending.put(shortcode, CompletableFuture.completedFuture(existing));
+                } else if (item != null && item.imageUrl() != null && !item.imageUrl().isEmpty()) {
+                    pending.put(shortcode, executor.submit(() -> {
+                        InstagramThumbnail thumbnail = download(item.imageUrl());
+                        downloaded.incrementAndGet();
+                        return thumbnail;
+                    }));
+                }
+            }
+
+            Map<String, InstagramThumbnail> updated = new TreeMap<>();
+            for (Map.Entry<String, Future<InstagramThumbnail>> thumbnail : pending.entrySet()) {
+                try {
+                    updated.put(thumbnail.getKey(), thumbnail.getValue().get());
+                } catch (ExecutionException e) {
+                    LOG.warnf("No thumbnail for Instagram post %s: %s", thumbnail.getKey(), e.getCause().getMessage());
+                }
+            }
+            writeIndex(updated);
+            thumbnails = Map.copyOf(updated);
+            int removed = removeOrphans(updated);
+            LOG.infof("Instagram thumbnails: %d posts, %d downloaded, %d stale files removed",
+                    updated.size(), downloaded.get(), removed);
+            return downloaded.get();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private InstagramThumbnail download(String imageUrl) throws IOException, InterruptedException {
+        byte[] bytes = downloader.download(imageUrl);
+        String name = contentHash(bytes) + ".jpg";
+        Path file = directory.resolve(name);
+        if (!Files.isRegularFile(file)) {
+            // Decodes at least the thumbnail size on the short side, so that the crop is never upscaled
+            ImageDimensions dimensions = ImageDimensions.read(new ByteArrayInputStream(bytes));
+            int minWidth = dimensions == null ? size
+                    : (int) Math.ceil(size * (double) dimensions.width() / Math.min(dimensions.width(), dimensions.height()));
+            ImageProcessing.Decoded decoded = ImageProcessing.read(bytes, minWidth);
+            if (decoded == null) {
+                throw new IOException("unsupported image format");
+            }
+            int side = Math.min(size, Math.min(decoded.image().getWidth(), decoded.image().getHeight()));
+            ImageProcessing.write(ImageProcessing.cover(decoded.image(), side, side), file, quality);
+        }
+        ImageDimensions written = ImageDimensions.read(file);
+        if (written == null) {
+            throw new IOException("unreadable thumbnail " + file);
+        }
+        return new InstagramThumbnail(urlPrefix + "/" + name, written.width(), written.height());
+    }
+
+    private Path file(String url) {
+        return directory.resolve(url.substring(url.lastIndexOf('/') + 1));
+    }
+
+    static String contentHash(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes)).substring(0, HASH_LENGTH);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void writeIndex(Map<String, InstagramThumbnail> index) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve(INDEX_FILE);
+        Path temp = file.resolveSibling(INDEX_FILE + ".tmp");
+        try {
+            MAPPER.writeValue(temp.toFile(), new Document(FORMAT_VERSION, index));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Reads an index written by {@link #sync}; empty when missing, unreadable or from another format version.
+     */
+    static Map<String, InstagramThumbnail> readIndex(Path file) {
+        if (!Files.isRegularFile(file)) return Map.of();
+        try {
+            Document document = MAPPER.readValue(file.toFile(), Document.class);
+            if (document.version() != FORMAT_VERSION || document.thumbnails() == null) {
+                LOG.debugf("Ignoring Instagram thumbnail index %s with unsupported version %d", file, document.version());
+                return Map.of();
+            }
+            return Map.copyOf(document.thumbnails());
+        } catch (IOException e) {
+            LOG.warnf("Failed to read Instagram thumbnail index %s: %s", file, e.getMessage());
+            return Map.of();
+        }
+    }
+
+    private int removeOrphans(Map<String, InstagramThumbnail> index) throws IOException {
+        Set<String> referenced = new HashSet<>();
+        referenced.add(INDEX_FILE);
+        index.values().forEach(thumbnail -> referenced.add(file(thumbnail.url()).getFileName().toString()));
+        int removed = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(Files::isRegularFile).toList()) {
+                if (!referenced.contains(file.getFileName().toString())) {
+                    Files.delete(file);
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+}
@@ -0,0 +1,529 @@
+package fr.tc11;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Streaming minifiers for the generated site: each reads characters from a {@link Reader} and writes
+ * them to a {@link Writer} as it goes, keeping only a few characters of look-ahead (plus the current tag,
+ * or the content of an inline script or style).
+ *
+ * They only remove what cannot change the result:
+ * <ul>
+ * <li>HTML: comments (except conditional and <code>&lt;!--!</code> ones), whitespace between attributes,
+ * whitespace runs of the text reduced to one character (a newline when the run holds one). The content of
+ * <code>&lt;pre&gt;</code> and <code>&lt;textarea&gt;</code> is copied as is, attribute values too except
+ * <code>class</code> (whitespace collapsed) and Alpine attributes (<code>x-*</code>, <code>@…</code>,
+ * <code>:…</code>, see {@link #scriptLines(String)}). Inline styles and JSON scripts are minified.</li>
+ * <li>CSS: comments (except <code>/*!</code>), whitespace that separates nothing, last semicolon of a block.</li>
+ * <li>JSON: whitespace outside strings.</li>
+ * </ul>
+ */
+final class Minifier {
+
+    /** Elements whose content is not HTML text. */
+    private static final Set<String> RAW = Set.of("script", "style", "pre", "textarea");
+    private static final Set<String> JSON_SCRIPTS = Set.of("application/json", "application/ld+json", "importmap");
+    private static final Set<String> JS_SCRIPTS = Set.of("", "module", "text/javascript", "application/javascript");
+
+    /** CSS characters after / before which whitespace separates nothing. */
+    private static final String CSS_NO_SPACE_AFTER = "{};,>:(";
+    private static final String CSS_NO_SPACE_BEFORE = "{};,>)!";
+
+    private Minifier() {
+    }
+
+    static void html(Reader reader, Writer out) throws IOException {
+        Input in = new Input(reader);
+        boolean written = false;
+        int space = 0;
+        int c;
+        while ((c = in.read()) >= 0) {
+            if (c == '<' && in.startsWith("!--")) {
+                boolean kept = in.peek(3) == '[' || in.peek(3) == '!';
+                if (kept && space != 0 && written) out.write(space);
+                if (kept) {
+                    space = 0;
+                    written = true;
+                }
+                comment(in, out, kept);
+            } else if (c == '<' && (isLetter(in.peek(0)) || in.peek(0) == '/' || in.peek(0) == '!' || in.peek(0) == '?')) {
+                if (space != 0 && written) out.write(space);
+                space = 0;
+                String name = tag(in, out);
+                if (name != null && (RAW.contains(name) || name.startsWith("script:"))) {
+                    raw(name, in, out);
+                }
+                written = true;
+            } else if (isSpace(c)) {
+                if (space != '\n') space = c == '\n' ? '\n' : ' ';
+            } else {
+                if (space != 0 && written) out.write(space);
+                space = 0;
+                out.write(c);
+                written = true;
+            }
+        }
+    }
+
+    static void css(Reader reader, Writer writer) throws IOException {
+        Input in = new Input(reader);
+        Tail out = new Tail(writer);
+        int last = 0;
+        boolean space = false;
+        boolean semicolon = false;
+        int c;
+        while ((c = in.read()) >= 0) {
+            if (c == '/' && in.peek(0) == '*') {
+                in.read();
+                boolean kept = in.peek(0) == '!';
+                StringBuilder comment = new StringBuilder("/*");
+                while ((c = in.read()) >= 0 && !(c == '*' && in.peek(0) == '/')) comment.append((char) c);
+                in.read();
+                if (kept) {
+                    if (semicolon) out.write(';');
+                    if (space && last != 0) out.write(' ');
+                    out.write(comment.append("*/").toString());
+                    semicolon = false;
+                    space = false;
+                    last = '/';
+                } else {
+                    space = true; // a comment separates tokens
+                }
+                continue;
+            }
+            if (isSpace(c)) {
+                space = true;
+                continue;
+            }
+            int previous = semicolon ? ';' : last;
+            boolean separates = previous != 0 && CSS_NO_SPACE_AFTER.indexOf(previous) < 0 && CSS_NO_SPACE_BEFORE.indexOf(c) < 0;
+            // "--x: ;" is an empty custom property, "--x:;" is invalid for older browsers
+            boolean emptyValue = previous == ':' && (c == ';' || c == '}');
+            if (space && (separates || emptyValue)) {
+                out.write(' ');
+            }
+            space = false;
+            if (c == ';') {
+                if (semicolon) out.write(';');
+                semicolon = true;
+                continue;
+            }
+            if (semicolon && c != '}') out.write(';');
+            semicolon = false;
+            if (c == '"' || c == '\'') {
+                out.write(c);
+                string(c, in, out);
+                last = c;
+            } else if (c == '\\') {
+                out.write(c);
+                int escaped = in.read();
+                if (escaped >= 0) out.write(escaped);
+                last = 'a'; // an escaped character is part of an identifier
+            } else if (c == '(' && last == 'l' && in.peek(0) != '"' && in.peek(0) != '\'' && out.endsWith("url")) {
+                out.write(c);
+                url(in, out);
+                last = ')';
+            } else {
+                out.write(c);
+                last = c;
+            }
+        }
+        if (semicolon) out.write(';');
+    }
+
+    static void json(Reader reader, Writer out) throws IOException {
+        Input in = new Input(reader);
+        int c;
+        while ((c = in.read()) >= 0) {
+            if (c == '"') {
+                out.write(c);
+                string(c, in, out);
+            } else if (!isSpace(c)) {
+                out.write(c);
+            }
+        }
+    }
+
+    static String html(String html) {
+        return minify(html, Minifier::html);
+    }
+
+    static String css(String css) {
+        return minify(css, Minifier::css);
+    }
+
+    static String json(String json) {
+        return minify(json, Minifier::json);
+    }
+
+    /**
+     * Reduces the whitespace runs holding a newline to a newline, outside strings, template literals and
+     * comments of a script: as JavaScript treats any run of whitespace holding a line terminator as one
+     * line terminator (automatic semicolon insertion included), the script does the same. Used for inline
+     * scripts and Alpine attributes.
+     */
+    static String scriptLines(String script) {
+        StringBuilder out = new StringBuilder(script.length());
+        int run = -1;
+        boolean newline = false;
+        for (int i = 0; i < script.length(); i++) {
+            char c = script.charAt(i);
+            if (isSpace(c)) {
+                if (run < 0) run = i;
+                newline |= c == '\n' || c == '\r';
+                continue;
+            }
+            if (run >= 0) {
+                out.append(newline ? "\n" : script.substring(run, i));
+                run = -1;
+                newline = false;
+            }
+            int end = i;
+            if (c == '"' || c == '\'') {
+                end = CssRules.endOfString(script, i);
+            } else if (c == '`') {
+                end = endOfTemplate(script, i);
+            } else if (c == '/' && i + 1 < script.length() && script.charAt(i + 1) == '/') {
+                int lineEnd = script.indexOf('\n', i);
+                end = lineEnd < 0 ? script.length() - 1 : lineEnd - 1;
+            } else if (c == '/' && i + 1 < script.length() && script.charAt(i + 1) == '*') {
+                int commentEnd = script.indexOf("*/", i + 2);
+                end = commentEnd < 0 ? script.length() - 1 : commentEnd + 1;
+            }
+            out.append(script, i, end + 1);
+            i = end;
+        }
+        if (run >= 0) out.append(newline ? "\n" : script.substring(run));
+        return out.toString();
+    }
+
+    private static int endOfTemplate(String script, int start) {
+        for (int i = start + 1; i < script.length(); i++) {
+            char c = script.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '`') {
+                return i;
+            }
+        }
+        return script.length() - 1;
+    }
+
+    /**
+     * Writes a start or end tag whose <code>&lt;</code> was just read, with single spaces between its
+     * attributes.
+     *
+     * @return the lower-case name of a start tag, or null
+     */
+    private static String tag(Input in, Writer out) throws IOException {
+        StringBuilder tag = new StringBuilder();
+        int quote = 0;
+        boolean value = false;
+        int c;
+        while ((c = in.read()) >= 0) {
+            if (quote != 0) {
+                if (c == quote) quote = 0;
+            } else if (c == '>') {
+                break;
+            } else if (value && (c == '"' || c == '\'')) {
+                quote = c;
+            }
+            if (quote == 0 && !isSpace(c)) value = c == '=';
+            tag.append((char) c);
+        }
+        if (tag.charAt(0) == '!' || tag.charAt(0) == '?') {
+            out.write('<');
+            out.write(tag.toString());
+            out.write('>');
+            return null;
+        }
+        List<String[]> attributes = new ArrayList<>();
+        String name = attributes(tag.toString(), attributes);
+        boolean selfClosing = false;
+        out.write('<');
+        out.write(name);
+        for (String[] attribute : attributes) {
+            if (attribute[0].equals("/")) {
+                selfClosing = true;
+                continue;
+            }
+            out.write(' ');
+            out.write(attribute[0]);
+            if (attribute[1] != null) {
+                out.write('=');
+                out.write(attribute[2]);
+                out.write(attributeValue(attribute[0].toLowerCase(Locale.ROOT), attribute[1]));
+                out.write(attribute[2]);
+            }
+        }
+        if (selfClosing) out.write('/');
+        out.write('>');
+        if (name.startsWith("/") || selfClosing) return null;
+        String lower = name.toLowerCase(Locale.ROOT);
+        if (lower.equals("script")) {
+            String type = "";
+            for (String[] attribute : attributes) {
+                if (attribute[0].equalsIgnoreCase("type") && attribute[1] != null) type = attribute[1].trim().toLowerCase(Locale.ROOT);
+            }
+            return JSON_SCRIPTS.contains(type) ? "script:json" : JS_SCRIPTS.contains(type) ? "script" : "script:other";
+        }
+        return lower;
+    }
+
+    /**
+     * Splits the inside of a tag into its name and attributes (name, value or null, quote).
+     */
+    private static String attributes(String tag, List<String[]> attributes) {
+        int i = 0;
+        while (i < tag.length() && !isSpace(tag.charAt(i)) && (tag.charAt(i) != '/' || i == 0)) i++;
+        String name = tag.substring(0, i);
+        while (i < tag.length()) {
+            char c = tag.charAt(i);
+            if (isSpace(c)) {
+                i++;
+                continue;
+            }
+            if (c == '/') {
+                attributes.add(new String[]{"/", null, null});
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < tag.length() && !isSpace(tag.charAt(i)) && tag.charAt(i) != '=' && tag.charAt(i) != '/') i++;
+            if (i == start) i++; // stray character
+            String attribute = tag.substring(start, i);
+            int j = i;
+            while (j < tag.length() && isSpace(tag.charAt(j))) j++;
+            if (j >= tag.length() || tag.charAt(j) != '=') {
+                attributes.add(new String[]{attribute, null, null});
+                continue;
+            }
+            j++;
+            while (j < tag.length() && isSpace(tag.charAt(j))) j++;
+            if (j < tag.length() && (tag.charAt(j) == '"' || tag.charAt(j) == '\'')) {
+                int end = tag.indexOf(tag.charAt(j), j + 1);
+                if (end < 0) end = tag.length();
+                attributes.add(new String[]{attribute, tag.substring(j + 1, end), String.valueOf(tag.charAt(j))});
+                i = end + 1;
+            } else {
+                int end = j;
+                while (end < tag.length() && !isSpace(tag.charAt(end))) end++;
+                attributes.add(new String[]{attribute, tag.substring(j, end), ""});
+                i = end;
+            }
+        }
+        return name;
+    }
+
+    private static String attributeValue(String name, String value) {
+        if (name.equals("class")) {
+            return value.trim().replaceAll("\\s+", " ");
+        }
+        if (name.startsWith("x-") || name.startsWith("@") || name.startsWith(":")) {
+            return scriptLines(value);
+        }
+        return value;
+    }
+
+    /**
+     * Copies the content of a raw element up to its end tag (excluded): as is for <code>pre</code>,
+     * <code>textarea</code> and unknown scripts, minified for styles and scripts.
+     */
+    private static void raw(String kind, Input in, Writer out) throws IOException {
+        String name = kind.startsWith("script") ? "script" : kind;
+        boolean verbatim = name.equals("pre") || name.equals("textarea") || kind.equals("script:other");
+        StringBuilder content = verbatim ? null : new StringBuilder();
+        int c;
+        while ((c = in.peek(0)) >= 0 && !(c == '<' && isEndTag(in, name))) {
+            in.read();
+            if (verbatim) {
+                out.write(c);
+            } else {
+                content.append((char) c);
+            }
+        }
+        if (verbatim) return;
+        out.write(switch (kind) {
+            case "style" -> css(content.toString());
+            case "script:json" -> json(content.toString());
+            default -> scriptLines(content.toString().strip());
+        });
+    }
+
+    private static boolean isEndTag(Input in, String name) throws IOException {
+        if (in.peek(1) != '/') return false;
+        for (int i = 0; i < name.length(); i++) {
+            if (Character.toLowerCase(in.peek(i + 2)) != name.charAt(i)) return false;
+        }
+        int next = in.peek(name.length() + 2);
+        return next < 0 || next == '>' || next == '/' || isSpace(next);
+    }
+
+    private static void comment(Input in, Writer out, boolean kept) throws IOException {
+        in.read();
+        in.read();
+        in.read();
+        if (kept) out.write("<!--");
+        int c;
+        while ((c = in.read()) >= 0) {
+            if (c == '-' && in.startsWith("->")) {
+                in.read();
+                in.read();
+                if (kept) out.write("-->");
+                return;
+            }
+            if (kept) out.write(c);
+        }
+    }
+
+    /**
+     * Copies a CSS or JSON string whose opening quote was just written.
+     */
+    private static void string(int quote, Input in, Writer out) throws IOException {
+        int c;
+        while ((c = in.read()) >= 0) {
+            out.write(c);
+            if (c == '\\') {
+                int escaped = in.read();
+                if (escaped >= 0) out.write(escaped);
+            } else if (c == quote || c == '\n') {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Copies an unquoted <code>url(…)</code> whose parenthesis was just written, without its spaces.
+     */
+    private static void url(Input in, Writer out) throws IOException {
+        int c;
+        while ((c = in.read()) >= 0) {
+            if (!isSpace(c)) out.write(c);
+            if (c == '\\') {
+                int escaped = in.read();
+                if (escaped >= 0) out.write(escaped);
+            } else if (c == ')') {
+                return;
+            }
+        }
+    }
+
+    /** HTML and CSS whitespace (no-break and other Unicode spaces are content). */
+    private static boolean isSpace(int c) {
+        return c == ' ' || c == '\n' || c == '\t' || c == '\r' || c == '\f';
+    }
+
+    private static boolean isLetter(int c) {
+        return c >= 0 && Character.isLetter(c);
+    }
+
+    private static String minify(String text, Transform transform) {
+        StringWriter out = new StringWriter(text.length());
+        try {
+            transform.apply(new StringReader(text), out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // no I/O on strings
+        }
+        return out.toString();
+    }
+
+    /** One of the streaming minifiers. */
+    @FunctionalInterface
+    interface Transform {
+        void apply(Reader in, Writer out) throws IOException;
+    }
+
+    /**
+     * A writer remembering its last characters, for {@link #css} to look back at <code>url(</code>.
+     */
+    private static final class Tail extends Writer {
+        private final Writer out;
+        private final char[] last = new char[3];
+
+        Tail(Writer out) {
+            this.out = out;
+        }
+
+        boolean endsWith(String suffix) {
+            for (int i = 0; i < suffix.length(); i++) {
+                if (Character.toLowerCase(last[last.length - suffix.length() + i]) != suffix.charAt(i)) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            System.arraycopy(last, 1, last, 0, last.length - 1);
+            last[last.length - 1] = (char) c;
+            out.write(c);
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) throws IOException {
+            for (int i = offset; i < offset + length; i++) write(chars[i]);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * A reader with a few characters of look-ahead.
+     */
+    private static final class Input {
+        private final Reader reader;
+        private final char[] buffer = new char[8192];
+        private int position;
+        private int limit;
+
+        Input(Reader reader) {
+            this.reader = reader;
+        }
+
+        int read() throws IOException {
+            if (!fill(1)) return -1;
+            return buffer[position++];
+        }
+
+        /** The character <code>offset</code> characters ahead of the next one, or -1. */
+        int peek(int offset) throws IOException {
+            if (!fill(offset + 1)) return -1;
+            return buffer[position + offset];
+        }
+
+        boolean startsWith(String text) throws IOException {
+            for (int i = 0; i < text.length(); i++) {
+                if (peek(i) != text.charAt(i)) return false;
+            }
+            return true;
+        }
+
+        private boolean fill(int count) throws IOException {
+            if (limit - position >= count) return true;
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+            while (limit < count) {
+                int read = reader.read(buffer, limit, buffer.length - limit);
+                if (read < 0) return false;
+                limit += read;
+            }
+            return true;
+        }
+    }
+}
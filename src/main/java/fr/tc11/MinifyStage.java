@@ -0,0 +1,141 @@
+package fr.tc11;
+
+import org.jboss.logging.Logger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * "minify" build stage, run last on the generated site (after "page-features" and "critical-css", which
+ * read the comments and stylesheets of the pages): minifies the HTML, CSS and JSON files of
+ * <code>tc11.site.dir</code> in place with {@link Minifier}.
+ *
+ * Files are streamed to a temporary sibling, in parallel, and only replaced when smaller: running the
+ * stage again leaves the site as it is. The bytes saved per file are written to <code>tc11.minify.report</code>
+ * (CSV, largest savings first).
+ */
+final class MinifyStage implements BuildStages.Stage {
+
+    private static final Logger LOG = Logger.getLogger(MinifyStage.class);
+
+    /** Extensions minified by default, and how. */
+    private static final Map<String, Minifier.Transform> MINIFIERS = Map.of(
+            "html", Minifier::html,
+            "css", Minifier::css,
+            "json", Minifier::json);
+
+    /** Sizes of one file before and after, path relative to the site. */
+    record Saved(String path, long before, long after) {
+        long saved() {
+            return before - after;
+        }
+    }
+
+    /**
+     * Files read and rewritten, total bytes before and after.
+     */
+    record Summary(int files, int minified, long before, long after) {
+    }
+
+    @Override
+    public void run(BuildConfig config) throws Exception {
+        generate(config.getPath("tc11.site.dir", "target/roq"), config.getStrings("tc11.minify.extensions", "html,css,json"),
+                config.getPath("tc11.minify.report", "target/minify-report.csv"), config.threads("tc11.minify.threads"));
+    }
+
+    Summary generate(Path siteDir, List<String> extensions, Path report, int threads) throws IOException, InterruptedException {
+        if (!Files.isDirectory(siteDir)) {
+            throw new NoSuchFileException(siteDir.toString(), null, "generate the site before the minify stage");
+        }
+        for (String extension : extensions) {
+            if (!MINIFIERS.containsKey(extension)) {
+                throw new IllegalArgumentException("No minifier for ." + extension + " files, expected one of " + MINIFIERS.keySet());
+            }
+        }
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(siteDir)) {
+            files = walk.filter(Files::isRegularFile).filter(file -> extensions.contains(extension(file))).sorted().toList();
+        }
+        List<Saved> saved = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Map<Path, Future<Saved>> tasks = new LinkedHashMap<>();
+            for (Path file : files) {
+                tasks.put(file, executor.submit(() -> minify(siteDir, file)));
+            }
+            for (Map.Entry<Path, Future<Saved>> task : tasks.entrySet()) {
+                try {
+                    saved.add(task.getValue().get());
+                } catch (ExecutionException e) {
+                    LOG.warnf("Skipping minification of %s: %s", task.getKey(), e.getCause().getMessage());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        long before = saved.stream().mapToLong(Saved::before).sum();
+        long after = saved.stream().mapToLong(Saved::after).sum();
+        int minified = (int) saved.stream().filter(file -> file.saved() > 0).count();
+        writeReport(report, saved);
+        Summary summary = new Summary(files.size(), minified, before, after);
+        LOG.infof("Minify: %d files, %d minified, %d KB -> %d KB (%d KB saved, see %s)",
+                files.size(), minified, before / 1024, after / 1024, (before - after) / 1024, report);
+        return summary;
+    }
+
+    private static Saved minify(Path siteDir, Path file) throws IOException {
+        long before = Files.size(file);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+                 BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                MINIFIERS.get(extension(file)).apply(in, out);
+            }
+            long after = Files.size(temp);
+            if (after >= before) {
+                return new Saved(relative(siteDir, file), before, before);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return new Saved(relative(siteDir, file), before, after);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void writeReport(Path report, List<Saved> saved) throws IOException {
+        if (report.getParent() != null) Files.createDirectories(report.getParent());
+        List<String> lines = new ArrayList<>();
+        lines.add("path,before,after,saved");
+        saved.stream()
+                .sorted(Comparator.comparingLong(Saved::saved).reversed().thenComparing(Saved::path))
+                .forEach(file -> lines.add(file.path() + "," + file.before() + "," + file.after() + "," + file.saved()));
+        Files.write(report, lines, StandardCharsets.UTF_8);
+    }
+
+    private static String relative(Path siteDir, Path file) {
+        return siteDir.relativize(file).toString().replace('\\', '/');
+    }
+
+    private static String extension(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,314 @@
+package fr.tc11;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.jboss.logging.Logger;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * "og-cards" build stage: generates one 1200x630 Open Graph image per post of
+ * <code>content/posts</code>, cropped from its cover (or first image, or the site banner) with
+ * the title written over it, so that <code>files:ogImage(page)</code> points social networks at a
+ * small image of the expected size.
+ *
+ * Cards are named after a hash of their inputs (source image, title, layout version): a post whose
+ * image and title did not change keeps its card and its URL, which stays cached by CDNs and crawlers.
+ */
+final class OgCardStage implements BuildStages.Stage {
+
+    private static final Logger LOG = Logger.getLogger(OgCardStage.class);
+
+    static final int WIDTH = 1200;
+    static final int HEIGHT = 630;
+    static final String MANIFEST = "manifest.json";
+
+    // Bump when the card layout changes, so that every card is drawn again
+    private static final int LAYOUT_VERSION = 1;
+    private static final int MARGIN = 60;
+    private static final int MAX_TITLE_LINES = 3;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    /** What a card is drawn from: post folder (relative to the content folder), title and image. */
+    record Post(String folder, String title, Path image) {
+    }
+
+    @Override
+    public void run(BuildConfig config) throws Exception {
+        generate(config.getPath("tc11.images.content-dir", "content"),
+                config.getPath("tc11.assets.public-dir", "public"),
+                config.getPath("tc11.og.output-dir", "public/derived/og"),
+                config.get("tc11.og.url-prefix", "/derived/og"),
+                config.getPath("tc11.og.default-image", "public/assets/hero-banner.jpg"),
+                config.getBoolean("tc11.og.title-overlay", true),
+                config.getFloat("tc11.images.jpeg-quality", 0.82f),
+                config.threads("tc11.images.threads"));
+    }
+
+    /**
+     * Generates the missing cards and rewrites the manifest (post folder -> card URL).
+     *
+     * @return the manifest
+     */
+    Map<String, String> generate(Path contentDir, Path publicDir, Path outputDir, String urlPrefix, Path defaultImage,
+                                 boolean titleOverlay, float quality, int threads) throws IOException, InterruptedException {
+        List<Post> posts = findPosts(contentDir, publicDir, defaultImage);
+        AtomicInteger generated = new AtomicInteger();
+        Map<String, Future<String>> cards = new LinkedHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (Post post : posts) {
+                cards.put(post.folder(), executor.submit(() -> {
+                    String fileName = cardHash(post, titleOverlay) + ".jpg";
+                    Path card = outputDir.resolve(fileName);
+                    if (!Files.isRegularFile(card)) {
+                        draw(post, titleOverlay, card, quality);
+                        generated.incrementAndGet();
+                    }
+                    return fileName;
+                }));
+            }
+            Map<String, String> manifest = new TreeMap<>();
+            for (Map.Entry<String, Future<String>> card : cards.entrySet()) {
+                try {
+                    manifest.put(card.getKey(), urlPrefix + "/" + card.getValue().get());
+                } catch (ExecutionException e) {
+                    LOG.warnf("Skipping Open Graph card of %s: %s", card.getKey(), e.getCause().getMessage());
+                }
+            }
+            writeManifest(outputDir.resolve(MANIFEST), manifest);
+            int removed = removeOrphans(outputDir, manifest);
+            LOG.infof("Open Graph cards: %d posts, %d generated, %d up to date, %d stale files removed",
+                    posts.size(), generated.get(), manifest.size() - generated.get(), removed);
+            return manifest;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Lists the posts (folders of <code>posts/</code> with an index.md or index.html) and the image
+     * their card is drawn from: frontmatter cover, else first image of the folder, else the default.
+     * A root-relative cover is looked up in the public folder, then in the content folder.
+     */
+    static List<Post> findPosts(Path contentDir, Path publicDir, Path defaultImage) throws IOException {
+        Path postsDir = contentDir.resolve("posts");
+        if (!Files.isDirectory(postsDir)) {
+            return List.of();
+        }
+        List<Post> posts = new ArrayList<>();
+        try (Stream<Path> folders = Files.list(postsDir)) {
+            for (Path folder : folders.filter(Files::isDirectory).sorted().toList()) {
+                Path index = Files.isRegularFile(folder.resolve("index.md")) ? folder.resolve("index.md") : folder.resolve("index.html");
+                if (!Files.isRegularFile(index)) continue;
+                Map<String, String> frontmatter = frontmatter(Files.readString(index, StandardCharsets.UTF_8));
+                Path image = coverImage(frontmatter.get("cover"), folder, contentDir, publicDir);
+                if (image == null) image = firstImage(folder);
+                if (image == null) image = defaultImage;
+                String relative = contentDir.relativize(folder).toString().replace('\\', '/');
+                posts.add(new Post(relative, frontmatter.getOrDefault("title", ""), image));
+            }
+        }
+        return posts;
+    }
+
+    /**
+     * Reads the <code>key: value</code> lines of a frontmatter block, unquoting values.
+     */
+    static Map<String, String> frontmatter(String page) {
+        Map<String, String> values = new LinkedHashMap<>();
+        String[] lines = page.split("\\R");
+        if (lines.length == 0 || !lines[0].trim().equals("---")) return values;
+        for (int i = 1; i < lines.length && !lines[i].trim().equals("---"); i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon <= 0 || Character.isWhitespace(lines[i].charAt(0))) continue;
+            String value = lines[i].substring(colon + 1).trim();
+            if (value.length() >= 2 && (value.startsWith("\"") && value.endsWith("\"") || value.startsWith("'") && value.endsWith("'"))) {
+                value = value.substring(1, value.length() - 1).replace("\\\"", "\"").replace("''", "'");
+            }
+            values.put(lines[i].substring(0, colon).trim(), value);
+        }
+        return values;
+    }
+
+    private static Path coverImage(String cover, Path folder, Path contentDir, Path publicDir) {
+        if (cover == null || cover.isBlank() || cover.contains("://")) return null;
+        // "/assets/x.jpg" is a site image (public dir), "/posts/y/x.jpg" a content file, "x.jpg" a file of the post
+        for (Path candidate : cover.startsWith("/")
+                ? List.of(publicDir.resolve(cover.substring(1)), contentDir.resolve(cover.substring(1)))
+                : List.of(folder.resolve(cover))) {
+            if (Files.isRegularFile(candidate)) return candidate;
+        }
+        return null;
+    }
+
+    private static Path firstImage(Path folder) throws IOException {
+        try (Stream<Path> files = Files.list(folder)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(file -> ImageDerivativesStage.SOURCE_EXTENSIONS.contains(
+                            ImageDerivativesStage.extension(file.getFileName().toString())))
+                    .sorted()
+                    .findFirst()
+                    .orElse(null);
+        }
+    }
+
+    static String cardHash(Post post, boolean titleOverlay) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(Files.readAllBytes(post.image()));
+            String inputs = "\n" + LAYOUT_VERSION + "\n" + (titleOverlay ? post.title() : "");
+            return HexFormat.of().formatHex(digest.digest(inputs.getBytes(StandardCharsets.UTF_8))).substring(0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void draw(Post post, boolean titleOverlay, Path card, float quality) throws IOException {
+        ImageProcessing.Decoded decoded = ImageProcessing.read(Files.readAllBytes(post.image()), WIDTH);
+        if (decoded == null) {
+            throw new IOException("unsupported image format " + post.image());
+        }
+        BufferedImage image = ImageProcessing.cover(decoded.image(), WIDTH, HEIGHT);
+        if (titleOverlay && !post.title().isBlank()) {
+            drawTitle(image, post.title());
+        }
+        ImageProcessing.write(image, card, quality);
+    }
+
+    private static void drawTitle(BufferedImage image, String title) {
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            // Darkens the lower half so that white text stays readable on any photo
+            g.setPaint(new GradientPaint(0, HEIGHT * 0.35f, new Color(0, 0, 0, 0), 0, HEIGHT, new Color(0, 0, 0, 200)));
+            g.fillRect(0, 0, WIDTH, HEIGHT);
+
+            Font font = new Font(Font.SANS_SERIF, Font.BOLD, 60);
+            String text = displayable(title, font);
+            List<String> lines = wrap(text, g.getFontMetrics(font), WIDTH - 2 * MARGIN);
+            while (lines.size() > MAX_TITLE_LINES && font.getSize() > 40) {
+                font = font.deriveFont((float) font.getSize() - 6);
+                lines = wrap(text, g.getFontMetrics(font), WIDTH - 2 * MARGIN);
+            }
+            FontMetrics metrics = g.getFontMetrics(font);
+            if (lines.size() > MAX_TITLE_LINES) {
+                lines = new ArrayList<>(lines.subList(0, MAX_TITLE_LINES));
+                lines.set(MAX_TITLE_LINES - 1, ellipsis(lines.get(MAX_TITLE_LINES - 1), metrics, WIDTH - 2 * MARGIN));
+            }
+            g.setFont(font);
+            g.setColor(Color.WHITE);
+            int lineHeight = metrics.getHeight();
+            int y = HEIGHT - MARGIN - lineHeight * (lines.size() - 1) - metrics.getDescent();
+            for (String line : lines) {
+                g.drawString(line, MARGIN, y);
+                y += lineHeight;
+            }
+        } finally {
+            g.dispose();
+        }
+    }
+
+    /** Drops what the font cannot draw (emoji mostly) instead of rendering boxes. */
+    static String displayable(String text, Font font) {
+        StringBuilder out = new StringBuilder(text.length());
+        text.codePoints().filter(font::canDisplay).forEach(out::appendCodePoint);
+        return out.toString().replaceAll("\\s+", " ").trim();
+    }
+
+    static List<String> wrap(String text, FontMetrics metrics, int maxWidth) {
+        List<String> lines = new ArrayList<>();
+        StringBuilder line = new StringBuilder();
+        for (String word : text.split(" ")) {
+            String candidate = line.isEmpty() ? word : line + " " + word;
+            if (!line.isEmpty() && metrics.stringWidth(candidate) > maxWidth) {
+                lines.add(line.toString());
+                line.setLength(0);
+                line.append(word);
+            } else {
+                line.setLength(0);
+                line.append(candidate);
+            }
+        }
+        if (!line.isEmpty()) lines.add(line.toString());
+        return lines;
+    }
+
+    private static String ellipsis(String line, FontMetrics metrics, int maxWidth) {
+        String text = line;
+        while (!text.isEmpty() && metrics.stringWidth(text + "…") > maxWidth) {
+            text = text.substring(0, text.length() - 1);
+        }
+        return text.stripTrailing() + "…";
+    }
+
+    private static void writeManifest(Path file, Map<String, String> manifest) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling(MANIFEST + ".tmp");
+        try {
+            MAPPER.writeValue(temp.toFile(), manifest);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Reads a manifest written by this stage; empty when missing or unreadable.
+     */
+    static Map<String, String> readManifest(Path file) {
+        if (!Files.isRegularFile(file)) return Map.of();
+        try {
+            return MAPPER.readValue(file.toFile(), new TypeReference<Map<String, String>>() { });
+        } catch (IOException e) {
+            LOG.warnf("Failed to read Open Graph card manifest %s: %s", file, e.getMessage());
+            return Map.of();
+        }
+    }
+
+    private static int removeOrphans(Path outputDir, Map<String, String> manifest) throws IOException {
+        Set<String> referenced = new HashSet<>();
+        referenced.add(MANIFEST);
+        manifest.values().forEach(url -> referenced.add(url.substring(url.lastIndexOf('/') + 1)));
+        int removed = 0;
+        try (Stream<Path> files = Files.list(outputDir)) {
+            for (Path file : files.filter(Files::isRegularFile).toList()) {
+                if (!referenced.contains(file.getFileName().toString())) {
+                    Files.delete(file);
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+}
@@ -0,0 +1,138 @@
+package fr.tc11;
+
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * "page-features" build stage, run after Roq generated the site: removes from each page the
+ * script and style tags of the features it does not use.
+ *
+ * Templates declare the tags of a feature between markers, for every page:
+ * <pre>
+ * &lt;!-- feature:map --&gt;{#bundle key="map" /}&lt;!-- /feature:map --&gt;
+ * </pre>
+ * The stage looks for the feature in the rendered page (e.g. an element with <code>id="map"</code>,
+ * see {@link #FEATURES}), outside comments, scripts and styles: the content of the block is kept when
+ * found, the whole block is removed otherwise. Blocks of an unknown feature are always kept. Without
+ * the stage (e.g. <code>quarkus:dev</code>) every page loads every feature.
+ */
+final class PageFeaturesStage implements BuildStages.Stage {
+
+    private static final Logger LOG = Logger.getLogger(PageFeaturesStage.class);
+
+    /**
+     * Feature name -> what the rendered page must contain to need it.
+     */
+    static final Map<String, Pattern> FEATURES = new LinkedHashMap<>();
+
+    static {
+        FEATURES.put("alpine", tagWith("\\sx-data[\\s=>]"));
+        FEATURES.put("dates", tagWith("\\sid=\"maj-date\""));
+        FEATURES.put("map", tagWith("\\sid=\"map\""));
+        FEATURES.put("instagram", tagWith("\\sclass=\"(?:[^\"]*\\s)?instagram-media[\\s\"]"));
+    }
+
+    private static final Pattern BLOCK = Pattern.compile("<!-- feature:([a-z0-9-]+) -->(.*?)<!-- /feature:\\1 -->", Pattern.DOTALL);
+    private static final Pattern IGNORED = Pattern.compile("<!--.*?-->|<script\\b.*?</script>|<style\\b.*?</style>",
+            Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Number of pages read and rewritten, and number of pages keeping each feature.
+     */
+    record Summary(int pages, int rewritten, Map<String, Integer> used) {
+    }
+
+    /**
+     * A start tag with the given attribute.
+     */
+    private static Pattern tagWith(String attribute) {
+        return Pattern.compile("<[a-zA-Z][^>]*" + attribute);
+    }
+
+    @Override
+    public void run(BuildConfig config) throws Exception {
+        generate(config.getPath("tc11.site.dir", "target/roq"));
+    }
+
+    Summary generate(Path siteDir) throws IOException {
+        if (!Files.isDirectory(siteDir)) {
+            throw new NoSuchFileException(siteDir.toString(), null, "generate the site before the page-features stage");
+        }
+        List<Path> pages;
+        try (Stream<Path> files = Files.walk(siteDir)) {
+            pages = files.filter(Files::isRegularFile).filter(file -> file.getFileName().toString().endsWith(".html")).sorted().toList();
+        }
+        Map<String, Integer> used = new TreeMap<>();
+        int rewritten = 0;
+        for (Path page : pages) {
+            String html = Files.readString(page, StandardCharsets.UTF_8);
+            if (!BLOCK.matcher(html).find()) continue;
+            Set<String> features = features(html);
+            features.forEach(feature -> used.merge(feature, 1, Integer::sum));
+            String filtered = apply(html, features);
+            if (!filtered.equals(html)) {
+                write(page, filtered);
+                rewritten++;
+            }
+        }
+        Summary summary = new Summary(pages.size(), rewritten, used);
+        LOG.infof("Page features: %d pages, %d rewritten, pages per feature %s", pages.size(), rewritten, used);
+        return summary;
+    }
+
+    /**
+     * The features of {@link #FEATURES} used by a page, looked up outside the feature blocks,
+     * comments, scripts and styles.
+     */
+    static Set<String> features(String html) {
+        String content = IGNORED.matcher(BLOCK.matcher(html).replaceAll("")).replaceAll("");
+        Set<String> features = new LinkedHashSet<>();
+        FEATURES.forEach((name, pattern) -> {
+            if (pattern.matcher(content).find()) features.add(name);
+        });
+        return features;
+    }
+
+    /**
+     * Keeps the content of the blocks of the given features (and of unknown features), removes the others.
+     */
+    static String apply(String html, Set<String> features) {
+        Matcher matcher = BLOCK.matcher(html);
+        StringBuilder result = new StringBuilder(html.length());
+        while (matcher.find()) {
+            String name = matcher.group(1);
+            if (!FEATURES.containsKey(name)) {
+                LOG.warnf("Unknown page feature '%s', its tags are kept", name);
+            }
+            boolean keep = features.contains(name) || !FEATURES.containsKey(name);
+            matcher.appendReplacement(result, keep ? Matcher.quoteReplacement(matcher.group(2)) : "");
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.writeString(temp, content, StandardCharsets.UTF_8);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
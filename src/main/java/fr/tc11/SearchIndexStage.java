@@ -0,0 +1,360 @@
+package fr.tc11;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * "search-index" build stage, run after Roq generated the site: indexes the posts listed in
+ * <code>actus.json</code> (title, summary and the text of their generated page) into a compact
+ * inverted index under <code>search/</code>, queried in the browser by <code>/search.js</code>.
+ *
+ * Terms are folded (lower case, accents removed, "œ" as "oe"), sorted so that a prefix matches a
+ * contiguous range, and split into shards by their first <code>tc11.search.prefix-length</code>
+ * characters: a query only downloads the shards of its words. Each posting list is a flat array of
+ * (document id delta, weight) pairs, the weight counting title words 3, summary words 2, body words 1.
+ *
+ * Shard and document files are named after their content hash and listed by <code>search/index.json</code>,
+ * so unchanged shards keep their URL. The terms of each post are cached by text hash in
+ * <code>tc11.search.cache-dir</code>: only the posts whose text changed are tokenised again.
+ */
+final class SearchIndexStage implements BuildStages.Stage {
+
+    private static final Logger LOG = Logger.getLogger(SearchIndexStage.class);
+
+    static final int FORMAT_VERSION = 1;
+    static final String INDEX = "index.json";
+    static final String CACHE = "terms.json";
+
+    static final int TITLE_WEIGHT = 3;
+    static final int SUMMARY_WEIGHT = 2;
+    static final int BODY_WEIGHT = 1;
+
+    // Too frequent in French to tell posts apart
+    private static final Set<String> STOP_WORDS = Set.of(
+            "au", "aux", "avec", "ce", "ces", "dans", "de", "des", "du", "elle", "en", "est", "et", "il", "ils",
+            "la", "le", "les", "leur", "leurs", "ne", "nos", "notre", "nous", "on", "ou", "par", "pas", "pour",
+            "qu", "que", "qui", "sa", "se", "ses", "son", "sont", "sur", "un", "une", "vos", "votre", "vous");
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern SKIPPED_ELEMENTS = Pattern.compile("(?is)<(script|style|template)\\b.*?</\\1\\s*>");
+    private static final Pattern TAG = Pattern.compile("<(?:[^>\"']|\"[^\"]*\"|'[^']*')*>");
+    private static final Pattern ENTITY = Pattern.compile("&(#x[0-9a-fA-F]+|#[0-9]+|[a-zA-Z]+);");
+    private static final Map<String, String> NAMED_ENTITIES = Map.of(
+            "amp", "&", "lt", "<", "gt", ">", "quot", "\"", "apos", "'", "nbsp", " ");
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /** A search result as displayed: URL, title, summary, date and category. */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record Document(String u, String t, String r, String d, String c) {
+    }
+
+    /** One shard: its sorted terms and, for each term, the (document id delta, weight) pairs. */
+    record Shard(List<String> terms, List<int[]> postings) {
+    }
+
+    /** The file read first by the client. */
+    record Index(int version, int prefixLength, String docs, Map<String, String> shards) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record CachedTerms(String hash, Map<String, Integer> terms) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record Cache(int version, Map<String, CachedTerms> posts) {
+    }
+
+    @Override
+    public void run(BuildConfig config) throws Exception {
+        generate(config.getPath("tc11.site.dir", "target/roq"),
+                config.getPath("tc11.search.cache-dir", "target/search-cache"),
+                config.getInt("tc11.search.prefix-length", 1));
+    }
+
+    /**
+     * Writes the index of the posts of <code>actus.json</code> into <code>siteDir/search</code>.
+     *
+     * @return the index
+     */
+    Index generate(Path siteDir, Path cacheDir, int prefixLength) throws IOException {
+        if (prefixLength < 1) {
+            throw new IllegalArgumentException("tc11.search.prefix-length must be at least 1, got " + prefixLength);
+        }
+        Path source = siteDir.resolve(ActusShardsStage.SOURCE);
+        if (!Files.isRegularFile(source)) {
+            throw new NoSuchFileException(source.toString(), null, "generate the site before the search-index stage");
+        }
+        Cache cache = readCache(cacheDir.resolve(CACHE));
+        Map<String, CachedTerms> cached = new LinkedHashMap<>();
+        List<Document> documents = new ArrayList<>();
+        // term -> document id -> weight, documents in actus.json order (newest first)
+        Map<String, Map<Integer, Integer>> index = new TreeMap<>();
+        int tokenised = 0;
+
+        for (JsonNode actu : MAPPER.readTree(source.toFile())) {
+            String url = actu.path("lien").asText();
+            String path = URI.create(url).getPath();
+            Document document = new Document(path, actu.path("titre").asText(), actu.path("resume").asText(),
+                    text(actu, "date"), text(actu, "categorie"));
+            String body = postText(readPage(siteDir, path));
+            String hash = hash(document.t() + '\u0000' + document.r() + '\u0000' + body);
+
+            CachedTerms terms = cache.posts().get(path);
+            if (terms == null || !terms.hash().equals(hash)) {
+                terms = new CachedTerms(hash, weights(document.t(), document.r(), body));
+                tokenised++;
+            }
+            cached.put(path, terms);
+
+            int id = documents.size();
+            documents.add(document);
+            terms.terms().forEach((term, weight) -> index.computeIfAbsent(term, t -> new TreeMap<>()).put(id, weight));
+        }
+
+        Path outputDir = siteDir.resolve("search");
+        Files.createDirectories(outputDir);
+        Map<String, String> shards = new TreeMap<>();
+        for (Map.Entry<String, Shard> shard : shards(index, prefixLength).entrySet()) {
+            shards.put(shard.getKey(), "/search/" + writeHashed(outputDir, shardFileName(shard.getKey()), shard.getValue()));
+        }
+        Index written = new Index(FORMAT_VERSION, prefixLength, "/search/" + writeHashed(outputDir, "docs", documents), shards);
+        write(outputDir.resolve(INDEX), written);
+        removeUnlisted(outputDir, written);
+        write(cacheDir.resolve(CACHE), new Cache(FORMAT_VERSION, cached));
+
+        LOG.infof("Search index: %d posts (%d tokenised, %d unchanged), %d terms in %d shard(s)",
+                documents.size(), tokenised, documents.size() - tokenised, index.size(), shards.size());
+        return written;
+    }
+
+    /**
+     * Splits the folded text into words, dropping one-letter words and stop words.
+     */
+    static List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) return tokens;
+        for (String token : SEPARATORS.split(fold(text))) {
+            if (token.length() > 1 && !STOP_WORDS.contains(token)) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Lower case without accents, "œ"/"æ" spelled out: "Équipe Cœur" gives "equipe coeur".
+     * <code>/search.js</code> folds queries the same way.
+     */
+    static String fold(String text) {
+        String stripped = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return stripped.toLowerCase(Locale.ROOT).replace("œ", "oe").replace("æ", "ae");
+    }
+
+    /**
+     * Returns the weight of each term of a post, summed over its occurrences.
+     */
+    static Map<String, Integer> weights(String title, String summary, String body) {
+        Map<String, Integer> weights = new TreeMap<>();
+        tokens(title).forEach(token -> weights.merge(token, TITLE_WEIGHT, Integer::sum));
+        tokens(summary).forEach(token -> weights.merge(token, SUMMARY_WEIGHT, Integer::sum));
+        tokens(body).forEach(token -> weights.merge(token, BODY_WEIGHT, Integer::sum));
+        return weights;
+    }
+
+    /**
+     * Groups the (sorted) terms by prefix and delta-encodes their posting lists.
+     */
+    static Map<String, Shard> shards(Map<String, Map<Integer, Integer>> index, int prefixLength) {
+        Map<String, Shard> shards = new TreeMap<>();
+        for (Map.Entry<String, Map<Integer, Integer>> term : index.entrySet()) {
+            String prefix = term.getKey().substring(0, Math.min(prefixLength, term.getKey().length()));
+            Shard shard = shards.computeIfAbsent(prefix, p -> new Shard(new ArrayList<>(), new ArrayList<>()));
+            int[] postings = new int[term.getValue().size() * 2];
+            int i = 0;
+            int previous = 0;
+            for (Map.Entry<Integer, Integer> posting : term.getValue().entrySet()) {
+                postings[i++] = posting.getKey() - previous;
+                postings[i++] = posting.getValue();
+                previous = posting.getKey();
+            }
+            shard.terms().add(term.getKey());
+            shard.postings().add(postings);
+        }
+        return shards;
+    }
+
+    /**
+     * Decodes a posting list written by {@link #shards}: document id -> weight.
+     */
+    static Map<Integer, Integer> decode(int[] postings) {
+        Map<Integer, Integer> decoded = new LinkedHashMap<>();
+        int id = 0;
+        for (int i = 0; i + 1 < postings.length; i += 2) {
+            id += postings[i];
+            decoded.put(id, postings[i + 1]);
+        }
+        return decoded;
+    }
+
+    /**
+     * Returns the visible text of the <code>#post-content</code> section of a generated post page
+     * (scripts, styles and Alpine templates left out), or an empty string when there is none.
+     */
+    static String postText(String html) {
+        int start = html.indexOf("id=\"post-content\"");
+        if (start < 0) return "";
+        start = html.indexOf('>', start) + 1;
+        int end = html.indexOf("</section>", start);
+        String section = html.substring(start, end < 0 ? html.length() : end);
+        section = SKIPPED_ELEMENTS.matcher(section).replaceAll(" ");
+        section = TAG.matcher(section).replaceAll(" ");
+        return decodeEntities(section).replaceAll("\\s+", " ").strip();
+    }
+
+    private static String decodeEntities(String text) {
+        Matcher matcher = ENTITY.matcher(text);
+        StringBuilder decoded = new StringBuilder(text.length());
+        while (matcher.find()) {
+            String entity = matcher.group(1);
+            String replacement;
+            if (entity.startsWith("#x")) {
+                replacement = Character.toString(Integer.parseInt(entity.substring(2), 16));
+            } else if (entity.startsWith("#")) {
+                replacement = Character.toString(Integer.parseInt(entity.substring(1)));
+            } else {
+                replacement = NAMED_ENTITIES.getOrDefault(entity, matcher.group());
+            }
+            matcher.appendReplacement(decoded, Matcher.quoteReplacement(replacement));
+        }
+        return matcher.appendTail(decoded).toString();
+    }
+
+    private static String readPage(Path siteDir, String path) throws IOException {
+        String relative = path.startsWith("/") ? path.substring(1) : path;
+        Path page = siteDir.resolve(relative);
+        if (relative.isEmpty() || relative.endsWith("/") || Files.isDirectory(page)) {
+            page = page.resolve("index.html");
+        }
+        if (!page.normalize().startsWith(siteDir.normalize()) || !Files.isRegularFile(page)) {
+            LOG.warnf("No generated page for %s, indexing its title and summary only", path);
+            return "";
+        }
+        return Files.readString(page, StandardCharsets.UTF_8);
+    }
+
+    private static String text(JsonNode node, String field) {
+        String value = node.path(field).asText();
+        return value.isEmpty() ? null : value;
+    }
+
+    // Letters and digits as is, other characters by code point, so that any prefix gives a valid file name
+    private static String shardFileName(String prefix) {
+        StringBuilder name = new StringBuilder("terms-");
+        prefix.codePoints().forEach(c -> {
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                name.appendCodePoint(c);
+            } else {
+                name.append('_').append(Integer.toHexString(c));
+            }
+        });
+        return name.toString();
+    }
+
+    private static String writeHashed(Path outputDir, String name, Object value) throws IOException {
+        byte[] bytes = MAPPER.writeValueAsBytes(value);
+        String fileName = name + "." + hash(bytes) + ".json";
+        Path file = outputDir.resolve(fileName);
+        if (!Files.isRegularFile(file)) {
+            write(file, bytes);
+        }
+        return fileName;
+    }
+
+    private static void write(Path file, Object value) throws IOException {
+        write(file, MAPPER.writeValueAsBytes(value));
+    }
+
+    private static void write(Path file, byte[] bytes) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.write(temp, bytes);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void removeUnlisted(Path outputDir, Index index) throws IOException {
+        Set<String> listed = new HashSet<>();
+        listed.add(INDEX);
+        listed.add(index.docs().substring(index.docs().lastIndexOf('/') + 1));
+        index.shards().values().forEach(url -> listed.add(url.substring(url.lastIndexOf('/') + 1)));
+        try (Stream<Path> files = Files.list(outputDir)) {
+            for (Path file : files.filter(Files::isRegularFile).toList()) {
+                if (!listed.contains(file.getFileName().toString())) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the term cache of a previous run; empty when missing, unreadable or of another version.
+     */
+    static Cache readCache(Path file) {
+        if (Files.isRegularFile(file)) {
+            try {
+                Cache cache = MAPPER.readValue(file.toFile(), Cache.class);
+                if (cache.version() == FORMAT_VERSION && cache.posts() != null) {
+                    return cache;
+                }
+            } catch (IOException e) {
+                LOG.warnf("Ignoring unreadable search term cache %s: %s", file, e.getMessage());
+            }
+        }
+        return new Cache(FORMAT_VERSION, new HashMap<>());
+    }
+
+    private static String hash(String text) {
+        return hash(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String hash(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package fr.tc11;
+
+import java.io.IOException;
+import java.net.URLConnection;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * How the static-serving mode ({@link StaticSiteRoute}) answers for the files of the generated site:
+ * which file a URL path points to, which pre-compressed sibling written by the "compress" stage
+ * ({@link CompressStage}) to send for an <code>Accept-Encoding</code>, and the strong ETag and
+ * <code>Cache-Control</code> of the response. Independent of Vert.x, so that the rules are tested alone.
+ *
+ * What is known of a file (variants and their content hash) is kept in memory and checked against its
+ * size and modification time at most every <code>recheckMillis</code>, so that most requests do not
+ * touch the disk before sending the file.
+ */
+final class StaticFiles {
+
+    static final String IDENTITY = "identity";
+    static final String INDEX = "index.html";
+
+    private final Path root;
+    private final List<AssetFingerprintStage.CacheRule> cacheRules;
+    private final String defaultCacheControl;
+    private final long recheckMillis;
+    private final Map<Path, Entry> entries = new ConcurrentHashMap<>();
+
+    /** What a URL path points to. */
+    sealed interface Entry permits Resource, Folder {
+    }
+
+    /** A folder, to be requested with a trailing slash (for the relative links of its index.html). */
+    record Folder(long checked) implements Entry {
+    }
+
+    /**
+     * A file of the site and its variants by content coding (<code>identity</code> first, then by
+     * preference).
+     */
+    record Resource(Path file, long size, FileTime modified, String contentType, String cacheControl,
+                    Map<String, Variant> variants, long checked) implements Entry {
+
+        /** The variant to send for an <code>Accept-Encoding</code> header (null when absent). */
+        Variant select(String acceptEncoding) {
+            return variants.get(negotiate(acceptEncoding, variants.keySet()));
+        }
+    }
+
+    /** A file sent for a resource: the file itself or a compressed sibling. */
+    record Variant(Path file, String encoding, long length, String etag) {
+    }
+
+    StaticFiles(Path root, List<AssetFingerprintStage.CacheRule> cacheRules, String defaultCacheControl, long recheckMillis) {
+        this.root = root.toAbsolutePath().normalize();
+        this.cacheRules = List.copyOf(cacheRules);
+        this.defaultCacheControl = defaultCacheControl;
+        this.recheckMillis = recheckMillis;
+    }
+
+    Path root() {
+        return root;
+    }
+
+    /**
+     * The file or folder of the site for a URL path (<code>index.html</code> for a trailing slash), or
+     * null when the path leaves the site or is not valid.
+     */
+    Path resolve(String urlPath) {
+        if (urlPath == null || !urlPath.startsWith("/")) return null;
+        String decoded = URLDecoder.decode(urlPath.replace("+", "%2B"), StandardCharsets.UTF_8);
+        if (decoded.indexOf('\0') >= 0 || decoded.indexOf('\\') >= 0) return null;
+        if (decoded.endsWith("/")) decoded += INDEX;
+        try {
+            Path file = root.resolve(decoded.substring(1)).normalize();
+            return file.startsWith(root) ? file : null;
+        } catch (InvalidPathException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The entry of a path when known and checked recently enough, without touching the disk; else null.
+     */
+    Entry cached(Path path) {
+        Entry entry = entries.get(path);
+        if (entry == null) return null;
+        long checked = switch (entry) {
+            case Resource resource -> resource.checked();
+            case Folder folder -> folder.checked();
+        };
+        return System.currentTimeMillis() - checked < recheckMillis ? entry : null;
+    }
+
+    /**
+     * The entry of a path, read again from the disk when it changed (blocking: hashes new files).
+     *
+     * @return the entry, or null when there is no such file or folder
+     */
+    Entry lookup(Path path) throws IOException {
+        long now = System.currentTimeMillis();
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            entries.remove(path);
+            return null;
+        }
+        if (attributes.isDirectory()) {
+            Folder folder = new Folder(now);
+            entries.put(path, folder);
+            return folder;
+        }
+        if (!attributes.isRegularFile()) return null;
+        Entry known = entries.get(path);
+        if (known instanceof Resource resource && resource.size() == attributes.size()
+                && resource.modified().equals(attributes.lastModifiedTime()) && variantsUnchanged(resource)) {
+            Resource rechecked = new Resource(resource.file(), resource.size(), resource.modified(), resource.contentType(),
+                    resource.cacheControl(), resource.variants(), now);
+            entries.put(path, rechecked);
+            return rechecked;
+        }
+        Resource resource = describe(path, attributes, now);
+        entries.put(path, resource);
+        return resource;
+    }
+
+    private Resource describe(Path file, BasicFileAttributes attributes, long now) throws IOException {
+        Map<String, Variant> variants = new LinkedHashMap<>();
+        variants.put(IDENTITY, new Variant(file, IDENTITY, attributes.size(), etag(file)));
+        for (Map.Entry<String, String> format : CompressStage.FORMATS.entrySet()) {
+            Path sibling = CompressStage.sibling(file, format.getKey());
+            // A sibling is only sent while it has the modification time of its file ("compress" stage)
+            if (Files.isRegularFile(sibling) && Files.getLastModifiedTime(sibling).equals(attributes.lastModifiedTime())) {
+                variants.put(format.getKey(), new Variant(sibling, format.getKey(), Files.size(sibling), etag(sibling)));
+            }
+        }
+        String urlPath = "/" + root.relativize(file).toString().replace('\\', '/');
+        return new Resource(file, attributes.size(), attributes.lastModifiedTime(), contentType(file.getFileName().toString()),
+                cacheControl(urlPath), Collections.unmodifiableMap(variants), now);
+    }
+
+    private static boolean variantsUnchanged(Resource resource) {
+        for (String format : CompressStage.FORMATS.keySet()) {
+            Path sibling = CompressStage.sibling(resource.file(), format);
+            Variant variant = resource.variants().get(format);
+            boolean fresh = isFreshSibling(sibling, resource.modified());
+            if (fresh != (variant != null)) return false;
+            if (variant != null && size(sibling) != variant.length()) return false;
+        }
+        return true;
+    }
+
+    private static boolean isFreshSibling(Path sibling, FileTime modified) {
+        try {
+            return Files.getLastModifiedTime(sibling).equals(modified);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /** Strong ETag: hash of the bytes sent. */
+    private static String etag(Path file) throws IOException {
+        return "\"" + ImageDerivativesStage.contentHash(file) + "\"";
+    }
+
+    /**
+     * <code>Cache-Control</code> of a URL path: the first matching rule of <code>cache-headers.json</code>
+     * (fingerprinted assets are immutable), else the default.
+     */
+    String cacheControl(String urlPath) {
+        for (AssetFingerprintStage.CacheRule rule : cacheRules) {
+            String value = rule.headers().get("Cache-Control");
+            if (value != null && rule.matches(urlPath)) return value;
+        }
+        return defaultCacheControl;
+    }
+
+    /**
+     * The preferred available content coding for an <code>Accept-Encoding</code> header: the first of
+     * <code>available</code> (by preference) with the highest non-zero quality, <code>identity</code>
+     * when the header is missing or accepts none of them.
+     */
+    static String negotiate(String acceptEncoding, Iterable<String> available) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) return IDENTITY;
+        Map<String, Double> qualities = new LinkedHashMap<>();
+        for (String part : acceptEncoding.split(",")) {
+            String[] parameters = part.split(";");
+            String coding = parameters[0].trim().toLowerCase(Locale.ROOT);
+            double quality = 1;
+            for (int i = 1; i < parameters.length; i++) {
+                String parameter = parameters[i].trim();
+                if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (!coding.isEmpty()) qualities.put(coding, quality);
+        }
+        String best = IDENTITY;
+        double bestQuality = 0;
+        for (String coding : available) {
+            if (coding.equals(IDENTITY)) continue;
+            double quality = qualities.getOrDefault(coding, qualities.getOrDefault("*", 0.0));
+            if (quality > bestQuality) {
+                best = coding;
+                bestQuality = quality;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Whether an <code>If-None-Match</code> header matches an ETag (weak comparison, as required for it).
+     */
+    static boolean notModified(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String tag : ifNoneMatch.split(",")) {
+            String value = tag.trim();
+            if (value.equals("*")) return true;
+            if (value.startsWith("W/")) value = value.substring(2);
+            if (value.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    static String contentType(String fileName) {
+        String extension = fileName.substring(fileName.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        String type = switch (extension) {
+            case "html", "htm" -> "text/html";
+            case "css" -> "text/css";
+            case "js", "mjs" -> "text/javascript";
+            case "json", "map" -> "application/json";
+            case "webmanifest" -> "application/manifest+json";
+            case "svg" -> "image/svg+xml";
+            case "xml" -> "application/xml";
+            case "txt" -> "text/plain";
+            case "webp" -> "image/webp";
+            case "avif" -> "image/avif";
+            case "woff2" -> "font/woff2";
+            case "ico" -> "image/x-icon";
+            default -> URLConnection.guessContentTypeFromName(fileName);
+        };
+        if (type == null) return "application/octet-stream";
+        return type.startsWith("text/") || type.endsWith("json") || type.endsWith("xml") ? type + "; charset=utf-8" : type;
+    }
+}
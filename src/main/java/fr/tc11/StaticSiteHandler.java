@@ -0,0 +1,92 @@
+package fr.tc11;
+
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+
+import java.nio.file.Path;
+
+/**
+ * Vert.x handler sending the files of the generated site as {@link StaticFiles} describes them:
+ * pre-compressed variant chosen from <code>Accept-Encoding</code>, strong ETag (<code>304</code> for a
+ * matching <code>If-None-Match</code>), <code>Cache-Control</code>, and the file sent with
+ * {@link HttpServerResponse#sendFile(String)}, which uses <code>sendfile</code> (no copy through the JVM)
+ * on plain HTTP/1.1 connections.
+ *
+ * Paths that are not files of the site go to the next handler. Only the first check of a file runs on a
+ * worker thread (it hashes the file); later requests are answered from memory on the event loop.
+ */
+final class StaticSiteHandler implements Handler<RoutingContext> {
+
+    private final StaticFiles files;
+
+    StaticSiteHandler(StaticFiles files) {
+        this.files = files;
+    }
+
+    @Override
+    public void handle(RoutingContext ctx) {
+        HttpMethod method = ctx.request().method();
+        if (method != HttpMethod.GET && method != HttpMethod.HEAD) {
+            ctx.next();
+            return;
+        }
+        Path path = files.resolve(ctx.normalizedPath());
+        if (path == null) {
+            ctx.next();
+            return;
+        }
+        StaticFiles.Entry cached = files.cached(path);
+        if (cached != null) {
+            respond(ctx, cached);
+            return;
+        }
+        ctx.vertx().executeBlocking(() -> files.lookup(path), false).onComplete(result -> {
+            if (result.failed()) {
+                ctx.fail(result.cause());
+            } else if (result.result() == null) {
+                ctx.next();
+            } else {
+                respond(ctx, result.result());
+            }
+        });
+    }
+
+    private static void respond(RoutingContext ctx, StaticFiles.Entry entry) {
+        HttpServerRequest request = ctx.request();
+        HttpServerResponse response = ctx.response();
+        if (entry instanceof StaticFiles.Folder) {
+            String query = request.query();
+            response.setStatusCode(301)
+                    .putHeader(HttpHeaders.LOCATION, ctx.normalizedPath() + "/" + (query == null ? "" : "?" + query))
+                    .end();
+            return;
+        }
+        StaticFiles.Resource resource = (StaticFiles.Resource) entry;
+        StaticFiles.Variant variant = resource.select(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        MultiMap headers = response.headers();
+        headers.set(HttpHeaders.ETAG, variant.etag());
+        headers.set(HttpHeaders.CACHE_CONTROL, resource.cacheControl());
+        if (resource.variants().size() > 1) {
+            headers.set(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (StaticFiles.notModified(request.getHeader(HttpHeaders.IF_NONE_MATCH), variant.etag())) {
+            response.setStatusCode(304).end();
+            return;
+        }
+        headers.set(HttpHeaders.CONTENT_TYPE, resource.contentType());
+        if (!variant.encoding().equals(StaticFiles.IDENTITY)) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, variant.encoding());
+        }
+        if (request.method() == HttpMethod.HEAD) {
+            headers.set(HttpHeaders.CONTENT_LENGTH, String.valueOf(variant.length()));
+            response.end();
+            return;
+        }
+        response.sendFile(variant.file().toString());
+    }
+}
@@ -0,0 +1,54 @@
+package fr.tc11;
+
+import io.vertx.ext.web.Router;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Singleton;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Optional static-serving mode: with <code>tc11.serve.enabled=true</code>, the application serves the
+ * generated site (<code>tc11.serve.dir</code>, <code>target/roq</code>) itself, with the pre-compressed
+ * files of the "compress" stage, for self-hosting and preview environments ({@link StaticSiteHandler}).
+ *
+ * Requests for files of the folder are answered before the pages Roq renders; other paths are left to
+ * Roq. Keep it disabled while generating the site, which reads the pages Roq renders.
+ */
+@Singleton
+public class StaticSiteRoute {
+
+    private static final Logger LOG = Logger.getLogger(StaticSiteRoute.class);
+
+    // After the handlers of Quarkus itself (negative orders close to Integer.MIN_VALUE), before the routes of Roq
+    private static final int ORDER = -100;
+
+    @ConfigProperty(name = "tc11.serve.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @ConfigProperty(name = "tc11.serve.dir", defaultValue = "target/roq")
+    String dir;
+
+    @ConfigProperty(name = "tc11.serve.cache-headers", defaultValue = "derived/assets/cache-headers.json")
+    String cacheHeaders;
+
+    @ConfigProperty(name = "tc11.serve.cache-control", defaultValue = "public, max-age=0, must-revalidate")
+    String cacheControl;
+
+    @ConfigProperty(name = "tc11.serve.recheck-millis", defaultValue = "2000")
+    long recheckMillis;
+
+    void register(@Observes Router router) {
+        if (!enabled) return;
+        Path root = Path.of(dir).toAbsolutePath().normalize();
+        if (!Files.isDirectory(root)) {
+            LOG.warnf("Static serving enabled but %s does not exist: generate the site first", root);
+        }
+        StaticFiles files = new StaticFiles(root, AssetFingerprintStage.readCacheRules(root.resolve(cacheHeaders)), cacheControl, recheckMillis);
+        router.route().order(ORDER).handler(new StaticSiteHandler(files));
+        LOG.infof("Serving %s with its pre-compressed files (tc11.serve.enabled)", root);
+    }
+}
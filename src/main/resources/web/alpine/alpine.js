@@ -0,0 +1,7 @@
+// Bundle "alpine" : pages avec un composant Alpine (x-data), voir PageFeaturesStage.
+// Les composants (actusData, actusSearch...) sont définis par les scripts classiques de la page,
+// exécutés avant ce module : Alpine peut démarrer
+import Alpine from 'alpinejs';
+
+window.Alpine = Alpine;
+Alpine.start();
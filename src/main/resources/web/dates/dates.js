@@ -0,0 +1,9 @@
+// Bundle "dates" : pages avec une date de mise à jour (#maj-date), voir PageFeaturesStage.
+import dayjs from 'dayjs';
+import 'dayjs/locale/fr';
+
+dayjs.locale('fr');
+window.dayjs = dayjs;
+
+if (document.getElementById('maj-date'))
+  document.getElementById('maj-date').textContent = dayjs().format('DD MMM YYYY');
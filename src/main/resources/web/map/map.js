@@ -1,5 +1,16 @@
-// Leaflet - Carte des installations TC11
-if(typeof L !== 'undefined' && document.getElementById('map')) {
+// Leaflet - Carte des installations TC11 (bundle "map" : pages avec un #map, voir PageFeaturesStage)
+import L from 'leaflet';
+import 'leaflet/dist/leaflet.css';
+import iconUrl from 'leaflet/dist/images/marker-icon.png';
+import iconRetinaUrl from 'leaflet/dist/images/marker-icon-2x.png';
+import shadowUrl from 'leaflet/dist/images/marker-shadow.png';
+
+// Les images des marqueurs ont un nom avec empreinte une fois bundlées : Leaflet ne peut plus
+// déduire leur chemin de leaflet.css
+delete L.Icon.Default.prototype._getIconUrl;
+L.Icon.Default.mergeOptions({ iconUrl, iconRetinaUrl, shadowUrl });
+
+if(document.getElementById('map')) {
   // Charger les installations depuis le fichier JSON
   fetch('/installations.json')
     .then(res => res.json())
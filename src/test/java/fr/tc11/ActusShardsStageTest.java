@@ -0,0 +1,94 @@
+package fr.tc11;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the "actus-shards" build stage, on a synthetic actus.json (no Quarkus needed).
+ */
+class ActusShardsStageTest {
+
+    private final ActusShardsStage stage = new ActusShardsStage();
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void testActusAreCutIntoPagesInOrder(@TempDir Path site) throws Exception {
+        actus(site, 7);
+
+        ActusShardsStage.Manifest manifest = stage.generate(site, 3);
+
+        assertEquals(new ActusShardsStage.Manifest(3, 7, List.of("/actus-1.json", "/actus-2.json", "/actus-3.json")), manifest);
+        assertEquals(manifest, ActusShardsStage.readManifest(site.resolve(ActusShardsStage.MANIFEST)));
+        assertEquals(List.of("Actu 0", "Actu 1", "Actu 2"), titles(site.resolve("actus-1.json")));
+        assertEquals(List.of("Actu 3", "Actu 4", "Actu 5"), titles(site.resolve("actus-2.json")));
+        assertEquals(List.of("Actu 6"), titles(site.resolve("actus-3.json")));
+        JsonNode first = mapper.readTree(site.resolve("actus-1.json").toFile()).get(0);
+        assertEquals("https://tc11.fr/posts/actu-0/", first.get("lien").asText(), "Entries are copied as written by Roq");
+    }
+
+    @Test
+    void testPagesOfAPreviousRunWithMorePostsAreRemoved(@TempDir Path site) throws Exception {
+        actus(site, 7);
+        stage.generate(site, 3);
+        Files.writeString(site.resolve("actus-other.json"), "[]");
+        actus(site, 2);
+
+        ActusShardsStage.Manifest manifest = stage.generate(site, 3);
+
+        assertEquals(List.of("/actus-1.json"), manifest.pages());
+        assertTrue(Files.exists(site.resolve("actus-1.json")));
+        assertFalse(Files.exists(site.resolve("actus-2.json")));
+        assertFalse(Files.exists(site.resolve("actus-3.json")));
+        assertTrue(Files.exists(site.resolve("actus-other.json")), "Only actus-N.json pages are removed");
+        assertTrue(Files.exists(site.resolve(ActusShardsStage.SOURCE)));
+    }
+
+    @Test
+    void testNoActusGivesNoPage(@TempDir Path site) throws Exception {
+        Files.writeString(site.resolve(ActusShardsStage.SOURCE), "[\n]\n");
+
+        ActusShardsStage.Manifest manifest = stage.generate(site, 3);
+
+        assertEquals(0, manifest.total());
+        assertTrue(manifest.pages().isEmpty());
+    }
+
+    @Test
+    void testSiteMustBeGeneratedFirst(@TempDir Path site) {
+        assertThrows(NoSuchFileException.class, () -> stage.generate(site, 3));
+        assertThrows(IllegalArgumentException.class, () -> stage.generate(site, 0));
+    }
+
+    private void actus(Path site, int count) throws Exception {
+        StringBuilder json = new StringBuilder("[\n");
+        for (int i = 0; i < count; i++) {
+            json.append("""
+                        {
+                          "categorie": "Club",
+                          "titre": "Actu %d",
+                          "lien": "https://tc11.fr/posts/actu-%d/",
+                          "resume": "Résumé",
+                          "date": "2026-01-01",
+                          "lienTexte": "Voir le détail →"
+                        }""".formatted(i, i));
+            json.append(i < count - 1 ? ",\n" : "\n");
+        }
+        Files.writeString(site.resolve(ActusShardsStage.SOURCE), json.append("]\n"));
+    }
+
+    private List<String> titles(Path page) throws Exception {
+        return mapper.readTree(page.toFile()).findValuesAsText("titre");
+    }
+}
@@ -0,0 +1,102 @@
+package fr.tc11;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the "assets" build stage on a temporary public folder (no Quarkus needed).
+ */
+class AssetFingerprintStageTest {
+
+    private static final List<String> PATHS = List.of("style.css", "map.js", "assets");
+    private static final List<String> EXCLUDED = List.of("assets/instagram");
+
+    private final AssetFingerprintStage stage = new AssetFingerprintStage();
+
+    @Test
+    void testFingerprintedName() {
+        assertEquals("style.0123456789abcdef.css", AssetFingerprintStage.fingerprintedName("style.css", "0123456789abcdef"));
+        assertEquals("assets/tc11-logo.0123456789abcdef.png",
+                AssetFingerprintStage.fingerprintedName("assets/tc11-logo.png", "0123456789abcdef"));
+        assertEquals("assets/v1.0/LICENSE.0123456789abcdef", AssetFingerprintStage.fingerprintedName("assets/v1.0/LICENSE", "0123456789abcdef"));
+        assertEquals("assets/.nojekyll.0123456789abcdef", AssetFingerprintStage.fingerprintedName("assets/.nojekyll", "0123456789abcdef"));
+    }
+
+    @Test
+    void testListedFilesAreCopiedUnderTheirContentHash(@TempDir Path dir) throws Exception {
+        Path publicDir = publicDir(dir);
+        Path output = dir.resolve("derived/assets");
+
+        Map<String, String> manifest = stage.generate(publicDir, PATHS, EXCLUDED, output, "/derived/assets");
+
+        assertEquals(List.of("/assets/installations/candie.jpg", "/assets/tc11-logo.png", "/map.js", "/style.css"),
+                List.copyOf(manifest.keySet()), "Listed files and folders, without the excluded ones");
+        String style = manifest.get("/style.css");
+        assertTrue(style.matches("/derived/assets/style\\.[0-9a-f]{16}\\.css"), style);
+        assertEquals("body{}", Files.readString(output.resolve(style.substring("/derived/assets/".length()))));
+        assertTrue(manifest.get("/assets/installations/candie.jpg").startsWith("/derived/assets/assets/installations/candie."));
+        assertEquals(manifest, AssetFingerprintStage.readManifest(output.resolve(AssetFingerprintStage.MANIFEST)));
+    }
+
+    @Test
+    void testChangedFileGetsANewUrlAndTheOldCopyIsRemoved(@TempDir Path dir) throws Exception {
+        Path publicDir = publicDir(dir);
+        Path output = dir.resolve("derived/assets");
+        Map<String, String> first = stage.generate(publicDir, PATHS, EXCLUDED, output, "/derived/assets");
+
+        Files.writeString(publicDir.resolve("style.css"), "body{color:red}");
+        Map<String, String> second = stage.generate(publicDir, PATHS, EXCLUDED, output, "/derived/assets");
+
+        assertNotEquals(first.get("/style.css"), second.get("/style.css"));
+        assertEquals(first.get("/map.js"), second.get("/map.js"), "Unchanged files keep their URL");
+        assertFalse(Files.exists(output.resolve(first.get("/style.css").substring("/derived/assets/".length()))));
+        try (var files = Files.walk(output)) {
+            assertEquals(second.size() + 1, files.filter(Files::isRegularFile).count(), "Copies plus the manifest");
+        }
+    }
+
+    @Test
+    void testMissingManifestIsEmpty(@TempDir Path dir) {
+        assertEquals(Map.of(), AssetFingerprintStage.readManifest(dir.resolve(AssetFingerprintStage.MANIFEST)));
+    }
+
+    @Test
+    void testCacheHeaders(@TempDir Path dir) throws Exception {
+        List<AssetFingerprintStage.CacheRule> rules = AssetFingerprintStage.cacheRules(List.of("/derived/*", "/assets/instagram/*.jpg"));
+        Path json = dir.resolve("derived/assets").resolve(AssetFingerprintStage.CACHE_HEADERS);
+        Path headers = dir.resolve("_headers");
+
+        AssetFingerprintStage.writeCacheHeaders(json, headers, rules);
+
+        assertEquals(rules, AssetFingerprintStage.readCacheRules(json));
+        String text = Files.readString(headers);
+        assertTrue(text.contains("/derived/*\n  Cache-Control: public, max-age=31536000, immutable\n"), text);
+        assertTrue(text.contains("/assets/instagram/*.jpg\n  Cache-Control: public, max-age=31536000, immutable\n"), text);
+        assertTrue(rules.get(1).matches("/assets/instagram/0123456789abcdef.jpg"));
+        assertFalse(rules.get(1).matches("/assets/instagram/thumbnails.json"), "The index keeps its URL");
+        assertFalse(rules.get(0).matches("/derived"));
+    }
+
+    private static Path publicDir(Path dir) throws Exception {
+        Path publicDir = dir.resolve("public");
+        Files.createDirectories(publicDir.resolve("assets/installations"));
+        Files.createDirectories(publicDir.resolve("assets/instagram"));
+        Files.writeString(publicDir.resolve("style.css"), "body{}");
+        Files.writeString(publicDir.resolve("map.js"), "// map");
+        Files.writeString(publicDir.resolve("reactions.js"), "// not listed");
+        Files.write(publicDir.resolve("assets/tc11-logo.png"), new byte[]{1, 2, 3});
+        Files.write(publicDir.resolve("assets/installations/candie.jpg"), new byte[]{4, 5, 6});
+        Files.write(publicDir.resolve("assets/instagram/ABC.jpg"), new byte[]{7, 8, 9});
+        return publicDir;
+    }
+}
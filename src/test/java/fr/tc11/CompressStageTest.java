@@ -0,0 +1,95 @@
+package fr.tc11;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the "compress" build stage, on a synthetic generated site (no Quarkus needed).
+ */
+class CompressStageTest {
+
+    private static final List<String> EXTENSIONS = List.of("html", "css", "json");
+    private static final List<String> FORMATS = List.of("br", "gzip");
+
+    private final CompressStage stage = new CompressStage();
+
+    @Test
+    void testCompressibleFilesGetUpToDateSiblings(@TempDir Path dir) throws Exception {
+        Path site = site(dir);
+        int formats = CompressStage.brotliAvailable() ? 2 : 1;
+
+        CompressStage.Summary first = stage.generate(site, EXTENSIONS, FORMATS, 512, 2);
+
+        assertEquals(2, first.files(), "Small and non-listed files are left out");
+        assertEquals(2 * formats, first.written());
+        assertTrue(first.after() < first.before() / 4, first.toString());
+        Path page = site.resolve("posts/fete/index.html");
+        Path gzip = site.resolve("posts/fete/index.html.gz");
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(gzip))) {
+            assertEquals(Files.readString(page), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        assertEquals(Files.getLastModifiedTime(page), Files.getLastModifiedTime(gzip));
+        assertEquals(CompressStage.brotliAvailable(), Files.exists(site.resolve("posts/fete/index.html.br")));
+        assertFalse(Files.exists(site.resolve("small.css.gz")) || Files.exists(site.resolve("photo.png.gz")));
+
+        assertEquals(new CompressStage.Summary(2, 0, 2 * formats, 0, first.before(), first.after()),
+                stage.generate(site, EXTENSIONS, FORMATS, 512, 2), "Up-to-date siblings are not written again");
+
+        Files.writeString(page, page("Fête du club, nouvelle version"));
+        Files.setLastModifiedTime(page, FileTime.fromMillis(Files.getLastModifiedTime(page).toMillis() + 2000));
+        assertEquals(formats, stage.generate(site, EXTENSIONS, FORMATS, 512, 2).written());
+    }
+
+    @Test
+    void testSiblingsOfRemovedFilesAreDeleted(@TempDir Path dir) throws Exception {
+        Path site = site(dir);
+        Files.write(site.resolve("archive.tar.gz"), new byte[]{31, -117, 8, 0});
+        stage.generate(site, EXTENSIONS, FORMATS, 512, 1);
+        Files.delete(site.resolve("actus.json"));
+
+        CompressStage.Summary summary = stage.generate(site, EXTENSIONS, FORMATS, 512, 1);
+
+        assertEquals(CompressStage.brotliAvailable() ? 2 : 1, summary.removed());
+        assertFalse(Files.exists(site.resolve("actus.json.gz")));
+        assertTrue(Files.exists(site.resolve("archive.tar.gz")), "Not the sibling of a compressible file");
+    }
+
+    @Test
+    void testUnknownFormatIsRejected(@TempDir Path dir) throws Exception {
+        assertThrows(IllegalArgumentException.class, () -> stage.generate(site(dir), EXTENSIONS, List.of("zstd"), 512, 1));
+    }
+
+    @Test
+    void testSiteMustBeGeneratedFirst(@TempDir Path dir) {
+        assertThrows(NoSuchFileException.class, () -> stage.generate(dir.resolve("roq"), EXTENSIONS, FORMATS, 512, 1));
+    }
+
+    private static Path site(Path dir) throws Exception {
+        Path site = dir.resolve("roq");
+        Files.createDirectories(site.resolve("posts/fete"));
+        Files.writeString(site.resolve("posts/fete/index.html"), page("Fête du club"));
+        Files.writeString(site.resolve("actus.json"), "[" + "{\"title\":\"Actu\",\"summary\":\"Résumé de l'actu\"},".repeat(50) + "{}]");
+        Files.writeString(site.resolve("small.css"), "a{color:red}");
+        Files.write(site.resolve("photo.png"), new byte[4096]);
+        return site;
+    }
+
+    private static String page(String title) {
+        return "<!DOCTYPE html><html lang=\"fr\"><head><title>" + title + "</title></head><body>"
+                + "<p class=\"text-sm\">Le tournoi du club a lieu ce week-end.</p>".repeat(40) + "</body></html>";
+    }
+}
@@ -0,0 +1,149 @@
+package fr.tc11;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the "critical-css" build stage, on synthetic generated pages (no Quarkus, no browser).
+ */
+class CriticalCssStageTest {
+
+    private static final String CSS = """
+            /* Palette */
+            :root { --tc-orange: #e15a0b; }
+            @font-face { font-family: "Inter"; src: url(/inter.woff2); }
+            @keyframes spin { to { transform: rotate(360deg); } }
+            body { margin: 0 }
+            .hero, .unused-a { color: var(--tc-orange); }
+            .btn:hover { color: red; }
+            .md\\:flex { display: none; }
+            @media (min-width: 768px) { .md\\:flex { display: flex; } .footer-only { color: blue; } }
+            @media print { .hero { color: black; } }
+            .content > p:first-child::first-letter { font-size: 2em; }
+            .footer-only { color: blue; }
+            [x-cloak] { display: none !important; }
+            a[href^="http"] { text-decoration: underline; }
+            :where(.prose) li { margin: 0; }
+            """;
+
+    private final CriticalCssStage stage = new CriticalCssStage();
+
+    @Test
+    void testStylesheetIsParsedIntoRulesAndGroups() {
+        List<CssRules.Node> rules = CssRules.parse("""
+                @layer theme, base;
+                a { color: "}" ; } /* { */
+                @media (min-width: 1px) { b { c: d } @supports (x: y) { e { f: g } } }
+                @font-face { font-family: x }
+                """);
+
+        assertEquals(4, rules.size());
+        assertEquals(new CssRules.AtRule("layer", "@layer theme, base;"), rules.get(0));
+        assertEquals(new CssRules.Rule("a", "color: \"}\" ;"), rules.get(1));
+        assertEquals("@media (min-width: 1px){b{c: d}@supports (x: y){e{f: g}}}", CssRules.write(List.of(rules.get(2))));
+        assertEquals(List.of(".a", ":is(.b, .c) > d", "[data-x=\",\"]"), CssRules.selectors(".a, :is(.b, .c) > d,[data-x=\",\"]"));
+    }
+
+    @Test
+    void testSelectorsAreReducedToWhatJsoupMatches() {
+        assertEquals(".md_3a_flex", CriticalCssStage.matchable(".md\\:flex"));
+        assertEquals(".w-1_2f_2 > *", CriticalCssStage.matchable(".w-1\\/2 > :hover"));
+        assertEquals(".btn", CriticalCssStage.matchable(".btn:hover::after"));
+        assertEquals("ul li:first-child ~ li:nth-child(2n+1)", CriticalCssStage.matchable("UL li:first-child ~ li:nth-child(2n + 1)"));
+        assertEquals("a[href]", CriticalCssStage.matchable("a[href^=\"http\"]"));
+        assertEquals("[type=\"button\"]", CriticalCssStage.matchable("[type=\"button\" i]"));
+        assertEquals("* li", CriticalCssStage.matchable(":where(.prose) li"));
+        assertEquals("*", CriticalCssStage.matchable("::selection"));
+        assertNull(CriticalCssStage.matchable("& > p"));
+        assertEquals("md:flex", CriticalCssStage.unescape("md\\:flex"));
+        assertEquals("10", CriticalCssStage.unescape("\\31 0"));
+    }
+
+    @Test
+    void testCriticalCssHoldsTheRulesOfTheFold() throws Exception {
+        Document page = Jsoup.parse(page("Titre", "<div class=\"md:flex\" x-cloak>Menu</div>"));
+
+        Document skeleton = CriticalCssStage.skeleton(page, 8);
+        String css = stage.critical(skeleton, List.of(stylesheet(Files.createTempFile("critical", ".css"))));
+
+        assertTrue(css.contains(":root{--tc-orange: #e15a0b;}"), css);
+        assertTrue(css.contains("@font-face"));
+        assertTrue(css.contains("body{margin: 0}"));
+        assertTrue(css.contains(".hero, .unused-a{"), "Selector lists are kept whole");
+        assertTrue(css.contains(".btn:hover{color: red;}"), "State pseudo-classes count as matching");
+        assertTrue(css.contains("@media (min-width: 768px){.md\\:flex{display: flex;}}"), css);
+        assertTrue(css.contains("[x-cloak]"));
+        assertTrue(css.contains("a[href^=\"http\"]"));
+        assertTrue(css.contains(".content > p:first-child::first-letter"));
+        assertFalse(css.contains("footer-only"), "Below the fold");
+        assertFalse(css.contains("@keyframes") || css.contains("color: black"), css);
+    }
+
+    @Test
+    void testPagesGetInlinedCssAndAsyncStylesheets(@TempDir Path dir) throws Exception {
+        Path site = dir.resolve("roq");
+        Files.createDirectories(site.resolve("posts/a"));
+        Files.createDirectories(site.resolve("posts/b"));
+        Files.writeString(site.resolve("style.css"), CSS);
+        Files.writeString(site.resolve("posts/a/index.html"), page("Article A", ""));
+        Files.writeString(site.resolve("posts/b/index.html"), page("Article B, autre texte", ""));
+        Files.writeString(site.resolve("plain.html"), "<html><head><title>x</title></head><body></body></html>");
+        Path cache = dir.resolve("cache");
+
+        CriticalCssStage.Summary first = stage.generate(site, cache, 5, 2);
+
+        assertEquals(new CriticalCssStage.Summary(3, 2, 1, 1), first, "Both articles share their skeleton");
+        String html = Files.readString(site.resolve("posts/a/index.html"));
+        assertTrue(html.contains("<style data-critical>"));
+        assertTrue(html.contains("<link rel=\"stylesheet\" href=\"/style.css\" media=\"print\" onload=\"this.media='all';this.onload=null\">"
+                + "<noscript><link rel=\"stylesheet\" href=\"/style.css\" /></noscript>"), html);
+        assertTrue(html.contains("<link rel=\"icon\" href=\"/favicon.ico\" />"), "Other links are left as they are");
+        assertTrue(html.indexOf("<style data-critical>") < html.indexOf("href=\"/style.css\""));
+
+        Files.writeString(site.resolve("posts/a/index.html"), page("Article A", ""));
+        CriticalCssStage.Summary second = new CriticalCssStage().generate(site, cache, 5, 2);
+        assertEquals(new CriticalCssStage.Summary(3, 1, 0, 1), second, "Processed pages are skipped, the cache is reused");
+    }
+
+    @Test
+    void testSiteMustBeGeneratedFirst(@TempDir Path dir) {
+        assertThrows(NoSuchFileException.class, () -> stage.generate(dir.resolve("roq"), dir.resolve("cache"), 150, 1));
+    }
+
+    private static String page(String title, String menu) {
+        return """
+                <!DOCTYPE html>
+                <html lang="fr">
+                <head>
+                  <link rel="icon" href="/favicon.ico" />
+                  <link rel="stylesheet" href="/style.css" />
+                </head>
+                <body>
+                  <header><button class="btn">%s</button></header>
+                  <section class="hero"><h1>%s</h1></section>
+                  <a href="https://tc11.fr">TC11</a>
+                  <div class="content"><p>Texte</p></div>
+                  <footer class="footer-only">Pied</footer>
+                </body>
+                </html>
+                """.formatted(menu.isEmpty() ? "Menu" : menu, title);
+    }
+
+    private static CriticalCssStage.Stylesheet stylesheet(Path file) throws Exception {
+        Files.writeString(file, CSS);
+        return new CriticalCssStage.Stylesheet("<link rel=\"stylesheet\" href=\"/style.css\" />", "/style.css", file);
+    }
+}
@@ -0,0 +1,136 @@
+package fr.tc11;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the {@code files:} template helpers on Roq-like pages (no Quarkus needed): the one-pass
+ * classification of a page's files and its memoisation per page.
+ */
+class FilesViewHelpersTest {
+
+    @Test
+    void testFilesAreClassifiedInOrder() {
+        Page page = new Page(List.of("IMG_0001.JPG", "reglement-interieur.pdf", "notes.md", "plan.svg?v=2",
+                "resultats.xlsx#feuille", "sans-extension"), new Asset("/posts/tournoi/photo.webp"));
+
+        assertEquals(List.of("IMG_0001.JPG", "plan.svg?v=2", "/posts/tournoi/photo.webp"), FilesViewHelpers.images(page));
+        assertEquals(List.of("reglement-interieur.pdf", "resultats.xlsx#feuille"), FilesViewHelpers.attachments(page));
+        assertEquals("IMG_0001.JPG", FilesViewHelpers.firstImage(page));
+        assertTrue(FilesViewHelpers.hasImages(page));
+        assertEquals(3, FilesViewHelpers.imagesCount(page));
+        assertTrue(FilesViewHelpers.hasAttachments(page));
+        assertEquals(2, FilesViewHelpers.attachmentsCount(page));
+    }
+
+    @Test
+    void testClassificationIsMemoisedPerPage() {
+        List<String> files = new ArrayList<>(List.of("a.jpg", "b.pdf"));
+        Page page = new Page(files);
+
+        List<String> images = FilesViewHelpers.images(page);
+        files.add("c.png");
+
+        assertSame(images, FilesViewHelpers.images(page), "Classified once per page object");
+        assertEquals(List.of("a.jpg"), FilesViewHelpers.images(page));
+        Page sameFiles = new Page(files);
+        assertNotSame(images, FilesViewHelpers.images(sameFiles), "Pages are compared by identity");
+        assertEquals(List.of("a.jpg", "c.png"), FilesViewHelpers.images(sameFiles));
+    }
+
+    @Test
+    void testPagesWithoutFiles() {
+        assertEquals(List.of(), FilesViewHelpers.images(null));
+        assertNull(FilesViewHelpers.firstImage(null));
+        assertEquals(List.of(), FilesViewHelpers.attachments(new Object()), "No files()/assets() accessor");
+        assertFalse(FilesViewHelpers.hasImages(new Page(List.of("notes.md"))));
+        assertEquals(0, FilesViewHelpers.attachmentsCount(new Page(List.of())));
+    }
+
+    @Test
+    void testHeroImage() {
+        Page withCover = new Page(List.of("a.jpg"));
+        withCover.data.put("cover", "affiche.jpg");
+
+        assertEquals("affiche.jpg", FilesViewHelpers.heroImage(withCover));
+        assertEquals("a.jpg", FilesViewHelpers.heroImage(new Page(List.of("notes.pdf", "a.jpg"))));
+        assertEquals("/assets/hero-banner.jpg", FilesViewHelpers.heroImage(new Page(List.of("notes.pdf"))));
+    }
+
+    @Test
+    void testDisplayName() {
+        assertEquals("Affiche stage été", FilesViewHelpers.displayName("Affiche%20stage%20%C3%A9t%C3%A9.png"));
+        assertEquals("reglement interieur 2026", FilesViewHelpers.displayName("/posts/ag/reglement-interieur_2026.pdf?dl=1"));
+        assertEquals(".htaccess", FilesViewHelpers.displayName(".htaccess"));
+        assertEquals("", FilesViewHelpers.displayName(null));
+        assertEquals("", FilesViewHelpers.displayName(" "));
+    }
+
+    @Test
+    void testAccessorFailures() {
+        assertEquals(List.of(), FilesViewHelpers.images(new FailingPage(new IllegalStateException("Roq"))),
+                "An exception of the page gives no files");
+        assertThrows(StackOverflowError.class, () -> FilesViewHelpers.images(new FailingPage(new StackOverflowError())),
+                "Errors are not hidden");
+    }
+
+    /** Shape of a Roq page as seen by the helpers: files(), assets() and data().get(key). */
+    public static final class Page {
+        private final List<String> files;
+        private final List<Asset> assets;
+        private final Map<String, Object> data = new HashMap<>();
+
+        Page(List<String> files, Asset... assets) {
+            this.files = files;
+            this.assets = List.of(assets);
+        }
+
+        public List<String> files() {
+            return files;
+        }
+
+        public List<Asset> assets() {
+            return assets;
+        }
+
+        public Map<String, Object> data() {
+            return data;
+        }
+    }
+
+    public static final class Asset {
+        private final String url;
+
+        Asset(String url) {
+            this.url = url;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+    }
+
+    public static final class FailingPage {
+        private final Throwable failure;
+
+        FailingPage(Throwable failure) {
+            this.failure = failure;
+        }
+
+        public List<String> files() throws Throwable {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package fr.tc11;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the local icon sets read by {icon:svg(...)} (no Quarkus needed).
+ */
+class IconSetTest {
+
+    private static final Pattern ICON = Pattern.compile("\\{icon:svg\\('([a-z0-9-]+):([a-z0-9-]+)'\\)}");
+
+    @Test
+    void testIconMarkup() throws Exception {
+        IconSet set = IconSet.read(json("""
+                {"prefix": "test", "width": 24, "height": 24, "icons": {
+                  "dot": {"body": "<circle cx=\\"12\\" cy=\\"12\\" r=\\"4\\"/>"},
+                  "wide": {"body": "<path d=\\"M0 0h36v24z\\"/>", "width": 36}
+                }}
+                """));
+
+        IconSet.Icon dot = set.get("dot");
+        assertEquals("<svg class=\"icon\" width=\"1em\" height=\"1em\" viewBox=\"0 0 24 24\" aria-hidden=\"true\">"
+                + "<circle cx=\"12\" cy=\"12\" r=\"4\"/></svg>", IconSet.svg(dot));
+        assertTrue(IconSet.svg(set.get("wide")).contains("width=\"1.5em\" height=\"1em\" viewBox=\"0 0 36 24\""));
+    }
+
+    @Test
+    void testIconsOfTheTemplatesAreInTheLocalSets() throws Exception {
+        TreeSet<String> missing = new TreeSet<>();
+        int used = 0;
+        for (Path file : templates()) {
+            Matcher matcher = ICON.matcher(Files.readString(file));
+            while (matcher.find()) {
+                used++;
+                IconSet set = IconSet.load(matcher.group(1));
+                if (set == null || set.get(matcher.group(2)) == null) {
+                    missing.add(matcher.group() + " in " + file);
+                }
+            }
+        }
+        assertTrue(used > 0, "Templates use {icon:svg(...)}");
+        assertEquals(new TreeSet<String>(), missing, "Add the missing icons to src/main/resources/icons/");
+    }
+
+    @Test
+    void testLocalSetIsOnTheClasspath() throws Exception {
+        IconSet mdi = IconSet.load("mdi");
+        assertNotNull(mdi);
+        assertEquals("mdi", mdi.prefix());
+        assertTrue(mdi.get("facebook").body().startsWith("<path fill=\"currentColor\""));
+    }
+
+    private static List<Path> templates() throws Exception {
+        try (Stream<Path> templates = Files.walk(Path.of("templates")); Stream<Path> content = Files.walk(Path.of("content"))) {
+            return Stream.concat(templates, content)
+                    .filter(file -> file.toString().matches(".*\\.(html|md|json)"))
+                    .toList();
+        }
+    }
+
+    private static InputStream json(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,196 @@
+package fr.tc11;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the "images" build stage, on synthetic images (no Quarkus needed).
+ */
+class ImageDerivativesStageTest {
+
+    private static final List<Integer> WIDTHS = List.of(320, 800, 1600);
+
+    private final ImageDerivativesStage stage = new ImageDerivativesStage();
+
+    @Test
+    void testGeneratesVariantsNarrowerThanOriginal(@TempDir Path dir) throws Exception {
+        Path content = dir.resolve("content");
+        Path output = dir.resolve("derived");
+        writeImage(content.resolve("posts/2026-04-02-week-end/Photo 1.jpg"), 1000, 500, false, "jpg");
+
+        ImageManifest manifest = stage.generate(content, output, "/derived/images", WIDTHS, 0.8f, 2);
+
+        ImageManifest.Entry entry = manifest.get("posts/2026-04-02-week-end/Photo 1.jpg");
+        assertNotNull(entry);
+        assertEquals(1000, entry.width());
+        assertEquals(500, entry.height());
+        assertEquals(2, entry.variants().size(), "No variant as wide as or wider than the original");
+        assertEquals(320, entry.smallest().width());
+        assertEquals(160, entry.smallest().height());
+        assertEquals("/derived/images/" + entry.hash() + "-320.jpg", entry.smallest().url());
+
+        BufferedImage thumbnail = ImageIO.read(output.resolve(entry.hash() + "-320.jpg").toFile());
+        assertEquals(320, thumbnail.getWidth());
+        assertEquals(entry, ImageManifest.read(output.resolve(ImageManifest.FILE_NAME)).get("posts/2026-04-02-week-end/Photo 1.jpg"));
+    }
+
+    @Test
+    void testPlaceholderAndDominantColor(@TempDir Path dir) throws Exception {
+        Path content = dir.resolve("content");
+        BufferedImage image = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(new Color(0x20, 0x60, 0xA0));
+        g.fillRect(0, 0, 800, 600);
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, 200, 600);
+        g.dispose();
+        Files.createDirectories(content);
+        ImageIO.write(image, "jpg", content.resolve("court.jpg").toFile());
+
+        ImageManifest.Entry entry = stage.generate(content, dir.resolve("derived"), "/d", WIDTHS, 0.9f, 1).get("court.jpg");
+
+        String placeholder = entry.placeholder();
+        assertTrue(placeholder.startsWith("data:image/"), placeholder);
+        assertTrue(placeholder.length() < 1200, "Placeholder must stay tiny: " + placeholder.length());
+        BufferedImage tiny = ImageIO.read(new ByteArrayInputStream(
+                Base64.getDecoder().decode(placeholder.substring(placeholder.indexOf(',') + 1))));
+        assertEquals(16, tiny.getWidth());
+        assertEquals(12, tiny.getHeight());
+
+        Color color = Color.decode(entry.color());
+        assertTrue(Math.abs(color.getRed() - 0x20) < 12 && Math.abs(color.getGreen() - 0x60) < 12
+                && Math.abs(color.getBlue() - 0xA0) < 12, entry.color());
+    }
+
+    @Test
+    void testTransparentImagesKeepPng(@TempDir Path dir) throws Exception {
+        Path content = dir.resolve("content");
+        writeImage(content.resolve("logo.png"), 900, 900, true, "png");
+
+        ImageManifest manifest = stage.generate(content, dir.resolve("derived"), "/d", WIDTHS, 0.8f, 1);
+
+        ImageManifest.Entry entry = manifest.get("logo.png");
+        assertTrue(entry.smallest().url().endsWith("-320.png"));
+        assertTrue(entry.upTo(1000).url().endsWith("-800.png"));
+    }
+
+    @Test
+    void testUnchangedImagesAreReusedAndOrphansRemoved(@TempDir Path dir) throws Exception {
+        Path content = dir.resolve("content");
+        Path output = dir.resolve("derived");
+        Path photo = content.resolve("a/photo.jpg");
+        writeImage(photo, 700, 400, false, "jpg");
+        writeImage(content.resolve("b/other.jpg"), 640, 480, false, "jpg");
+
+        ImageManifest first = stage.generate(content, output, "/d", WIDTHS, 0.8f, 2);
+        Path variant = output.resolve(first.get("a/photo.jpg").hash() + "-320.jpg");
+        Files.setLastModifiedTime(variant, FileTime.fromMillis(0));
+
+        ImageManifest second = stage.generate(content, output, "/d", WIDTHS, 0.8f, 2);
+        assertEquals(first.images(), second.images());
+        assertEquals(0, Files.getLastModifiedTime(variant).toMillis(), "Unchanged image must not be resized again");
+
+        Files.delete(photo);
+        ImageManifest third = stage.generate(content, output, "/d", WIDTHS, 0.8f, 2);
+        assertNull(third.get("a/photo.jpg"));
+        assertNotNull(third.get("b/other.jpg"));
+        assertFalse(Files.exists(variant), "Variants of removed images must be deleted");
+    }
+
+    @Test
+    void testIdenticalImagesAreProcessedOnce(@TempDir Path dir) throws Exception {
+        Path content = dir.resolve("content");
+        writeImage(content.resolve("a/photo.jpg"), 700, 400, false, "jpg");
+        Files.createDirectories(content.resolve("b"));
+        Files.copy(content.resolve("a/photo.jpg"), content.resolve("b/copy.jpg"));
+
+        ImageManifest manifest = stage.generate(content, dir.resolve("derived"), "/d", WIDTHS, 0.8f, 2);
+
+        assertEquals(manifest.get("a/photo.jpg"), manifest.get("b/copy.jpg"));
+        assertNull(manifest.findByName("missing.jpg"));
+        assertEquals(manifest.get("b/copy.jpg"), manifest.findByName("copy.jpg"));
+    }
+
+    @Test
+    void testExifOrientationIsApplied(@TempDir Path dir) throws Exception {
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        ImageIO.write(image(400, 200, false), "jpg", jpeg);
+
+        byte[] rotated = withExifOrientation(jpeg.toByteArray(), 6);
+        assertEquals(6, ImageProcessing.exifOrientation(rotated));
+
+        ImageProcessing.Decoded decoded = ImageProcessing.read(rotated, 100);
+        assertEquals(200, decoded.width());
+        assertEquals(400, decoded.height());
+        assertEquals(decoded.image().getWidth() * 2, decoded.image().getHeight());
+    }
+
+    @Test
+    void testUnreadableImagesAreSkipped(@TempDir Path dir) throws Exception {
+        Path content = dir.resolve("content");
+        Files.createDirectories(content);
+        Files.writeString(content.resolve("broken.jpg"), "not an image");
+        writeImage(content.resolve("ok.jpg"), 500, 500, false, "jpg");
+
+        ImageManifest manifest = stage.generate(content, dir.resolve("derived"), "/d", WIDTHS, 0.8f, 2);
+
+        assertNull(manifest.get("broken.jpg"));
+        assertNotNull(manifest.get("ok.jpg"));
+    }
+
+    private static void writeImage(Path file, int width, int height, boolean alpha, String format) throws IOException {
+        Files.createDirectories(file.getParent());
+        ImageIO.write(image(width, height, alpha), format, file.toFile());
+    }
+
+    private static BufferedImage image(int width, int height, boolean alpha) {
+        BufferedImage image = new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.ORANGE);
+        g.fillRect(0, 0, width / 2, height);
+        g.setColor(alpha ? new Color(0, 0, 255, 128) : Color.BLUE);
+        g.fillRect(width / 2, 0, width - width / 2, height);
+        g.dispose();
+        return image;
+    }
+
+    /** Inserts a minimal big-endian EXIF APP1 segment with one orientation tag after SOI. */
+    private static byte[] withExifOrientation(byte[] jpeg, int orientation) {
+        byte[] tiff = {
+                'M', 'M', 0, 42, 0, 0, 0, 8,             // header, IFD at offset 8
+                0, 1,                                    // one entry
+                0x01, 0x12, 0, 3, 0, 0, 0, 1, 0, (byte) orientation, 0, 0,
+                0, 0, 0, 0                               // no next IFD
+        };
+        int length = 2 + 6 + tiff.length;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(jpeg, 0, 2);
+        out.write(0xFF);
+        out.write(0xE1);
+        out.write(length >> 8);
+        out.write(length & 0xFF);
+        out.writeBytes(new byte[]{'E', 'x', 'i', 'f', 0, 0});
+        out.writeBytes(tiff);
+        out.write(jpeg, 2, jpeg.length - 2);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,95 @@
+package fr.tc11;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests of the header-only image size reader.
+ */
+class ImageDimensionsTest {
+
+    @Test
+    void testReadsJpegPngAndGifHeaders() throws IOException {
+        BufferedImage image = new BufferedImage(321, 123, BufferedImage.TYPE_INT_RGB);
+        for (String format : new String[]{"jpg", "png", "gif", "bmp"}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(image, format, out);
+            ImageDimensions expected = format.equals("bmp") ? null : new ImageDimensions(321, 123);
+            assertEquals(expected, read(out.toByteArray()), format);
+        }
+    }
+
+    @Test
+    void testJpegSizeFollowsExifOrientation() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(400, 300, BufferedImage.TYPE_INT_RGB), "jpg", out);
+        byte[] jpeg = out.toByteArray();
+        byte[] tiff = {
+                'I', 'I', 42, 0, 8, 0, 0, 0,
+                1, 0,
+                0x12, 0x01, 3, 0, 1, 0, 0, 0, 8, 0, 0, 0,
+                0, 0, 0, 0
+        };
+        int length = 2 + 6 + tiff.length;
+        ByteArrayOutputStream rotated = new ByteArrayOutputStream();
+        rotated.write(jpeg, 0, 2);
+        rotated.writeBytes(new byte[]{(byte) 0xFF, (byte) 0xE1, (byte) (length >> 8), (byte) length, 'E', 'x', 'i', 'f', 0, 0});
+        rotated.writeBytes(tiff);
+        rotated.write(jpeg, 2, jpeg.length - 2);
+
+        assertEquals(new ImageDimensions(300, 400), read(rotated.toByteArray()));
+    }
+
+    @Test
+    void testReadsWebpHeaders() throws IOException {
+        // Lossy: 14-bit sizes after the frame tag and start code
+        byte[] lossy = webp("VP8 ", new byte[]{0, 0, 0, (byte) 0x9D, 0x01, 0x2A, (byte) 0x80, 0x02, (byte) 0xE0, 0x01});
+        assertEquals(new ImageDimensions(640, 480), read(lossy));
+
+        // Lossless: signature then (width - 1) and (height - 1) on 14 bits each
+        int bits = 99 | (49 << 14);
+        byte[] lossless = webp("VP8L", new byte[]{0x2F, (byte) bits, (byte) (bits >> 8), (byte) (bits >> 16), (byte) (bits >> 24), 0, 0, 0, 0, 0});
+        assertEquals(new ImageDimensions(100, 50), read(lossless));
+
+        // Extended: flags then 24-bit (width - 1) and (height - 1)
+        byte[] extended = webp("VP8X", new byte[]{0x10, 0, 0, 0, (byte) 0xFF, 0x0F, 0, 0x37, 0x04, 0});
+        assertEquals(new ImageDimensions(4096, 1080), read(extended));
+    }
+
+    @Test
+    void testReadsSvgRootElement() throws IOException {
+        assertEquals(new ImageDimensions(24, 12), read(svg("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"24px\" height='12'>")));
+        assertEquals(new ImageDimensions(300, 150), read(svg("<?xml version=\"1.0\"?>\n<!-- logo -->\n<svg width=\"100%\" viewBox=\"0 0 300 150\">")));
+        assertEquals(new ImageDimensions(20, 10), read(svg("<svg viewBox=\"-5,-5,19.6,10.2\">")));
+        assertNull(read(svg("<svg width=\"100%\">")));
+        assertNull(read("not an image".getBytes(StandardCharsets.UTF_8)));
+        assertNull(read(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}));
+    }
+
+    private static ImageDimensions read(byte[] bytes) throws IOException {
+        return ImageDimensions.read(new ByteArrayInputStream(bytes));
+    }
+
+    private static byte[] svg(String root) {
+        return (root + "<rect/></svg>").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] webp(String chunk, byte[] payload) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes("RIFF".getBytes(StandardCharsets.US_ASCII));
+        out.writeBytes(new byte[]{0, 0, 0, 0});
+        out.writeBytes(("WEBP" + chunk).getBytes(StandardCharsets.US_ASCII));
+        out.writeBytes(new byte[]{(byte) payload.length, 0, 0, 0});
+        out.writeBytes(payload);
+        return out.toByteArray();
+    }
+}
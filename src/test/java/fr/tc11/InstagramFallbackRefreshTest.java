@@ -9,7 +9,9 @@ import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -29,7 +31,7 @@ class InstagramFallbackRefreshTest {
         Path outputPath = Path.of(System.getProperty("tc11.instagram.output-file", DEFAULT_OUTPUT_FILE));
         Files.createDirectories(outputPath.getParent());
 
-        List<String> livePosts = null;
+        List<InstagramPost> livePosts = null;
         for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
             System.out.println("INSTAGRAM_REFRESH_ATTEMPT=" + attempt);
             livePosts = fetcher.fetchInstagramPostsViaHeadlessBrowser();
@@ -46,7 +48,7 @@ class InstagramFallbackRefreshTest {
         String json = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(livePosts) + "\n";
         Files.writeString(outputPath, json);
 
-        System.out.println("INSTAGRAM_FALLBACK_PRIMARY=" + livePosts.getFirst());
+        System.out.println("INSTAGRAM_FALLBACK_PRIMARY=" + livePosts.getFirst().permalink());
         System.out.println("INSTAGRAM_FALLBACK_COUNT=" + livePosts.size());
         System.out.println("INSTAGRAM_FALLBACK_FILE=" + outputPath);
     }
@@ -57,17 +59,23 @@ class InstagramFallbackRefreshTest {
         Path outputPath = Path.of(System.getProperty("tc11.instagram.output-file", DEFAULT_OUTPUT_FILE));
         Files.createDirectories(outputPath.getParent());
 
-        List<String> livePosts = fetcher.testFetchInstagramPostsViaInstagramApi();
+        Map<String, InstagramResponseParser.InstagramMedia> media = new HashMap<>();
+        List<InstagramPost> livePosts = fetcher.testFetchInstagramPostsViaInstagramApi(media);
 
         if (livePosts == null || livePosts.isEmpty()) {
             fail("Expected at least one Instagram post from Instagram API fetch");
         }
 
+        // The API media URLs expire: download the thumbnails now so they are committed with the fallback
+        fetcher.syncThumbnails(livePosts, media);
+        livePosts = fetcher.withThumbnails(livePosts);
+
         String json = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(livePosts) + "\n";
         Files.writeString(outputPath, json);
 
-        System.out.println("INSTAGRAM_FALLBACK_PRIMARY=" + livePosts.getFirst());
+        System.out.println("INSTAGRAM_FALLBACK_PRIMARY=" + livePosts.getFirst().permalink());
         System.out.println("INSTAGRAM_FALLBACK_COUNT=" + livePosts.size());
         System.out.println("INSTAGRAM_FALLBACK_FILE=" + outputPath);
+        System.out.println("INSTAGRAM_THUMBNAILS_COUNT=" + livePosts.stream().filter(post -> post.thumbnail() != null).count());
     }
 }
\ No newline at end of file
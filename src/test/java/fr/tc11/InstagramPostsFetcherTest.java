@@ -4,8 +4,28 @@ import io.quarkus.test.junit.QuarkusTest;
 import jakarta.inject.Inject;
 import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
 import org.junit.jupiter.api.Test;
-
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -23,7 +43,7 @@ class InstagramPostsFetcherTest {
     @Test
     void testGetInstagramPostsReturnsNonNull() {
         // The fetcher should always return a non-null list
-        List<String> posts = fetcher.getInstagramPosts();
+        List<String> posts = fetcher.getInstagramPostUrls();
         assertNotNull(posts);
         assertFalse(posts.isEmpty(), "Expected at least one Instagram post URL");
         assertTrue(posts.stream().allMatch(url -> url.startsWith("https://www.instagram.com/p/")
@@ -34,7 +54,7 @@ class InstagramPostsFetcherTest {
     @Test
     @EnabledIfSystemProperty(named = "tc11.test.playwright.live", matches = "true")
     void testFetchInstagramPostsViaHeadlessBrowserLive() {
-        List<String> posts = fetcher.fetchInstagramPostsViaHeadlessBrowser();
+        List<String> posts = permalinks(fetcher.fetchInstagramPostsViaHeadlessBrowser());
         System.out.println("PLAYWRIGHT_SMOKE_POSTS=" + String.join(",", posts));
 
         assertNotNull(posts);
@@ -43,6 +63,351 @@ class InstagramPostsFetcherTest {
                 "Playwright fetch should return normalized /p/ Instagram URLs");
     }
 
+    // ========== Source Race Tests ==========
+
+    @Test
+    void testFetchFirstAvailableSkipsFailingSources() {
+        List<InstagramPostsFetcher.FetchSource> sources = List.of(
+            new InstagramPostsFetcher.FetchSource("failing", () -> { throw new IOException("boom"); }),
+            new InstagramPostsFetcher.FetchSource("empty", List::of),
+            new InstagramPostsFetcher.FetchSource("working", () -> List.of(InstagramPost.of("https://www.instagram.com/p/ABC123DEF45")))
+        );
+
+        InstagramPostsFetcher.FetchOutcome outcome = fetcher.fetchFirstAvailable(
+            sources, null, Duration.ofMillis(100), Duration.ofSeconds(5));
+
+        assertNotNull(outcome);
+        assertEquals("working", outcome.source());
+        assertEquals(List.of(InstagramPost.of("https://www.instagram.com/p/ABC123DEF45")), outcome.posts());
+    }
+
+    @Test
+    void testFetchFirstAvailableHedgesSlowSource() {
+        AtomicBoolean slowInterrupted = new AtomicBoolean();
+        List<InstagramPostsFetcher.FetchSource> sources = List.of(
+            new InstagramPostsFetcher.FetchSource("slow", () -> {
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    slowInterrupted.set(true);
+                    throw e;
+                }
+                return List.of(InstagramPost.of("https://www.instagram.com/p/SLOW0000001"));
+            }),
+            new InstagramPostsFetcher.FetchSource("fast", () -> List.of(InstagramPost.of("https://www.instagram.com/p/FAST0000001")))
+        );
+
+        long start = System.nanoTime();
+        InstagramPostsFetcher.FetchOutcome outcome = fetcher.fetchFirstAvailable(
+            sources, Duration.ofMillis(50), Duration.ofMillis(100), Duration.ofSeconds(5));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertNotNull(outcome);
+        assertEquals("fast", outcome.source());
+        assertTrue(elapsedMs < 5_000, "Race should not wait for the slow source, took " + elapsedMs + " ms");
+    }
+
+    @Test
+    void testFetchFirstAvailablePrefersEarlierSourceWithinGraceWindow() {
+        CountDownLatch fastDone = new CountDownLatch(1);
+        List<InstagramPostsFetcher.FetchSource> sources = List.of(
+            new InstagramPostsFetcher.FetchSource("preferred", () -> {
+                fastDone.await(5, TimeUnit.SECONDS);
+                Thread.sleep(50);
+                return List.of(InstagramPost.of("https://www.instagram.com/p/PREFERRED01"));
+            }),
+            new InstagramPostsFetcher.FetchSource("fallback", () -> {
+                try {
+                    return List.of(InstagramPost.of("https://www.instagram.com/p/FALLBACK001"));
+                } finally {
+                    fastDone.countDown();
+                }
+            })
+        );
+
+        InstagramPostsFetcher.FetchOutcome outcome = fetcher.fetchFirstAvailable(
+            sources, Duration.ZERO, Duration.ofSeconds(2), Duration.ofSeconds(5));
+
+        assertNotNull(outcome);
+        assertEquals("preferred", outcome.source());
+    }
+
+    @Test
+    void testFetchFirstAvailableHonoursDeadline() {
+        List<InstagramPostsFetcher.FetchSource> sources = List.of(
+            new InstagramPostsFetcher.FetchSource("hanging", () -> {
+                Thread.sleep(10_000);
+                return List.of(InstagramPost.of("https://www.instagram.com/p/HANGING0001"));
+            })
+        );
+
+        long start = System.nanoTime();
+        InstagramPostsFetcher.FetchOutcome outcome = fetcher.fetchFirstAvailable(
+            sources, null, Duration.ofMillis(100), Duration.ofMillis(200));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertNull(outcome);
+        assertTrue(elapsedMs < 5_000, "Deadline should stop the chain, took " + elapsedMs + " ms");
+    }
+
+    // ========== Snapshot Cache Tests ==========
+
+    @Test
+    void testSnapshotStoreRoundTrip(@TempDir Path dir) {
+        InstagramSnapshotStore store = new InstagramSnapshotStore(dir, "tc11assb", new ObjectMapper());
+        Instant fetchedAt = Instant.parse("2026-05-01T10:15:30Z");
+        List<InstagramPost> posts = List.of(
+                new InstagramPost(null, "https://www.instagram.com/p/ABC123DEF45", "VIDEO", "2026-05-01T10:15:30+0000",
+                        "Légende", new InstagramThumbnail("/assets/instagram/0123456789abcdef.jpg", 480, 480)),
+                InstagramPost.of("https://www.instagram.com/p/XYZ789GHI01"));
+
+        store.write(new InstagramSnapshot(posts, "Instagram API", fetchedAt));
+        Optional<InstagramSnapshot> read = store.read();
+
+        assertTrue(read.isPresent());
+        assertEquals(posts, read.get().posts());
+        assertEquals("Instagram API", read.get().source());
+        assertEquals(fetchedAt, read.get().fetchedAt());
+    }
+
+    @Test
+    void testSnapshotStoreIgnoresMissingOrOtherVersion(@TempDir Path dir) throws IOException {
+        InstagramSnapshotStore store = new InstagramSnapshotStore(dir, "tc11assb", new ObjectMapper());
+        assertTrue(store.read().isEmpty());
+
+        Files.writeString(store.file(), """
+            {"version": 0, "source": "RSS Bridge", "fetchedAt": "2026-05-01T10:15:30Z", "posts": []}
+            """);
+        assertTrue(store.read().isEmpty());
+
+        Files.writeString(store.file(), "not valid json");
+        assertTrue(store.read().isEmpty());
+    }
+
+    @Test
+    void testReadPostsAcceptsPostObjectsAndLegacyUrls() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        List<InstagramPost> posts = InstagramPostsFetcher.readPosts(objectMapper, objectMapper.readTree("""
+            [
+                "https://www.instagram.com/p/LEGACY00001/",
+                {"permalink": "https://www.instagram.com/reel/REEL1234567/", "mediaType": "VIDEO", "caption": "Légende",
+                 "thumbnail": {"url": "/assets/instagram/0123456789abcdef.jpg", "width": 480, "height": 480}, "unknown": 1},
+                {"mediaType": "IMAGE"}
+            ]
+            """));
+
+        assertEquals(2, posts.size(), "Entries without a permalink are skipped");
+        assertEquals(InstagramPost.of("https://www.instagram.com/p/LEGACY00001/"), posts.get(0));
+        assertEquals("LEGACY00001", posts.get(0).shortcode());
+        assertEquals("REEL1234567", posts.get(1).shortcode());
+        assertTrue(posts.get(1).isVideo());
+        assertEquals(new InstagramThumbnail("/assets/instagram/0123456789abcdef.jpg", 480, 480), posts.get(1).thumbnail());
+        assertFalse(objectMapper.writeValueAsString(posts.get(0)).contains("null"), "Unknown metadata is not written");
+    }
+
+    @Test
+    void testSnapshotFreshness() {
+        Instant fetchedAt = Instant.parse("2026-05-01T10:00:00Z");
+        InstagramSnapshot snapshot = new InstagramSnapshot(List.of(), "RSS Bridge", fetchedAt);
+
+        assertTrue(snapshot.isFresh(Duration.ofHours(6), fetchedAt.plus(Duration.ofHours(5))));
+        assertFalse(snapshot.isFresh(Duration.ofHours(6), fetchedAt.plus(Duration.ofHours(7))));
+    }
+
+    // ========== Async Startup Tests ==========
+
+    @Test
+    void testAsyncStartupServesFallbackUntilLoaded() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        InstagramPostsFetcher asyncFetcher = new InstagramPostsFetcher() {
+            @Override
+            List<FetchSource> fetchSources() {
+                return List.of(new FetchSource("stub", () -> {
+                    release.await(5, TimeUnit.SECONDS);
+                    return List.of(InstagramPost.of("https://www.instagram.com/p/ASYNC000001"));
+                }));
+            }
+        };
+        asyncFetcher.enabled = true;
+        asyncFetcher.startupMode = InstagramPostsFetcher.STARTUP_MODE_ASYNC;
+        asyncFetcher.fetchMode = InstagramPostsFetcher.FETCH_MODE_SEQUENTIAL;
+        asyncFetcher.graceWindow = Duration.ofMillis(100);
+        asyncFetcher.fetchDeadline = Duration.ofSeconds(10);
+        asyncFetcher.blacklist = Optional.empty();
+        asyncFetcher.accessToken = Optional.empty();
+        asyncFetcher.accountId = Optional.empty();
+        asyncFetcher.renderWait = Duration.ofMillis(50);
+
+        try {
+            asyncFetcher.init();
+
+            // Startup returns immediately with the classpath fallback
+            assertFalse(asyncFetcher.getInstagramPosts().isEmpty());
+            assertFalse(asyncFetcher.awaitInitialLoad(), "Initial load should still be running");
+
+            release.countDown();
+            asyncFetcher.renderWait = Duration.ofSeconds(5);
+            assertTrue(asyncFetcher.awaitInitialLoad());
+            assertEquals(List.of(InstagramPost.of("https://www.instagram.com/p/ASYNC000001")), asyncFetcher.getInstagramPosts());
+        } finally {
+            asyncFetcher.shutdown();
+        }
+    }
+
+    // ========== Incremental API Fetch Tests ==========
+
+    /**
+     * Fetcher whose API pages are served from memory, keyed by URL.
+     */
+    private static InstagramPostsFetcher pagedFetcher(Map<String, InstagramResponseParser.MediaPage> pages,
+                                                      List<String> requested) {
+        InstagramPostsFetcher pagedFetcher = new InstagramPostsFetcher() {
+            @Override
+            InstagramResponseParser.MediaPage fetchMediaPage(String url, String apiName) {
+                requested.add(url);
+                return pages.get(url);
+            }
+        };
+        pagedFetcher.incrementalEnabled = true;
+        pagedFetcher.incrementalMaxPages = 5;
+        return pagedFetcher;
+    }
+
+    private static InstagramResponseParser.MediaPage mediaPage(String next, String... shortcodes) {
+        List<InstagramResponseParser.InstagramMedia> media = new ArrayList<>();
+        for (String shortcode : shortcodes) {
+            media.add(new InstagramResponseParser.InstagramMedia(shortcode, "https://www.instagram.com/p/" + shortcode + "/",
+                    "IMAGE", "2026-05-01T10:15:30+0000", null, null, null));
+        }
+        return new InstagramResponseParser.MediaPage(media, next);
+    }
+
+    private static List<String> postUrls(String... shortcodes) {
+        return Arrays.stream(shortcodes).map(s -> "https://www.instagram.com/p/" + s + "/").toList();
+    }
+
+    private static List<InstagramPost> posts(String... shortcodes) {
+        return InstagramPostsFetcher.postsOf(postUrls(shortcodes));
+    }
+
+    private static List<String> permalinks(List<InstagramPost> posts) {
+        return posts.stream().map(InstagramPost::permalink).toList();
+    }
+
+    @Test
+    void testParseMediaPageReadsNextLinkAfterLimit() {
+        String json = """
+            {
+                "data": [
+                    {"id": "1", "permalink": "https://www.instagram.com/p/AAA/"},
+                    {"id": "2", "permalink": "https://www.instagram.com/p/BBB/"},
+                    {"id": "3", "permalink": "https://www.instagram.com/p/CCC/"}
+                ],
+                "paging": {"cursors": {"before": "a", "after": "b"}, "next": "https://graph.instagram.com/next"}
+            }
+            """;
+
+        InstagramResponseParser.MediaPage page = InstagramResponseParser.parseMediaPage(
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), 2);
+
+        assertEquals(2, page.media().size());
+        assertEquals("https://graph.instagram.com/next", page.next());
+    }
+
+    @Test
+    void testParseMediaKeepsThumbnailMetadata() {
+        String caption = "Tournoi 🎾 " + "très long ".repeat(60);
+        String json = """
+            {
+                "data": [
+                    {"id": "1", "media_type": "VIDEO", "permalink": "https://www.instagram.com/reel/AAA/",
+                     "media_url": "https://cdn.example/a.mp4", "thumbnail_url": "https://cdn.example/a.jpg",
+                     "caption": "%s", "timestamp": "2026-05-01T10:15:30+0000"},
+                    {"id": "2", "media_type": "IMAGE", "permalink": "https://www.instagram.com/p/BBB/",
+                     "media_url": "https://cdn.example/b.jpg"}
+                ]
+            }
+            """.formatted(caption);
+
+        List<InstagramResponseParser.InstagramMedia> media = InstagramResponseParser.parseMedia(
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), 10);
+
+        assertEquals("https://cdn.example/a.jpg", media.get(0).imageUrl(), "Videos are shown by their thumbnail");
+        assertEquals("https://cdn.example/b.jpg", media.get(1).imageUrl());
+        assertEquals("2026-05-01T10:15:30+0000", media.get(0).timestamp());
+        assertTrue(media.get(0).caption().startsWith("Tournoi 🎾 très long"));
+        assertTrue(media.get(0).caption().matches(".* (très|long)…"), "Cut on a word boundary: " + media.get(0).caption());
+        assertTrue(media.get(0).caption().length() <= InstagramResponseParser.CAPTION_MAX_LENGTH);
+        assertNull(media.get(1).caption());
+    }
+
+    @Test
+    void testFetchMediaPagesMergesNewPostsUntilKnownPost() throws Exception {
+        List<String> requested = new ArrayList<>();
+        InstagramPostsFetcher pagedFetcher = pagedFetcher(Map.of(
+                "page1", mediaPage("page2", "NEW1", "NEW2", "OLD1", "OLD2"),
+                "page2", mediaPage(null, "OLD7")), requested);
+        pagedFetcher.publish(new InstagramSnapshot(posts("OLD1", "OLD2", "OLD3", "OLD4", "OLD5", "OLD6"),
+                "cache", Instant.now()));
+
+        Map<String, InstagramResponseParser.InstagramMedia> media = new HashMap<>();
+        List<InstagramPost> posts = pagedFetcher.fetchMediaPages("page1", "Instagram API", media);
+
+        assertEquals(List.of("page1"), requested, "Paging should stop at the first known post");
+        assertEquals(Set.of("NEW1", "NEW2", "OLD1", "OLD2"), media.keySet(), "Metadata of the fetched posts only");
+        assertEquals(postUrls("NEW1", "NEW2", "OLD1", "OLD2", "OLD3", "OLD4", "OLD5", "OLD6"), permalinks(posts));
+        assertEquals("IMAGE", posts.get(2).mediaType(), "Known posts seen on the page take the API metadata");
+        assertNull(posts.get(4).mediaType());
+    }
+
+    @Test
+    void testFetchMediaPagesPagesFurtherWhenBlacklistLeavesTooFewPosts() throws Exception {
+        List<String> requested = new ArrayList<>();
+        InstagramPostsFetcher pagedFetcher = pagedFetcher(Map.of(
+                "page1", mediaPage("page2", "NEW1", "OLD1", "OLD2"),
+                "page2", mediaPage("page3", "OLD3", "OLD4", "OLD5", "OLD6", "OLD7"),
+                "page3", mediaPage(null, "OLD8")), requested);
+        pagedFetcher.blacklistedShortcodes = Set.of("OLD1", "OLD2");
+        pagedFetcher.publish(new InstagramSnapshot(posts("OLD1", "OLD2", "OLD3"), "cache", Instant.now()));
+
+        List<InstagramPost> posts = pagedFetcher.fetchMediaPages("page1", "Instagram API", new HashMap<>());
+
+        assertEquals(List.of("page1", "page2"), requested);
+        assertEquals(postUrls("NEW1", "OLD1", "OLD2", "OLD3", "OLD4", "OLD5", "OLD6", "OLD7"), permalinks(posts));
+        assertEquals(postUrls("NEW1", "OLD3", "OLD4", "OLD5", "OLD6", "OLD7"),
+                permalinks(InstagramPostsFetcher.visiblePosts(posts, pagedFetcher.blacklistedShortcodes)));
+    }
+
+    @Test
+    void testFetchMediaPagesDropsKnownPostsMissingFromFetchedRange() throws Exception {
+        List<String> requested = new ArrayList<>();
+        InstagramPostsFetcher pagedFetcher = pagedFetcher(Map.of(
+                "page1", mediaPage(null, "NEW1", "OLD1", "OLD3")), requested);
+        List<InstagramPost> previous = new ArrayList<>(posts("OLD1", "DELETED", "OLD3", "OLD4"));
+        previous.add(new InstagramPost(null, postUrls("ARCHIVED").getFirst(), "IMAGE", "2026-05-02T08:00:00+0000", null, null));
+        previous.add(new InstagramPost(null, postUrls("OLD5").getFirst(), "IMAGE", "2026-04-30T08:00:00+0000", null, null));
+        pagedFetcher.publish(new InstagramSnapshot(previous, "fallback instagram.json", Instant.EPOCH));
+
+        List<InstagramPost> posts = pagedFetcher.fetchMediaPages("page1", "Instagram API", new HashMap<>());
+
+        assertEquals(postUrls("NEW1", "OLD1", "OLD3", "OLD4", "OLD5"), permalinks(posts),
+                "Only the known posts older than the oldest fetched post are kept");
+    }
+
+    @Test
+    void testFetchMediaPagesWithoutKnownPostReturnsOnlyFetchedPosts() throws Exception {
+        List<String> requested = new ArrayList<>();
+        InstagramPostsFetcher pagedFetcher = pagedFetcher(Map.of(
+                "page1", mediaPage("page2", "NEW1", "NEW2", "NEW3"),
+                "page2", mediaPage(null, "NEW4", "NEW5", "NEW6", "NEW7")), requested);
+        pagedFetcher.publish(new InstagramSnapshot(posts("GONE1", "GONE2"), "cache", Instant.now()));
+
+        List<InstagramPost> posts = pagedFetcher.fetchMediaPages("page1", "Instagram API", new HashMap<>());
+
+        assertEquals(List.of("page1", "page2"), requested);
+        assertEquals(postUrls("NEW1", "NEW2", "NEW3", "NEW4", "NEW5", "NEW6", "NEW7"), permalinks(posts));
+    }
+
     // ========== Graph API Response Parsing Tests ==========
 
     @Test
@@ -161,6 +526,27 @@ class InstagramPostsFetcherTest {
         assertTrue(urls.contains("https://www.instagram.com/reel/REEL12345/"));
     }
 
+    @Test
+    void testParseMediaResponseSkipsNestedFieldsAndStopsAtFetchLimit() {
+        // Captions and carousel children are skipped without being mistaken for top-level items
+        StringBuilder json = new StringBuilder("{\"paging\": {\"next\": \"https://graph.instagram.com/next\"}, \"data\": [");
+        for (int i = 0; i < 25; i++) {
+            if (i > 0) json.append(",");
+            json.append(String.format("""
+                {"id": "%d", "caption": "Légende très longue %s", "media_type": "CAROUSEL_ALBUM",
+                 "children": {"data": [{"id": "c%d", "permalink": "https://www.instagram.com/p/CHILD%06d/"}]},
+                 "permalink": "https://www.instagram.com/p/SHORTCODE%02d/"}
+                """, i, "x".repeat(2000), i, i, i));
+        }
+        json.append("]}");
+
+        List<String> urls = fetcher.testParseMediaResponse(json.toString());
+
+        assertEquals(20, urls.size());
+        assertEquals("https://www.instagram.com/p/SHORTCODE00/", urls.get(0));
+        assertTrue(urls.stream().noneMatch(url -> url.contains("CHILD")));
+    }
+
     @Test
     void testParseMediaResponseWithNullData() {
         String jsonResponse = """
@@ -269,6 +655,46 @@ class InstagramPostsFetcherTest {
         assertEquals(20, urls.size());
     }
 
+    @Test
+    void testExtractPostUrlsFromHtmlWithJsonShortcodesAndLengthRules() {
+        String html = """
+            <script>{"shortcode":"JSONCODE1","x":1},{"shortcode":"TOOLONGJSONSHORTCODE123"}</script>
+            <a href="/reel/REELCODE01/">Reel</a>
+            <a href="/p/SHORT/">Too short</a>
+            <a href="/p/POSTCODE001/">Post</a>
+            <a href="/p/POSTCODE0012345/">Too long</a>
+            """;
+
+        List<String> urls = fetcher.testExtractPostUrlsFromHtml(html);
+
+        // Post links first, then reel links, then JSON shortcodes
+        assertEquals(List.of(
+                "https://www.instagram.com/p/POSTCODE001",
+                "https://www.instagram.com/p/REELCODE01",
+                "https://www.instagram.com/p/JSONCODE1"), urls);
+    }
+
+    @Test
+    void testShortcodeScannerReaderMatchesCharSequence() throws IOException {
+        StringBuilder html = new StringBuilder("<html><body>");
+        for (int i = 0; i < 2000; i++) {
+            html.append(String.format("<div class=\"x%d\">filler /p/ /reel/ \"shortcode\":</div>", i));
+            if (i % 100 == 0) {
+                html.append(String.format("<a href=\"/reel/REELCODE%02d/\">Reel</a>", i / 100));
+                html.append(String.format("{\"shortcode\":\"JSONCODE%02d\"}", i / 100));
+            }
+        }
+        html.append("<a href=\"/p/POSTCODE01\">Post</a></body></html>");
+
+        List<String> fromText = InstagramShortcodeScanner.scan(html, 20);
+        List<String> fromReader = InstagramShortcodeScanner.scan(new StringReader(html.toString()), 20);
+
+        assertEquals(fromText, fromReader);
+        assertEquals(20, fromText.size());
+        assertEquals("POSTCODE01", fromText.get(0));
+        assertEquals("REELCODE00", fromText.get(1));
+    }
+
     @Test
     void testExtractPostUrlsFromLinksWithLiveDebugAttempt20260320() {
         List<String> hrefs = List.of(
@@ -417,7 +843,7 @@ class InstagramPostsFetcherTest {
     void testGetInstagramPostsFiltersBlacklistedShortcodes() {
         // This test verifies that blacklisted shortcodes are filtered out
         // The actual blacklist is configured in application.properties
-        List<String> posts = fetcher.getInstagramPosts();
+        List<String> posts = fetcher.getInstagramPostUrls();
         
         assertNotNull(posts);
         // Verify that no post contains the blacklisted shortcode from config (DKurQ_ktdgw)
@@ -464,7 +890,7 @@ class InstagramPostsFetcherTest {
     void testFilterBlacklistedPostsNoFalsePositives() {
         // Verify that shortcode matching is precise and doesn't match substrings
         // For example, if "DKu" is blacklisted, "DKurQ_ktdgw" should NOT be filtered
-        List<String> posts = fetcher.getInstagramPosts();
+        List<String> posts = fetcher.getInstagramPostUrls();
         
         assertNotNull(posts);
         // This test ensures the improved matching logic is working
@@ -476,9 +902,53 @@ class InstagramPostsFetcherTest {
     void testGetInstagramPostsLimitsToMaxPostsAfterFiltering() {
         // Verify that getInstagramPosts() always returns at most MAX_POSTS (6) results,
         // even when more posts were fetched from the source
-        List<String> posts = fetcher.getInstagramPosts();
+        List<String> posts = fetcher.getInstagramPostUrls();
 
         assertNotNull(posts);
         assertTrue(posts.size() <= 6, "getInstagramPosts() must return at most 6 posts, got: " + posts.size());
     }
+
+    @Test
+    void testParseBlacklistAcceptsShortcodesAndUrls() {
+        Set<String> shortcodes = InstagramPostsFetcher.parseBlacklist(
+            " DKurQ_ktdgw , https://www.instagram.com/p/ABC123DEF45/, https://www.instagram.com/reel/REEL1234567/?hl=en,,");
+
+        assertEquals(Set.of("DKurQ_ktdgw", "ABC123DEF45", "REEL1234567"), shortcodes);
+        assertTrue(InstagramPostsFetcher.parseBlacklist(null).isEmpty());
+        assertTrue(InstagramPostsFetcher.parseBlacklist("  ").isEmpty());
+    }
+
+    @Test
+    void testShortcodeOfSupportedUrlShapes() {
+        assertEquals("DKurQ_ktdgw", InstagramPostsFetcher.shortcodeOf("https://www.instagram.com/p/DKurQ_ktdgw"));
+        assertEquals("DKurQ_ktdgw", InstagramPostsFetcher.shortcodeOf("https://www.instagram.com/p/DKurQ_ktdgw/"));
+        assertEquals("REEL1234567", InstagramPostsFetcher.shortcodeOf("https://www.instagram.com/reel/REEL1234567/?hl=en"));
+        assertEquals("DKurQ_ktdgw", InstagramPostsFetcher.shortcodeOf("https://www.instagram.com/tc11assb/DKurQ_ktdgw/"));
+    }
+
+    @Test
+    void testVisiblePostsFiltersExactShortcodesAndLimits() {
+        List<String> posts = List.of(
+            "https://www.instagram.com/p/DKurQ_ktdgw/",
+            "https://www.instagram.com/p/POST0000001",
+            "https://www.instagram.com/reel/REEL1234567/",
+            "https://www.instagram.com/p/POST0000002",
+            "https://www.instagram.com/p/POST0000003",
+            "https://www.instagram.com/p/POST0000004",
+            "https://www.instagram.com/p/POST0000005",
+            "https://www.instagram.com/p/POST0000006",
+            "https://www.instagram.com/p/POST0000007"
+        );
+
+        List<String> visible = permalinks(InstagramPostsFetcher.visiblePosts(
+            InstagramPostsFetcher.postsOf(posts), Set.of("DKurQ_ktdgw", "REEL1234567")));
+
+        assertEquals(6, visible.size());
+        assertEquals("https://www.instagram.com/p/POST0000001", visible.get(0));
+        assertEquals("https://www.instagram.com/p/POST0000006", visible.get(5));
+
+        // A blacklisted prefix must not hide a longer shortcode
+        assertEquals(List.of("https://www.instagram.com/p/DKurQ_ktdgw/"), permalinks(InstagramPostsFetcher.visiblePosts(
+            List.of(InstagramPost.of("https://www.instagram.com/p/DKurQ_ktdgw/")), Set.of("DKu"))));
+    }
 }
@@ -0,0 +1,116 @@
+package fr.tc11;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the self-hosted Instagram thumbnails, with images served from memory.
+ */
+class InstagramThumbnailsTest {
+
+    @Test
+    void testDownloadsSquareThumbnailsWithBoundedConcurrency(@TempDir Path dir) throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        InstagramThumbnails thumbnails = new InstagramThumbnails(dir, "/assets/instagram", 240, 0.8f, 2, url -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(50);
+                return jpeg(1080, url.contains("WIDE") ? 566 : 1350, url.hashCode());
+            } finally {
+                running.decrementAndGet();
+            }
+        });
+
+        Map<String, InstagramResponseParser.InstagramMedia> media = media("AAA", "BBB", "CCC", "WIDE");
+        int downloaded = thumbnails.sync(posts("AAA", "BBB", "CCC", "WIDE", "NOMEDIA"), media);
+
+        assertEquals(4, downloaded);
+        assertTrue(maxRunning.get() <= 2, "At most 2 downloads in flight, got " + maxRunning.get());
+        InstagramThumbnail wide = thumbnails.get("WIDE");
+        assertTrue(wide.url().matches("/assets/instagram/[0-9a-f]{16}\\.jpg"), wide.url());
+        assertEquals(240, wide.width());
+        assertEquals(240, wide.height());
+        BufferedImage image = ImageIO.read(dir.resolve(wide.url().substring("/assets/instagram/".length())).toFile());
+        assertEquals(240, image.getWidth());
+        assertEquals(240, image.getHeight());
+        assertNull(thumbnails.get("NOMEDIA"));
+        assertEquals(Map.of("AAA", thumbnails.get("AAA"), "BBB", thumbnails.get("BBB"), "CCC", thumbnails.get("CCC"), "WIDE", wide),
+                InstagramThumbnails.readIndex(dir.resolve(InstagramThumbnails.INDEX_FILE)));
+    }
+
+    @Test
+    void testKeepsExistingThumbnailsAndRemovesOthers(@TempDir Path dir) throws Exception {
+        AtomicInteger downloads = new AtomicInteger();
+        InstagramThumbnails.Downloader downloader = url -> {
+            downloads.incrementAndGet();
+            return jpeg(640, 640, url.hashCode());
+        };
+        InstagramThumbnails first = new InstagramThumbnails(dir, "/i", 320, 0.8f, 4, downloader);
+        first.sync(posts("AAA", "BBB"), media("AAA", "BBB"));
+        Path removed = dir.resolve(fileName(first.get("BBB").url()));
+
+        // A restart reads the index back: only the new post is downloaded, the dropped one is deleted
+        InstagramThumbnails second = new InstagramThumbnails(dir, "/i", 320, 0.8f, 4, downloader);
+        assertEquals(first.get("AAA"), second.get("AAA"));
+        assertEquals(1, second.sync(posts("CCC", "AAA"), media("CCC")));
+        assertEquals(3, downloads.get());
+        assertEquals(first.get("AAA"), second.get("AAA"), "Posts without fresh metadata keep their thumbnail");
+        assertNull(second.get("BBB"));
+        assertFalse(Files.exists(removed), "Thumbnails of posts no longer displayed must be deleted");
+    }
+
+    @Test
+    void testFailedDownloadsAreSkipped(@TempDir Path dir) throws Exception {
+        InstagramThumbnails thumbnails = new InstagramThumbnails(dir, "/i", 320, 0.8f, 2, url -> {
+            if (url.contains("BROKEN")) throw new IOException("status 403");
+            return url.contains("TEXT") ? "not an image".getBytes() : jpeg(400, 400, 1);
+        });
+
+        assertEquals(1, thumbnails.sync(posts("BROKEN", "TEXT", "OK"), media("BROKEN", "TEXT", "OK")));
+        assertNull(thumbnails.get("BROKEN"));
+        assertNull(thumbnails.get("TEXT"));
+        assertEquals(320, thumbnails.get("OK").width());
+    }
+
+    private static List<InstagramPost> posts(String... shortcodes) {
+        return List.of(shortcodes).stream().map(s -> InstagramPost.of("https://www.instagram.com/p/" + s + "/")).toList();
+    }
+
+    private static Map<String, InstagramResponseParser.InstagramMedia> media(String... shortcodes) {
+        Map<String, InstagramResponseParser.InstagramMedia> media = new ConcurrentHashMap<>();
+        for (String shortcode : shortcodes) {
+            media.put(shortcode, new InstagramResponseParser.InstagramMedia(shortcode, "https://www.instagram.com/p/" + shortcode + "/",
+                    "IMAGE", "2026-05-01T10:15:30+0000", "https://cdn.example/" + shortcode + ".jpg", null, "Légende " + shortcode));
+        }
+        return media;
+    }
+
+    private static byte[] jpeg(int width, int height, int rgb) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, rgb & 0xFFFFFF);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+
+    private static String fileName(String url) {
+        return url.substring(url.lastIndexOf('/') + 1);
+    }
+}
@@ -0,0 +1,161 @@
+package fr.tc11;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the "minify" build stage and its streaming minifiers (no Quarkus needed).
+ */
+class MinifyStageTest {
+
+    private final MinifyStage stage = new MinifyStage();
+
+    @Test
+    void testHtmlKeepsPreAndAttributeValues() {
+        String html = """
+                <!DOCTYPE html>
+                <html   lang="fr">
+                  <head>
+                    <!-- En-tête -->
+                    <!--[if IE]><p>Vieux navigateur</p><![endif]-->
+                    <title>  TC11  </title>
+                  </head>
+                  <body>
+                    <p class="  text-sm
+                                 font-bold ">Un   <a href="/a"   title="Deux  espaces">lien</a> , du texte</p>
+                    <pre>  code
+                      indenté  <b> gras </b></pre>
+                    <img src="/x.png"   alt="x"  />
+                    <textarea name="t">  a
+                  b</textarea>
+                  </body>
+                </html>
+                """;
+
+        assertEquals("""
+                <!DOCTYPE html>
+                <html lang="fr">
+                <head>
+                <!--[if IE]><p>Vieux navigateur</p><![endif]-->
+                <title> TC11 </title>
+                </head>
+                <body>
+                <p class="text-sm font-bold">Un <a href="/a" title="Deux  espaces">lien</a> , du texte</p>
+                <pre>  code
+                      indenté  <b> gras </b></pre>
+                <img src="/x.png" alt="x"/>
+                <textarea name="t">  a
+                  b</textarea>
+                </body>
+                </html>""", Minifier.html(html));
+    }
+
+    @Test
+    void testAlpineAttributesAndScriptsKeepTheirLines() {
+        String html = """
+                <div
+                  x-data="\\{
+                    gallery: [
+                      {src: 'a.jpg', alt: 'Deux  espaces'},
+                    ],
+                    open(idx) { this.index = idx;   this.show = true }
+                  \\}"
+                  @click.self="show = false" :class="`a
+                    b`">
+                  <script>
+                    let a = 1
+                    let b = `x
+                      y`   // commentaire   ici
+                    a++
+                  </script>
+                  <script type="application/ld+json">
+                    { "name": "TC 11", "sport": [ "tennis" ] }
+                  </script>
+                  <style>
+                    .a  ,  .b  { color: red ; }
+                  </style>
+                </div>
+                """;
+
+        assertEquals("""
+                <div x-data="\\{
+                gallery: [
+                {src: 'a.jpg', alt: 'Deux  espaces'},
+                ],
+                open(idx) { this.index = idx;   this.show = true }
+                \\}" @click.self="show = false" :class="`a
+                    b`">
+                <script>let a = 1
+                let b = `x
+                      y`   // commentaire   ici
+                a++</script>
+                <script type="application/ld+json">{"name":"TC 11","sport":["tennis"]}</script>
+                <style>.a,.b{color:red}</style>
+                </div>""", Minifier.html(html));
+    }
+
+    @Test
+    void testCssKeepsWhatSeparatesTokens() {
+        assertEquals(".a:hover>.b,.c :first-child{margin:0 auto;color:red!important}",
+                Minifier.css("/* titre */ .a:hover > .b ,\n .c :first-child {\n  margin: 0 auto;\n  color: red !important;\n}\n"));
+        assertEquals("@media screen and (min-width:768px){.md\\:flex :hover{width:calc(100% - 2rem)}}",
+                Minifier.css("@media screen and (min-width: 768px) {\n  .md\\:flex :hover { width: calc( 100% - 2rem ) }\n}"));
+        assertEquals("*{--tw-ring-inset: ;--x: }.a{content:\"  ;  }  \"}",
+                Minifier.css("* { --tw-ring-inset: ; --x: }\n.a { content: \"  ;  }  \" }"));
+        assertEquals("/*! licence */ a{background:url(/img/a.png)}@import url(x.css);",
+                Minifier.css("/*! licence */\na { background: url( /img/a.png ) }\n@import url(x.css);\n"));
+    }
+
+    @Test
+    void testJsonKeepsStrings() {
+        assertEquals("{\"title\":\"Fête  du club\",\"tags\":[\"a\",\"b \\\" c\"],\"n\":1.50}",
+                Minifier.json("{\n  \"title\": \"Fête  du club\",\n  \"tags\": [ \"a\", \"b \\\" c\" ],\n  \"n\": 1.50\n}\n"));
+    }
+
+    @Test
+    void testSiteFilesAreMinifiedInPlace(@TempDir Path dir) throws Exception {
+        Path site = dir.resolve("roq");
+        Files.createDirectories(site.resolve("posts/fete"));
+        Files.writeString(site.resolve("index.html"), "<html>\n  <body>\n    <p>Accueil</p>\n  </body>\n</html>\n");
+        Files.writeString(site.resolve("posts/fete/index.html"), "<p>déjà</p>");
+        Files.writeString(site.resolve("style.css"), "a {\n  color: red;\n}\n");
+        Files.writeString(site.resolve("actus.json"), "[\n  {\n    \"title\": \"Fête\"\n  }\n]\n");
+        Files.writeString(site.resolve("map.js"), "let  a = 1;\n");
+        Path report = dir.resolve("report/minify.csv");
+
+        MinifyStage.Summary summary = stage.generate(site, List.of("html", "css", "json"), report, 2);
+
+        assertEquals(4, summary.files());
+        assertEquals(3, summary.minified(), "Already minified pages are left as they are");
+        assertEquals("<html>\n<body>\n<p>Accueil</p>\n</body>\n</html>", Files.readString(site.resolve("index.html")));
+        assertEquals("a{color:red}", Files.readString(site.resolve("style.css")));
+        assertEquals("[{\"title\":\"Fête\"}]", Files.readString(site.resolve("actus.json")));
+        assertEquals("let  a = 1;\n", Files.readString(site.resolve("map.js")));
+        List<String> lines = Files.readAllLines(report);
+        assertEquals("path,before,after,saved", lines.get(0));
+        assertEquals(5, lines.size());
+        assertEquals("actus.json,33,19,14", lines.get(1), "Largest savings first");
+        assertEquals("posts/fete/index.html,13,13,0", lines.get(4));
+        assertEquals(summary.before() - summary.after(),
+                lines.stream().skip(1).mapToLong(line -> Long.parseLong(line.substring(line.lastIndexOf(',') + 1))).sum());
+        try (var files = Files.list(site)) {
+            assertTrue(files.noneMatch(file -> file.toString().endsWith(".tmp")));
+        }
+
+        assertEquals(0, stage.generate(site, List.of("html", "css", "json"), report, 2).minified(), "Minifying is idempotent");
+    }
+
+    @Test
+    void testSiteMustBeGeneratedFirst(@TempDir Path dir) {
+        assertThrows(NoSuchFileException.class, () -> stage.generate(dir.resolve("roq"), List.of("html"), dir.resolve("r.csv"), 1));
+    }
+}
@@ -0,0 +1,128 @@
+package fr.tc11;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the "og-cards" build stage, on synthetic posts (no Quarkus needed).
+ */
+class OgCardStageTest {
+
+    private final OgCardStage stage = new OgCardStage();
+
+    @Test
+    void testFrontmatterValuesAreUnquoted() {
+        Map<String, String> frontmatter = OgCardStage.frontmatter("""
+                ---
+                title: "Victoire de l'équipe \\"femme 1\\" 🎾"
+                cover: 'la photo.jpg'
+                date: 2026-04-07
+                tags:
+                  - club
+                ---
+                cover: ignored
+                """);
+
+        assertEquals("Victoire de l'équipe \"femme 1\" 🎾", frontmatter.get("title"));
+        assertEquals("la photo.jpg", frontmatter.get("cover"));
+        assertEquals("2026-04-07", frontmatter.get("date"));
+        assertFalse(frontmatter.containsKey("- club"));
+    }
+
+    @Test
+    void testOneCardPerPostFromCoverFirstImageOrDefault(@TempDir Path dir) throws Exception {
+        Path content = dir.resolve("content");
+        Path defaultImage = image(dir.resolve("banner.jpg"), 1600, 900);
+        post(content, "2026-01-01-cover", "title: \"Avec cover\"\ncover: \"b.jpg\"");
+        image(content.resolve("posts/2026-01-01-cover/a.jpg"), 800, 800);
+        image(content.resolve("posts/2026-01-01-cover/b.jpg"), 2000, 1000);
+        post(content, "2026-01-02-photos", "title: Avec photos");
+        image(content.resolve("posts/2026-01-02-photos/photo.png"), 640, 480);
+        post(content, "2026-01-03-texte", "title: Sans image");
+
+        Map<String, String> cards = stage.generate(content, dir.resolve("public"), dir.resolve("og"), "/og", defaultImage, true, 0.8f, 2);
+
+        assertEquals(3, cards.size());
+        assertEquals(3, cards.values().stream().distinct().count());
+        for (String url : cards.values()) {
+            assertTrue(url.matches("/og/[0-9a-f]{16}\\.jpg"), url);
+            BufferedImage card = ImageIO.read(dir.resolve("og").resolve(url.substring("/og/".length())).toFile());
+            assertEquals(OgCardStage.WIDTH, card.getWidth());
+            assertEquals(OgCardStage.HEIGHT, card.getHeight());
+        }
+        assertEquals(cards, OgCardStage.readManifest(dir.resolve("og").resolve(OgCardStage.MANIFEST)));
+
+        OgCardStage.Post withCover = OgCardStage.findPosts(content, dir.resolve("public"), defaultImage).get(0);
+        assertEquals("posts/2026-01-01-cover", withCover.folder());
+        assertEquals("b.jpg", withCover.image().getFileName().toString());
+    }
+
+    @Test
+    void testRootRelativeCoverIsASiteImageOrAContentFile(@TempDir Path dir) throws Exception {
+        Path content = dir.resolve("content");
+        Path site = dir.resolve("site");
+        Path defaultImage = image(dir.resolve("banner.jpg"), 1600, 900);
+        post(content, "2026-01-01-affiche", "title: Affiche\ncover: /assets/affiche.jpg");
+        Path poster = image(site.resolve("assets/affiche.jpg"), 800, 1200);
+        post(content, "2026-01-02-photo", "title: Photo\ncover: /posts/2026-01-01-affiche/photo.jpg");
+        Path photo = image(content.resolve("posts/2026-01-01-affiche/photo.jpg"), 640, 480);
+        post(content, "2026-01-03-absente", "title: Absente\ncover: /assets/absente.jpg");
+
+        List<OgCardStage.Post> posts = OgCardStage.findPosts(content, site, defaultImage);
+
+        assertEquals(List.of(poster, photo, defaultImage), posts.stream().map(OgCardStage.Post::image).toList());
+    }
+
+    @Test
+    void testUnchangedPostsKeepTheirCard(@TempDir Path dir) throws Exception {
+        Path content = dir.resolve("content");
+        Path output = dir.resolve("og");
+        Path defaultImage = image(dir.resolve("banner.jpg"), 1600, 900);
+        Path index = post(content, "2026-01-01-post", "title: Premier titre");
+        post(content, "2026-01-02-other", "title: Autre");
+
+        Map<String, String> first = stage.generate(content, dir.resolve("public"), output, "/og", defaultImage, true, 0.8f, 2);
+        Path card = output.resolve(fileName(first.get("posts/2026-01-01-post")));
+        Files.setLastModifiedTime(card, FileTime.fromMillis(0));
+
+        assertEquals(first, stage.generate(content, dir.resolve("public"), output, "/og", defaultImage, true, 0.8f, 2));
+        assertEquals(0, Files.getLastModifiedTime(card).toMillis(), "Unchanged post must not be drawn again");
+
+        Files.writeString(index, "---\ntitle: Nouveau titre\n---\n");
+        Map<String, String> renamed = stage.generate(content, dir.resolve("public"), output, "/og", defaultImage, true, 0.8f, 2);
+        assertNotEquals(first.get("posts/2026-01-01-post"), renamed.get("posts/2026-01-01-post"));
+        assertEquals(first.get("posts/2026-01-02-other"), renamed.get("posts/2026-01-02-other"));
+        assertFalse(Files.exists(card), "Replaced card must be deleted");
+    }
+
+    private static Path post(Path content, String slug, String frontmatter) throws Exception {
+        Path index = content.resolve("posts").resolve(slug).resolve("index.md");
+        Files.createDirectories(index.getParent());
+        Files.writeString(index, "---\n" + frontmatter + "\n---\n\nTexte.\n");
+        return index;
+    }
+
+    private static Path image(Path file, int width, int height) throws Exception {
+        Files.createDirectories(file.getParent());
+        String name = file.getFileName().toString();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), name.substring(name.lastIndexOf('.') + 1), file.toFile());
+        return file;
+    }
+
+    private static String fileName(String url) {
+        return url.substring(url.lastIndexOf('/') + 1);
+    }
+}
@@ -0,0 +1,94 @@
+package fr.tc11;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the "page-features" build stage, on synthetic generated pages (no Quarkus needed).
+ */
+class PageFeaturesStageTest {
+
+    private static final String HEAD = """
+            <head>
+            <!-- feature:alpine --><script type="module" src="/static/bundle/alpine-1.js"></script><!-- /feature:alpine -->
+            <!-- feature:dates --><script type="module" src="/static/bundle/dates-1.js"></script><!-- /feature:dates -->
+            <!-- feature:map --><script type="module" src="/static/bundle/map-1.js"></script>
+            <link rel="stylesheet" href="/static/bundle/map-1.css" /><!-- /feature:map -->
+            </head>
+            """;
+
+    private final PageFeaturesStage stage = new PageFeaturesStage();
+
+    @Test
+    void testFeaturesAreDetectedOutsideCommentsAndScripts() {
+        String html = HEAD + """
+                <body>
+                <header x-data="{ open: false }"><!-- DOIT ÊTRE DANS LE MÊME x-data --></header>
+                <span class="text-sm" id="maj-date"></span>
+                <p>La carte id="map" n'est que du texte</p>
+                <script>document.getElementById('map');</script>
+                <script>const html = '<div id="map"></div>';</script>
+                </body>
+                """;
+
+        assertEquals(Set.of("alpine", "dates"), PageFeaturesStage.features(html));
+        assertEquals(Set.of("map"), PageFeaturesStage.features("<div id=\"map\" class=\"h-96\"></div>"));
+        assertEquals(Set.of(), PageFeaturesStage.features("<span class=\"instagram-media-like\"></span><div data-x-data=\"a\"></div>"));
+    }
+
+    @Test
+    void testBlocksOfUnusedFeaturesAreRemoved() {
+        String html = PageFeaturesStage.apply(HEAD, Set.of("alpine"));
+
+        assertEquals("""
+                <head>
+                <script type="module" src="/static/bundle/alpine-1.js"></script>
+
+
+                </head>
+                """, html);
+    }
+
+    @Test
+    void testBlocksOfUnknownFeaturesAreKept() {
+        assertEquals("<script src=\"/x.js\"></script>",
+                PageFeaturesStage.apply("<!-- feature:other --><script src=\"/x.js\"></script><!-- /feature:other -->", Set.of()));
+    }
+
+    @Test
+    void testEachPageKeepsItsOwnFeatures(@TempDir Path site) throws Exception {
+        Files.writeString(site.resolve("index.html"), HEAD + "<body x-data=\"{}\"><div id=\"map\"></div></body>");
+        Path post = site.resolve("posts/fete-club/index.html");
+        Files.createDirectories(post.getParent());
+        Files.writeString(post, HEAD + "<body><span id=\"maj-date\"></span></body>");
+        Files.writeString(site.resolve("plain.html"), "<html><body>Sans blocs</body></html>");
+
+        PageFeaturesStage.Summary summary = stage.generate(site);
+
+        assertEquals(new PageFeaturesStage.Summary(3, 2, Map.of("alpine", 1, "dates", 1, "map", 1)), summary);
+        String home = Files.readString(site.resolve("index.html"));
+        assertTrue(home.contains("alpine-1.js") && home.contains("map-1.css"));
+        assertFalse(home.contains("dates-1.js") || home.contains("feature:"));
+        String article = Files.readString(post);
+        assertTrue(article.contains("dates-1.js"));
+        assertFalse(article.contains("alpine-1.js") || article.contains("map-1.js") || article.contains("map-1.css"));
+
+        assertEquals(new PageFeaturesStage.Summary(3, 0, Map.of()), stage.generate(site), "Already filtered pages are left as they are");
+    }
+
+    @Test
+    void testSiteMustBeGeneratedFirst(@TempDir Path dir) {
+        assertThrows(NoSuchFileException.class, () -> stage.generate(dir.resolve("roq")));
+    }
+}
@@ -0,0 +1,161 @@
+package fr.tc11;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the "search-index" build stage, on a synthetic generated site (no Quarkus needed).
+ */
+class SearchIndexStageTest {
+
+    private final SearchIndexStage stage = new SearchIndexStage();
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void testTokensAreFoldedWithoutStopWords() {
+        assertEquals(List.of("equipe", "coeur", "gagne", "2026", "fete", "club"),
+                SearchIndexStage.tokens("L'Équipe Cœur a gagné en 2026 ! Fête du Club"));
+        assertEquals("reinscriptions", SearchIndexStage.fold("Réinscriptions"));
+    }
+
+    @Test
+    void testPostTextIsTheVisibleTextOfThePostContent() {
+        String html = """
+                <html><head><title>Ignoré</title></head><body>
+                <section class="hero"><h1>Titre</h1></section>
+                <section id="post-content" class="prose">
+                  <h2>Tests &amp; inscriptions</h2>
+                  <p>Rendez-vous à la <strong>Falluère</strong>&nbsp;!</p>
+                  <script>const ignored = "<p>script</p>";</script>
+                  <div x-data="{ gallery: [{src: 'a.jpg'}], open(i) { return i > 0; } }">
+                    <template x-for="img in gallery"><img :alt="img.alt"></template>
+                  </div>
+                </section>
+                <footer>Pied de page</footer>
+                </body></html>
+                """;
+
+        assertEquals("Tests & inscriptions Rendez-vous à la Falluère !", SearchIndexStage.postText(html));
+        assertEquals("", SearchIndexStage.postText("<html><body>Accueil</body></html>"));
+    }
+
+    @Test
+    void testPostingListsAreDeltaEncodedAndShardedByPrefix() {
+        Map<String, Map<Integer, Integer>> index = new TreeMap<>();
+        index.put("tennis", new TreeMap<>(Map.of(2, 3, 5, 1, 9, 2)));
+        index.put("tenup", new TreeMap<>(Map.of(4, 1)));
+        index.put("club", new TreeMap<>(Map.of(0, 4)));
+
+        Map<String, SearchIndexStage.Shard> shards = SearchIndexStage.shards(index, 1);
+
+        assertEquals(List.of("c", "t"), List.copyOf(shards.keySet()));
+        SearchIndexStage.Shard t = shards.get("t");
+        assertEquals(List.of("tennis", "tenup"), t.terms());
+        assertEquals(List.of(2, 3, 3, 1, 4, 2), List.of(box(t.postings().get(0))));
+        assertEquals(Map.of(2, 3, 5, 1, 9, 2), SearchIndexStage.decode(t.postings().get(0)));
+    }
+
+    @Test
+    void testIndexOfTheGeneratedPosts(@TempDir Path dir) throws Exception {
+        Path site = dir.resolve("roq");
+        post(site, "fete-club", "Fête du Club", "Save the date", "Rendez-vous à la Falluère le 21 juin.");
+        post(site, "victoire-equipe", "Victoire de l'équipe femme 1", "Encore une victoire", "Bravo à toutes !");
+
+        SearchIndexStage.Index index = stage.generate(site, dir.resolve("cache"), 1);
+
+        JsonNode docs = mapper.readTree(site.resolve(index.docs().substring(1)).toFile());
+        assertEquals("/posts/fete-club/", docs.get(0).get("u").asText());
+        assertEquals("Victoire de l'équipe femme 1", docs.get(1).get("t").asText());
+
+        Map<Integer, Integer> falluere = postings(site, index, "falluere");
+        assertEquals(Map.of(0, SearchIndexStage.BODY_WEIGHT), falluere, "Body text is indexed, accents folded");
+        assertEquals(Map.of(1, SearchIndexStage.TITLE_WEIGHT + SearchIndexStage.SUMMARY_WEIGHT), postings(site, index, "victoire"));
+        assertFalse(index.shards().containsKey("p"), "Text outside the post content is not indexed");
+        assertTrue(index.shards().values().stream().allMatch(url -> url.matches("/search/terms-[a-z0-9_]+\\.[0-9a-f]{16}\\.json")));
+    }
+
+    @Test
+    void testOnlyChangedPostsAreTokenisedAgain(@TempDir Path dir) throws Exception {
+        Path site = dir.resolve("roq");
+        Path cache = dir.resolve("cache");
+        post(site, "fete-club", "Fête du Club", "Save the date", "Falluère");
+        post(site, "victoire-equipe", "Victoire", "Deux sur deux", "Bravo");
+        SearchIndexStage.Index first = stage.generate(site, cache, 1);
+
+        post(site, "victoire-equipe", "Victoire", "Trois sur trois", "Bravo");
+        SearchIndexStage.Index second = stage.generate(site, cache, 1);
+
+        SearchIndexStage.Cache terms = SearchIndexStage.readCache(cache.resolve(SearchIndexStage.CACHE));
+        assertTrue(terms.posts().get("/posts/victoire-equipe/").terms().containsKey("trois"));
+        assertFalse(terms.posts().get("/posts/victoire-equipe/").terms().containsKey("deux"));
+        assertEquals(first.shards().get("f"), second.shards().get("f"), "Unchanged shards keep their URL");
+        assertNotEquals(first.shards().get("t"), second.shards().get("t"));
+        assertNotEquals(first.shards().get("d"), second.shards().get("d"));
+        try (var files = Files.list(site.resolve("search"))) {
+            assertEquals(second.shards().size() + 2, files.count(), "Files of the previous index are removed");
+        }
+    }
+
+    private Map<Integer, Integer> postings(Path site, SearchIndexStage.Index index, String term) throws Exception {
+        JsonNode shard = mapper.readTree(site.resolve(index.shards().get(term.substring(0, 1)).substring(1)).toFile());
+        List<String> terms = new ArrayList<>();
+        shard.get("terms").forEach(node -> terms.add(node.asText()));
+        JsonNode postings = shard.get("postings").get(terms.indexOf(term));
+        int[] values = new int[postings.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = postings.get(i).asInt();
+        }
+        return SearchIndexStage.decode(values);
+    }
+
+    private static Integer[] box(int[] values) {
+        Integer[] boxed = new Integer[values.length];
+        for (int i = 0; i < values.length; i++) boxed[i] = values[i];
+        return boxed;
+    }
+
+    /**
+     * Writes the generated page of a post and adds it at the end of actus.json (replacing it when already listed).
+     */
+    private void post(Path site, String slug, String title, String summary, String body) throws Exception {
+        Path page = site.resolve("posts").resolve(slug).resolve("index.html");
+        Files.createDirectories(page.getParent());
+        Files.writeString(page, """
+                <html><body>
+                <section class="hero"><h1>%s</h1><p>Partager</p></section>
+                <section id="post-content"><p>%s</p></section>
+                </body></html>
+                """.formatted(title, body));
+
+        Path source = site.resolve(ActusShardsStage.SOURCE);
+        List<Map<String, String>> actus = new ArrayList<>();
+        if (Files.exists(source)) {
+            for (JsonNode actu : mapper.readTree(source.toFile())) {
+                actus.add(mapper.convertValue(actu, new TypeReference<Map<String, String>>() { }));
+            }
+        }
+        String url = "https://tc11.fr/posts/" + slug + "/";
+        Map<String, String> actu = Map.of("categorie", "Club", "titre", title, "lien", url, "resume", summary, "date", "2026-01-01");
+        int existing = -1;
+        for (int i = 0; i < actus.size(); i++) {
+            if (url.equals(actus.get(i).get("lien"))) existing = i;
+        }
+        if (existing >= 0) actus.set(existing, actu); else actus.add(actu);
+        Files.writeString(source, mapper.writeValueAsString(actus));
+    }
+}
@@ -0,0 +1,124 @@
+package fr.tc11;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the rules of the static-serving mode (no Quarkus, no Vert.x).
+ */
+class StaticFilesTest {
+
+    private static final List<String> AVAILABLE = List.of("identity", "br", "gzip");
+    private static final String DEFAULT = "public, max-age=0, must-revalidate";
+
+    @Test
+    void testContentCodingNegotiation() {
+        assertEquals("br", StaticFiles.negotiate("gzip, deflate, br, zstd", AVAILABLE));
+        assertEquals("gzip", StaticFiles.negotiate("gzip, deflate", AVAILABLE));
+        assertEquals("gzip", StaticFiles.negotiate("br;q=0.5, gzip;q=0.8", AVAILABLE));
+        assertEquals("gzip", StaticFiles.negotiate("br;q=0, *", AVAILABLE));
+        assertEquals("br", StaticFiles.negotiate("gzip, br", AVAILABLE), "Brotli first on equal quality");
+        assertEquals("identity", StaticFiles.negotiate("br", List.of("identity", "gzip")), "Only available variants");
+        assertEquals("identity", StaticFiles.negotiate(null, AVAILABLE));
+        assertEquals("identity", StaticFiles.negotiate("identity", AVAILABLE));
+        assertEquals("identity", StaticFiles.negotiate("gzip;q=abc", AVAILABLE));
+    }
+
+    @Test
+    void testIfNoneMatch() {
+        assertTrue(StaticFiles.notModified("\"abc\"", "\"abc\""));
+        assertTrue(StaticFiles.notModified("\"x\", W/\"abc\"", "\"abc\""));
+        assertTrue(StaticFiles.notModified("*", "\"abc\""));
+        assertFalse(StaticFiles.notModified("\"abd\"", "\"abc\""));
+        assertFalse(StaticFiles.notModified(null, "\"abc\""));
+    }
+
+    @Test
+    void testUrlPathsStayInTheSite(@TempDir Path root) {
+        StaticFiles files = new StaticFiles(root, List.of(), DEFAULT, 1000);
+        Path site = files.root();
+
+        assertEquals(site.resolve("index.html"), files.resolve("/"));
+        assertEquals(site.resolve("posts/fete-du-club/index.html"), files.resolve("/posts/fete-du-club/"));
+        assertEquals(site.resolve("posts/fete du club"), files.resolve("/posts/fete%20du%20club"));
+        assertEquals(site.resolve("c++.html"), files.resolve("/c++.html"));
+        assertNull(files.resolve("/../secret"));
+        assertNull(files.resolve("/%2e%2e/secret"));
+        assertNull(files.resolve("/a%00.html"));
+        assertNull(files.resolve("relative"));
+    }
+
+    @Test
+    void testCacheControlFromTheAssetsRules(@TempDir Path root) {
+        StaticFiles files = new StaticFiles(root, AssetFingerprintStage.cacheRules(List.of("/derived/*", "/assets/instagram/*.jpg", "/favicon.ico")),
+                DEFAULT, 1000);
+
+        assertEquals(AssetFingerprintStage.IMMUTABLE, files.cacheControl("/derived/assets/style.0123456789abcdef.css"));
+        assertEquals(AssetFingerprintStage.IMMUTABLE, files.cacheControl("/favicon.ico"));
+        assertEquals(DEFAULT, files.cacheControl("/favicon.ico.old"));
+        assertEquals(AssetFingerprintStage.IMMUTABLE, files.cacheControl("/assets/instagram/0123456789abcdef.jpg"));
+        assertEquals(DEFAULT, files.cacheControl("/assets/instagram/thumbnails.json"));
+        assertEquals(DEFAULT, files.cacheControl("/index.html"));
+    }
+
+    @Test
+    void testVariantsAndStrongETags(@TempDir Path root) throws Exception {
+        Path page = root.resolve("index.html");
+        Files.writeString(page, "<p>Accueil</p>".repeat(100));
+        FileTime modified = Files.getLastModifiedTime(page);
+        Path gzip = root.resolve("index.html.gz");
+        Files.write(gzip, new byte[]{1, 2, 3});
+        Files.setLastModifiedTime(gzip, modified);
+        Path staleBrotli = root.resolve("index.html.br");
+        Files.write(staleBrotli, new byte[]{4, 5});
+        Files.setLastModifiedTime(staleBrotli, FileTime.fromMillis(modified.toMillis() - 60_000));
+        Files.createDirectories(root.resolve("posts"));
+        StaticFiles files = new StaticFiles(root, List.of(), DEFAULT, 60_000);
+
+        StaticFiles.Resource resource = (StaticFiles.Resource) files.lookup(files.resolve("/"));
+
+        assertEquals(List.of("identity", "gzip"), List.copyOf(resource.variants().keySet()), "Stale siblings are not sent");
+        assertEquals("text/html; charset=utf-8", resource.contentType());
+        assertEquals(DEFAULT, resource.cacheControl());
+        StaticFiles.Variant compressed = resource.select("gzip, deflate, br");
+        assertEquals(new StaticFiles.Variant(gzip, "gzip", 3, compressed.etag()), compressed);
+        assertTrue(compressed.etag().matches("\"[0-9a-f]{16}\""), compressed.etag());
+        assertNotEquals(compressed.etag(), resource.select(null).etag(), "One ETag per representation");
+        assertSame(resource, files.cached(files.resolve("/index.html")), "Known files are answered from memory");
+
+        Files.writeString(page, "<p>Nouvelle page</p>");
+        Files.setLastModifiedTime(page, FileTime.fromMillis(modified.toMillis() + 2000));
+        StaticFiles.Resource changed = (StaticFiles.Resource) files.lookup(page);
+        assertEquals(Map.of("identity", changed.select("gzip")), changed.variants(), "The sibling of the old file is stale");
+        assertNotEquals(resource.select(null).etag(), changed.select(null).etag());
+
+        assertInstanceOf(StaticFiles.Folder.class, files.lookup(files.resolve("/posts")));
+        assertNull(files.lookup(files.resolve("/missing.html")));
+        assertNull(new StaticFiles(root, List.of(), DEFAULT, 0).cached(page));
+    }
+
+    @Test
+    void testContentTypes() {
+        assertEquals("text/css; charset=utf-8", StaticFiles.contentType("style.0123456789abcdef.css"));
+        assertEquals("text/javascript; charset=utf-8", StaticFiles.contentType("search.js"));
+        assertEquals("application/json; charset=utf-8", StaticFiles.contentType("actus-1.json"));
+        assertEquals("image/svg+xml; charset=utf-8", StaticFiles.contentType("logo.svg"));
+        assertEquals("image/png", StaticFiles.contentType("photo.png"));
+        assertEquals("application/pdf", StaticFiles.contentType("reglement.pdf"));
+        assertEquals("application/octet-stream", StaticFiles.contentType("CNAME"));
+    }
+}